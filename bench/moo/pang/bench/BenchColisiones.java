@@ -0,0 +1,99 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import moo.multimedia.PantallaVirtual;
+import moo.pang.multimedia.Juego;
+import moo.pang.objetosanimados.Bola;
+import moo.pang.objetosanimados.Colisionable;
+import moo.pang.objetosanimados.Disparo;
+import moo.pang.objetosanimados.ObjetoAnimado;
+import moo.pang.objetosanimados.Protagonista;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mide las comprobaciones de colisiones:
+ * <ul>
+ *   <li>El test de un gancho contra una bola (Disparo.compruebaColision()),
+ *   contra todas las bolas una a una.</li>
+ *   <li>La búsqueda de las bolas que tocan al protagonista, que usa la
+ *   rejilla del juego para mirar sólo las bolas cercanas.</li>
+ * </ul>
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BenchColisiones {
+    @Param({"10", "100", "1000", "10000"})
+    public int bolas;
+
+    private Juego elJuego;
+    private Disparo disparo;
+    private Colisionable protagonista;
+
+    @Setup
+    public void preparar() {
+        elJuego = new Juego(new PantallaVirtual(640, 480));
+        elJuego.setSemillas(1, 2);
+        elJuego.empezarPartida();
+        Utilidades.llenarDeBolas(elJuego, bolas, new Random(3));
+        // un tick para que las bolas queden colocadas en la rejilla
+        elJuego.nuevoTickDeSimulacion();
+
+        disparo = new Disparo(elJuego);
+        disparo.reiniciar((elJuego.getCoordenadaXMargenIzquierdo() + elJuego.getCoordenadaXMargenDerecho()) / 2, 0);
+        ObjetoAnimado[] objetos = elJuego.getObjetosAnimados();
+        for(int i = 0; i < objetos.length; i++) {
+            if(objetos[i] instanceof Protagonista) {
+                protagonista = (Colisionable) objetos[i];
+            }
+        }
+    }
+
+    @Benchmark
+    public int disparoContraTodas() {
+        int tocadas = 0;
+        for(int i = 0; i < elJuego.getNumeroBolas(); i++) {
+            if(disparo.compruebaColision(elJuego.getBola(i))) {
+                tocadas++;
+            }
+        }
+        return tocadas;
+    }
+
+    @Benchmark
+    public void bolasCercanasAlProtagonista(Blackhole bh) {
+        // no se llama a protagonista.comprobarColisiones() porque, si le toca
+        // una bola, sólo marca el fin de la partida: se mide la búsqueda en sí
+        float izq = (elJuego.getCoordenadaXMargenIzquierdo() + elJuego.getCoordenadaXMargenDerecho()) / 2;
+        float suelo = elJuego.getCoordenadaYSuelo();
+        bh.consume(elJuego.getBolasCercanas(izq, suelo - 72, izq + 24, suelo).size());
+    }
+
+    @Benchmark
+    public void comprobarColisionesProtagonista() {
+        protagonista.comprobarColisiones();
+    }
+}
@@ -0,0 +1,74 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import moo.multimedia.PantallaVirtual;
+import moo.pang.multimedia.Juego;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Mide cuántos fotogramas completos (un tick de simulación más el dibujo de la
+ * escena) puede calcular el juego por segundo, según el número de bolas.
+ *
+ * Se dibuja en una PantallaVirtual, así que sólo se mide el coste del juego,
+ * no el de dibujar de verdad (para eso está BenchPrimitivas). Nadie dispara,
+ * así que las bolas no se dividen y su número se mantiene (salvo la que sale
+ * del techo de vez en cuando).
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BenchFotograma {
+    @Param({"10", "100", "1000", "10000"})
+    public int bolas;
+    /**
+     * Si es true, las bolas se mueven con la fórmula de sus arcos, como en las
+     * partidas que se pueden avanzar a saltos (ver Juego.setAvanceRapido()).
+     */
+    @Param({"false", "true"})
+    public boolean avanceRapido;
+
+    private Juego elJuego;
+
+    @Setup
+    public void preparar() {
+        elJuego = new Juego(new PantallaVirtual(640, 480));
+        elJuego.setSemillas(1, 2);
+        elJuego.setAvanceRapido(avanceRapido);
+        elJuego.empezarPartida();
+        Utilidades.llenarDeBolas(elJuego, bolas, new Random(3));
+    }
+
+    @Benchmark
+    public int fotograma() {
+        elJuego.nuevoFotogramaDeJuego();
+        return elJuego.getNumeroBolas();
+    }
+
+    @Benchmark
+    public int tick() {
+        elJuego.nuevoTickDeSimulacion();
+        return elJuego.getNumeroBolas();
+    }
+}
@@ -0,0 +1,70 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.bench;
+
+import java.util.concurrent.TimeUnit;
+import moo.multimedia.PantallaVirtual;
+import moo.pang.multimedia.Juego;
+import moo.pang.objetosanimados.Bola;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Mide lo que cuesta pinchar bolas hasta que desaparecen: cada bola grande se
+ * divide en dos, cada una de ellas en dos más... hasta que son tan pequeñas
+ * que desaparecen. Cada bola grande genera 15 pinchazos (1+2+4+8), cada uno
+ * con su destello.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BenchPinchar {
+    @Param({"1", "10", "100"})
+    public int bolasGrandes;
+
+    private Juego elJuego;
+
+    /**
+     * Se prepara la escena antes de cada llamada, porque la prueba se la carga.
+     */
+    @Setup(Level.Invocation)
+    public void preparar() {
+        if(elJuego == null) {
+            elJuego = new Juego(new PantallaVirtual(640, 480));
+            elJuego.setSemillas(1, 2);
+        }
+        elJuego.empezarPartida();
+        float izq = elJuego.getCoordenadaXMargenIzquierdo(), der = elJuego.getCoordenadaXMargenDerecho();
+        for(int i = 0; i < bolasGrandes; i++) {
+            float x = izq + Bola.RADIO_MAXIMO + (i * 37) % (der - izq - 2 * Bola.RADIO_MAXIMO);
+            elJuego.anyadirBola(x, 200, Bola.RADIO_MAXIMO, Bola.VELOCIDAD_HORIZONTAL, 0);
+        }
+    }
+
+    @Benchmark
+    public int pincharEnCascada() {
+        while(elJuego.getNumeroBolas() > 0) {
+            elJuego.getBola(elJuego.getNumeroBolas() - 1).pinchar();
+        }
+        return elJuego.getPuntuacion();
+    }
+}
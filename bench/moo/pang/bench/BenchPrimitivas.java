@@ -0,0 +1,88 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.bench;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import moo.multimedia.BufferTexto;
+import moo.multimedia.LienzoImagen;
+import moo.multimedia.Sprite;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Mide cada una de las primitivas de dibujo, sobre una imagen en memoria del
+ * mismo tamaño que la ventana del juego. La Ventana dibuja exactamente así
+ * (a través de un LienzoImagen), pero no se puede usar directamente porque
+ * necesita una pantalla de verdad.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BenchPrimitivas {
+    private LienzoImagen lienzo;
+    private Sprite sprite;
+    private final BufferTexto texto = new BufferTexto(32);
+    private int puntos = 0;
+
+    @Setup
+    public void preparar() {
+        lienzo = new LienzoImagen(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), null);
+        sprite = lienzo.creaSprite(100, 100, 50, 50);
+        sprite.getLienzo().dibujaCirculo(50, 50, 50, Color.red);
+    }
+
+    @Benchmark
+    public void circulo() {
+        lienzo.dibujaCirculo(320, 240, 30, Color.red);
+    }
+
+    @Benchmark
+    public void rectangulo() {
+        lienzo.dibujaRectangulo(300, 200, 40, 60, Color.yellow);
+    }
+
+    @Benchmark
+    public void triangulo() {
+        lienzo.dibujaTriangulo(320, 200, 290, 260, 350, 260, Color.orange);
+    }
+
+    @Benchmark
+    public void sprite() {
+        lienzo.dibujaSprite(sprite, 320, 240);
+    }
+
+    @Benchmark
+    public void texto() {
+        lienzo.escribeTexto("Puntos: 12345", 30, 20, 18, Color.white);
+    }
+
+    @Benchmark
+    public void textoSinCrearObjetos() {
+        texto.vaciar().anyadir("Puntos: ").anyadir(puntos++);
+        lienzo.escribeTexto(texto, 30, 20, 18, Color.white);
+    }
+
+    @Benchmark
+    public void borrar() {
+        lienzo.borrarLienzoOculto();
+    }
+}
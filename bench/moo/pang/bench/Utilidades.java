@@ -0,0 +1,49 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.bench;
+
+import java.util.Random;
+import moo.pang.multimedia.Juego;
+import moo.pang.objetosanimados.Bola;
+
+/**
+ * Funciones que usan varias pruebas de rendimiento para preparar la escena.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+class Utilidades {
+    /**
+     * Radios que puede tener una bola: el máximo, el 60% del máximo, etc.
+     */
+    static final float[] RADIOS = {50f, 30f, 18f, 10.8f};
+
+    /**
+     * Añade bolas en posiciones y con tamaños aleatorios, repartidas por todo
+     * el campo de juego (ya dentro, no entrando por el techo).
+     * @param elJuego
+     * @param cuantas Número de bolas a añadir.
+     * @param rnd Números aleatorios (con semilla fija, para que todas las
+     *        ejecuciones de la prueba tengan la misma escena).
+     */
+    static void llenarDeBolas(Juego elJuego, int cuantas, Random rnd) {
+        float izq = elJuego.getCoordenadaXMargenIzquierdo(), der = elJuego.getCoordenadaXMargenDerecho();
+        float suelo = elJuego.getCoordenadaYSuelo();
+        for(int i = 0; i < cuantas; i++) {
+            float r = RADIOS[rnd.nextInt(RADIOS.length)];
+            float x = izq + r + rnd.nextFloat() * (der - izq - 2 * r);
+            float y = r + rnd.nextFloat() * (suelo - 2 * r);
+            float vx = rnd.nextBoolean() ? Bola.VELOCIDAD_HORIZONTAL : -Bola.VELOCIDAD_HORIZONTAL;
+            elJuego.anyadirBola(x, y, r, vx, 0);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+package moo.multimedia;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Imagen con todas las letras de una fuente, de un tamaño y un color, ya dibujadas
+ * (un "atlas" de letras). Para escribir un texto, en vez de pedir a Java que
+ * calcule la forma de cada letra (que es bastante lento), se copia cada letra
+ * desde el atlas.
+ *
+ * Contiene los caracteres del 32 (espacio) al 255, para que también estén las
+ * letras con acento, la ñ, los signos ¡ y ¿... Los demás caracteres se escriben
+ * como un espacio.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+class AtlasFuente {
+    private static final char PRIMER_CARACTER = 32;
+    private static final char ULTIMO_CARACTER = 255;
+    /**
+     * Anchura máxima del atlas. Cuando una fila de letras llega a esta anchura,
+     * se empieza una fila nueva.
+     */
+    private static final int ANCHURA_ATLAS = 1024;
+
+    private final int medidaFuente;
+    private final Color color;
+    private final Image atlas;
+    /**
+     * Distancia entre la parte superior de las letras y la línea base, y altura total de cada letra.
+     */
+    private final int ascenso, altura;
+    /**
+     * Para cada carácter, posición de su dibujo en el atlas y anchura.
+     */
+    private final int[] atlasX = new int[ULTIMO_CARACTER - PRIMER_CARACTER + 1];
+    private final int[] atlasY = new int[ULTIMO_CARACTER - PRIMER_CARACTER + 1];
+    private final int[] anchura = new int[ULTIMO_CARACTER - PRIMER_CARACTER + 1];
+
+    /**
+     * Dibuja todas las letras de la fuente en un atlas.
+     * @param medidaFuente Tamaño de la fuente, en píxels.
+     * @param color Color de las letras.
+     * @param configuracion Configuración gráfica de la pantalla donde se usará
+     *        (para crear el atlas en un formato que se copie rápido), o null.
+     */
+    AtlasFuente(int medidaFuente, Color color, GraphicsConfiguration configuracion) {
+        this.medidaFuente = medidaFuente;
+        this.color = color;
+        Font fuente = new Font(Font.SANS_SERIF, Font.PLAIN, medidaFuente);
+
+        // Primero se miden las letras para saber dónde irá cada una y qué
+        // tamaño tiene que tener el atlas.
+        Graphics medidor = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).getGraphics();
+        FontMetrics metricas = medidor.getFontMetrics(fuente);
+        medidor.dispose();
+        ascenso = metricas.getAscent();
+        altura = metricas.getAscent() + metricas.getDescent();
+        int x = 0, y = 0;
+        for(char c = PRIMER_CARACTER; c <= ULTIMO_CARACTER; c++) {
+            int a = metricas.charWidth(c);
+            if(x + a > ANCHURA_ATLAS) {
+                x = 0;
+                y += altura;
+            }
+            atlasX[c - PRIMER_CARACTER] = x;
+            atlasY[c - PRIMER_CARACTER] = y;
+            anchura[c - PRIMER_CARACTER] = a;
+            x += a;
+        }
+        int alturaAtlas = y + altura;
+
+        atlas = configuracion != null
+                ? configuracion.createCompatibleImage(ANCHURA_ATLAS, alturaAtlas, Transparency.BITMASK)
+                : new BufferedImage(ANCHURA_ATLAS, alturaAtlas, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = atlas.getGraphics();
+        g.setFont(fuente);
+        g.setColor(color);
+        char[] letra = new char[1];
+        for(char c = PRIMER_CARACTER; c <= ULTIMO_CARACTER; c++) {
+            letra[0] = c;
+            int i = c - PRIMER_CARACTER;
+            // cada letra se recorta a su casilla, para que no se meta en la de al lado
+            g.setClip(atlasX[i], atlasY[i], anchura[i], altura);
+            g.drawChars(letra, 0, 1, atlasX[i], atlasY[i] + ascenso);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Indica si este atlas es de un tamaño y color determinados.
+     */
+    boolean es(int medidaFuente, Color color) {
+        return this.medidaFuente == medidaFuente && this.color.equals(color);
+    }
+
+    /**
+     * Escribe un texto copiando sus letras del atlas.
+     * @param g Objeto Graphics donde escribir.
+     * @param texto Caracteres del texto.
+     * @param longitud Número de caracteres a escribir (desde el principio del array).
+     * @param x Coordenada izquierda del inicio del texto.
+     * @param y Coordenada de la línea base del texto (como en Graphics.drawString()).
+     */
+    void escribe(Graphics g, char[] texto, int longitud, int x, int y) {
+        int arriba = y - ascenso;
+        for(int n = 0; n < longitud; n++) {
+            char c = texto[n];
+            int i = (c < PRIMER_CARACTER || c > ULTIMO_CARACTER) ? 0 : c - PRIMER_CARACTER;
+            int a = anchura[i];
+            int ax = atlasX[i], ay = atlasY[i];
+            g.drawImage(atlas, x, arriba, x + a, arriba + altura, ax, ay, ax + a, ay + altura, null);
+            x += a;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+package moo.multimedia;
+
+/**
+ * Texto que se puede reutilizar de un fotograma a otro. Es parecido a un
+ * StringBuilder, pero para escribirlo no hace falta convertirlo a String, y
+ * los números se convierten a texto sin crear ningún objeto nuevo. Así, escribir
+ * cada fotograma un texto que cambia (por ejemplo, la puntuación) no genera
+ * basura para el recolector.
+ *
+ * Uso típico:
+ * <pre>
+ *   texto.vaciar().anyadir("Puntos: ").anyadir(puntuacion);
+ *   lienzo.escribeTexto(texto, 30, 20, 18, Color.white);
+ * </pre>
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+public class BufferTexto {
+    private char[] caracteres;
+    private int longitud = 0;
+
+    /**
+     * Crea un texto vacío.
+     * @param capacidad Número de caracteres que se espera que quepan (si hacen
+     *        falta más, el buffer crece).
+     */
+    public BufferTexto(int capacidad) {
+        caracteres = new char[capacidad];
+    }
+
+    /**
+     * Borra el texto.
+     * @return Este mismo objeto, para poder encadenar llamadas.
+     */
+    public BufferTexto vaciar() {
+        longitud = 0;
+        return this;
+    }
+
+    /**
+     * Añade un texto al final.
+     * @param texto
+     * @return Este mismo objeto, para poder encadenar llamadas.
+     */
+    public BufferTexto anyadir(String texto) {
+        int n = texto.length();
+        asegurarCapacidad(longitud + n);
+        texto.getChars(0, n, caracteres, longitud);
+        longitud += n;
+        return this;
+    }
+
+    /**
+     * Añade al final el contenido de otro texto.
+     * @param texto
+     * @return Este mismo objeto, para poder encadenar llamadas.
+     */
+    public BufferTexto anyadir(BufferTexto texto) {
+        asegurarCapacidad(longitud + texto.longitud);
+        System.arraycopy(texto.caracteres, 0, caracteres, longitud, texto.longitud);
+        longitud += texto.longitud;
+        return this;
+    }
+
+    /**
+     * Añade un número entero al final, en base 10.
+     * @param numero
+     * @return Este mismo objeto, para poder encadenar llamadas.
+     */
+    public BufferTexto anyadir(int numero) {
+        // 11 caracteres caben en cualquier int: el signo y 10 cifras
+        asegurarCapacidad(longitud + 11);
+        // se trabaja con el número en negativo, porque -Integer.MIN_VALUE no cabe en un int
+        int negativo = numero < 0 ? numero : -numero;
+        if(numero < 0) {
+            caracteres[longitud++] = '-';
+        }
+        int cifras = 1;
+        for(int n = negativo / 10; n != 0; n /= 10) {
+            cifras++;
+        }
+        int i = longitud + cifras;
+        do {
+            caracteres[--i] = (char) ('0' - negativo % 10);
+            negativo /= 10;
+        } while(negativo != 0);
+        longitud += cifras;
+        return this;
+    }
+
+    /**
+     * Añade un número con decimales al final, redondeado a un número de
+     * decimales (por ejemplo, anyadir(3.14159, 2) añade "3.14").
+     * @param numero
+     * @param decimales Número de decimales, entre 0 y 9.
+     * @return Este mismo objeto, para poder encadenar llamadas.
+     */
+    public BufferTexto anyadir(double numero, int decimales) {
+        long escala = 1;
+        for(int d = 0; d < decimales; d++) {
+            escala *= 10;
+        }
+        long redondeado = Math.round(Math.abs(numero) * escala);
+        if(numero < 0 && redondeado != 0) {
+            anyadir("-");
+        }
+        long entero = redondeado / escala;
+        // la parte entera puede no caber en un int: se parte en trozos de 9 cifras
+        if(entero > Integer.MAX_VALUE) {
+            anyadir((int) (entero / 1000000000L));
+            anyadirConCeros((int) (entero % 1000000000L), 9);
+        } else {
+            anyadir((int) entero);
+        }
+        if(decimales > 0) {
+            anyadir(".");
+            anyadirConCeros((int) (redondeado % escala), decimales);
+        }
+        return this;
+    }
+
+    /**
+     * Añade un número positivo con ceros a la izquierda hasta tener un número de cifras.
+     */
+    private void anyadirConCeros(int numero, int cifras) {
+        asegurarCapacidad(longitud + cifras);
+        for(int i = longitud + cifras - 1; i >= longitud; i--) {
+            caracteres[i] = (char) ('0' + numero % 10);
+            numero /= 10;
+        }
+        longitud += cifras;
+    }
+
+    private void asegurarCapacidad(int capacidad) {
+        if(capacidad > caracteres.length) {
+            char[] nuevos = new char[Math.max(capacidad, caracteres.length * 2)];
+            System.arraycopy(caracteres, 0, nuevos, 0, longitud);
+            caracteres = nuevos;
+        }
+    }
+
+    /**
+     * Devuelve el array donde están los caracteres. Sólo son válidos los
+     * getLongitud() primeros.
+     * @return
+     */
+    public char[] getCaracteres() {
+        return caracteres;
+    }
+
+    public int getLongitud() {
+        return longitud;
+    }
+
+    @Override
+    public String toString() {
+        return new String(caracteres, 0, longitud);
+    }
+}
@@ -0,0 +1,124 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+package moo.multimedia;
+
+/**
+ * Cola circular de eventos de teclado (tecla pulsada o soltada, y en qué
+ * instante). Un solo hilo pone eventos (el hilo de eventos de Swing) y un solo
+ * hilo los saca (el hilo del juego), así que no hace falta ningún bloqueo:
+ * cada contador lo escribe un solo hilo, y al ser "volatile" el otro hilo
+ * siempre ve su último valor, y también los datos escritos antes de cambiarlo.
+ *
+ * Si la cola se llena (porque el juego no la vacía), los eventos nuevos se
+ * descartan hasta que el hilo que saca los eventos se da cuenta (ver
+ * resincronizar()), porque a partir del primero que se pierde ya no se sabe
+ * qué teclas están bajadas.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+class ColaEventosTeclado {
+    /**
+     * Número máximo de eventos en la cola. Debe ser una potencia de 2.
+     */
+    private static final int CAPACIDAD = 256;
+    private static final int MASCARA = CAPACIDAD - 1;
+
+    private final int[] teclas = new int[CAPACIDAD];
+    private final boolean[] pulsadas = new boolean[CAPACIDAD];
+    private final long[] instantes = new long[CAPACIDAD];
+
+    /**
+     * Número de eventos que se han puesto (sólo lo cambia el hilo que pone) y
+     * que se han sacado (sólo lo cambia el hilo que saca) desde que se creó la cola.
+     */
+    private volatile long puestos = 0, sacados = 0;
+    /**
+     * true si se ha descartado algún evento. Sólo lo pone a true el hilo que
+     * pone (cuando la cola está llena), y sólo lo pone a false el hilo que saca
+     * (en resincronizar()), así que ninguno de los dos pisa un cambio del otro.
+     */
+    private volatile boolean desbordada = false;
+
+    /**
+     * Pone un evento al final de la cola. Sólo lo debe llamar un hilo.
+     * @param tecla Código de la tecla.
+     * @param pulsada true si se ha pulsado, false si se ha soltado.
+     * @param instante Instante del evento, según System.nanoTime().
+     * @return false si se ha descartado el evento, porque la cola estaba llena
+     *         o porque ya se ha descartado otro y aún no se ha resincronizado.
+     */
+    boolean poner(int tecla, boolean pulsada, long instante) {
+        if(desbordada) {
+            return false;
+        }
+        long p = puestos;
+        if(p - sacados == CAPACIDAD) {
+            desbordada = true;
+            return false;
+        }
+        int i = (int) (p & MASCARA);
+        teclas[i] = tecla;
+        pulsadas[i] = pulsada;
+        instantes[i] = instante;
+        // al escribir el contador, los datos anteriores quedan visibles para el otro hilo
+        puestos = p + 1;
+        return true;
+    }
+
+    /**
+     * Indica si el primer evento de la cola ocurrió como muy tarde en un instante.
+     * Sólo lo debe llamar el hilo que saca los eventos.
+     * @param instante Instante, según System.nanoTime().
+     * @return true si hay un evento y ocurrió antes de ese instante (o en él).
+     */
+    boolean hayEventoHasta(long instante) {
+        long s = sacados;
+        return s != puestos && instantes[(int) (s & MASCARA)] - instante <= 0;
+    }
+
+    /**
+     * Código de la tecla del primer evento de la cola.
+     */
+    int getTecla() {
+        return teclas[(int) (sacados & MASCARA)];
+    }
+
+    /**
+     * Indica si el primer evento de la cola es de pulsar (true) o de soltar (false).
+     */
+    boolean isPulsada() {
+        return pulsadas[(int) (sacados & MASCARA)];
+    }
+
+    /**
+     * Quita el primer evento de la cola.
+     */
+    void sacar() {
+        sacados = sacados + 1;
+    }
+
+    /**
+     * Si se han descartado eventos, vacía la cola (los eventos que quedan son
+     * anteriores al que se ha perdido) y vuelve a aceptar eventos nuevos.
+     * Sólo lo debe llamar el hilo que saca los eventos.
+     * @return true si se habían descartado eventos, y por lo tanto ya no se
+     *         sabe qué teclas están bajadas.
+     */
+    boolean resincronizar() {
+        if(!desbordada) {
+            return false;
+        }
+        sacados = puestos;
+        desbordada = false;
+        return true;
+    }
+}
@@ -0,0 +1,149 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.multimedia;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Conjunto de medidas con nombre, cada una con su histograma: tiempos (en
+ * nanosegundos) de cada fase de un tick o de un fotograma (mover, comprobar
+ * colisiones, dibujar, mostrar...), y cantidades que se apuntan en cada tick
+ * (número de bolas, de disparos...). Sirve para saber, cuando un fotograma
+ * llega tarde, en qué se ha ido el tiempo.
+ *
+ * Las medidas se crean al principio, con anyadirTiempo() o anyadirCantidad(),
+ * que devuelven el número con el que después se apuntan los valores. Apuntar
+ * un valor no crea ningún objeto.
+ *
+ * Cada medida se debe apuntar siempre desde el mismo hilo. Si se leen desde
+ * otro hilo (por ejemplo, para escribirlas en un fichero) los números pueden
+ * estar a medio actualizar, pero para ver en qué se va el tiempo basta.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+public class Estadisticas {
+    private String[] nombres = new String[0];
+    private boolean[] tiempos = new boolean[0];
+    private Histograma[] histogramas = new Histograma[0];
+    private long[] ultimos = new long[0];
+    private int numeroMedidas = 0;
+
+    /**
+     * Añade una medida de tiempo.
+     * @param nombre Nombre de la medida (sin comas, para que el CSV sea correcto).
+     * @return Número de la medida, para apuntar valores con apuntar().
+     */
+    public synchronized int anyadirTiempo(String nombre) {
+        return anyadir(nombre, true);
+    }
+
+    /**
+     * Añade una medida de cantidad (por ejemplo, cuántos objetos hay).
+     * @param nombre Nombre de la medida (sin comas, para que el CSV sea correcto).
+     * @return Número de la medida, para apuntar valores con apuntar().
+     */
+    public synchronized int anyadirCantidad(String nombre) {
+        return anyadir(nombre, false);
+    }
+
+    private int anyadir(String nombre, boolean tiempo) {
+        int n = numeroMedidas;
+        // los arrays se sustituyen por unos nuevos, y no se modifican, para que
+        // otro hilo que esté apuntando mientras tanto no vea arrays a medias
+        String[] nuevosNombres = Arrays.copyOf(nombres, n + 1);
+        boolean[] nuevosTiempos = Arrays.copyOf(tiempos, n + 1);
+        Histograma[] nuevosHistogramas = Arrays.copyOf(histogramas, n + 1);
+        long[] nuevosUltimos = Arrays.copyOf(ultimos, n + 1);
+        nuevosNombres[n] = nombre;
+        nuevosTiempos[n] = tiempo;
+        nuevosHistogramas[n] = new Histograma();
+        nombres = nuevosNombres;
+        tiempos = nuevosTiempos;
+        histogramas = nuevosHistogramas;
+        ultimos = nuevosUltimos;
+        numeroMedidas = n + 1;
+        return n;
+    }
+
+    /**
+     * Apunta un valor de una medida.
+     * @param medida Número de la medida.
+     * @param valor Tiempo en nanosegundos, o cantidad.
+     */
+    public void apuntar(int medida, long valor) {
+        histogramas[medida].apuntar(valor);
+        ultimos[medida] = valor;
+    }
+
+    public int getNumeroMedidas() {
+        return numeroMedidas;
+    }
+
+    public String getNombre(int medida) {
+        return nombres[medida];
+    }
+
+    /**
+     * Indica si una medida es de tiempo (true) o de cantidad (false).
+     */
+    public boolean isTiempo(int medida) {
+        return tiempos[medida];
+    }
+
+    public Histograma getHistograma(int medida) {
+        return histogramas[medida];
+    }
+
+    /**
+     * Último valor apuntado de una medida.
+     */
+    public long getUltimo(int medida) {
+        return ultimos[medida];
+    }
+
+    /**
+     * Olvida todos los valores apuntados (para empezar un nuevo periodo de medida).
+     */
+    public void vaciar() {
+        for(int i = 0; i < numeroMedidas; i++) {
+            histogramas[i].vaciar();
+        }
+    }
+
+    /**
+     * Escribe la cabecera del formato CSV de escribirCsv().
+     * @param salida
+     */
+    public static void escribirCabeceraCsv(PrintWriter salida) {
+        salida.println("segundo,medida,tipo,muestras,media,p50,p99,p99.9,maximo");
+    }
+
+    /**
+     * Escribe una línea en formato CSV por cada medida. Los tiempos se escriben
+     * en microsegundos.
+     * @param salida
+     * @param segundo Instante al que corresponden las medidas (la primera columna).
+     */
+    public void escribirCsv(PrintWriter salida, double segundo) {
+        for(int i = 0; i < numeroMedidas; i++) {
+            Histograma h = histogramas[i];
+            double escala = tiempos[i] ? 1e-3 : 1;
+            salida.println(String.format(Locale.ROOT, "%.3f,%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f",
+                    segundo, nombres[i], tiempos[i] ? "us" : "cantidad", h.getTotal(),
+                    h.getMedia() * escala, h.getPercentil(50) * escala, h.getPercentil(99) * escala,
+                    h.getPercentil(99.9) * escala, h.getMaximo() * escala));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.multimedia;
+
+/**
+ * Histograma de valores positivos (normalmente, tiempos en nanosegundos), para
+ * saber no sólo cuánto tarda algo de media, sino también cuánto tarda las peores
+ * veces (los percentiles 99 y 99,9, y el máximo).
+ *
+ * No se guardan los valores, sino cuántos caen en cada intervalo. Los intervalos
+ * crecen con el valor: hay 16 entre cada potencia de 2 y la siguiente (de 1024
+ * a 2048, de 2048 a 4096...), así que un percentil se conoce con un error de
+ * menos del 7%, y sólo hacen falta unos mil contadores para cualquier valor de
+ * un long. Apuntar un valor no crea ningún objeto y es sólo un par de
+ * operaciones con bits, así que se puede hacer muchas veces por fotograma.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+public class Histograma {
+    /**
+     * Bits con los que se divide cada potencia de 2 (2^4 = 16 intervalos).
+     */
+    private static final int BITS_SUBINTERVALO = 4;
+    private static final int SUBINTERVALOS = 1 << BITS_SUBINTERVALO;
+
+    private final long[] contadores = new long[(64 - BITS_SUBINTERVALO + 1) * SUBINTERVALOS];
+    private long total = 0, suma = 0, maximo = 0;
+
+    /**
+     * Apunta un valor. Los negativos se apuntan como 0.
+     * @param valor
+     */
+    public void apuntar(long valor) {
+        if(valor < 0) {
+            valor = 0;
+        }
+        contadores[intervalo(valor)]++;
+        total++;
+        suma += valor;
+        if(valor > maximo) {
+            maximo = valor;
+        }
+    }
+
+    /**
+     * Número del intervalo donde cae un valor. Los valores menores que
+     * SUBINTERVALOS tienen un intervalo cada uno.
+     */
+    private static int intervalo(long valor) {
+        if(valor < SUBINTERVALOS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) (valor >>> (exponente - BITS_SUBINTERVALO)) & (SUBINTERVALOS - 1);
+        return (exponente - BITS_SUBINTERVALO + 1) * SUBINTERVALOS + sub;
+    }
+
+    /**
+     * Mayor valor que cae en un intervalo.
+     */
+    private static long maximoIntervalo(int intervalo) {
+        if(intervalo < SUBINTERVALOS) {
+            return intervalo;
+        }
+        int exponente = intervalo / SUBINTERVALOS + BITS_SUBINTERVALO - 1;
+        long sub = intervalo % SUBINTERVALOS;
+        return ((SUBINTERVALOS + sub + 1) << (exponente - BITS_SUBINTERVALO)) - 1;
+    }
+
+    /**
+     * Devuelve un percentil: el valor por debajo del cual (o igual) están un
+     * porcentaje de los valores apuntados. Como los valores no se guardan,
+     * se devuelve el mayor valor de su intervalo (pero nunca más que el máximo).
+     * @param porcentaje Entre 0 y 100 (por ejemplo, 99.9).
+     * @return El percentil, o 0 si no se ha apuntado ningún valor.
+     */
+    public long getPercentil(double porcentaje) {
+        if(total == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(total * porcentaje / 100));
+        long acumulado = 0;
+        for(int i = 0; i < contadores.length; i++) {
+            acumulado += contadores[i];
+            if(acumulado >= objetivo) {
+                return Math.min(maximoIntervalo(i), maximo);
+            }
+        }
+        return maximo;
+    }
+
+    public long getMaximo() {
+        return maximo;
+    }
+
+    /**
+     * Número de valores apuntados.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Media de los valores apuntados, o 0 si no hay ninguno.
+     */
+    public double getMedia() {
+        return total == 0 ? 0 : (double) suma / total;
+    }
+
+    /**
+     * Olvida todos los valores apuntados.
+     */
+    public void vaciar() {
+        for(int i = 0; i < contadores.length; i++) {
+            contadores[i] = 0;
+        }
+        total = 0;
+        suma = 0;
+        maximo = 0;
+    }
+}
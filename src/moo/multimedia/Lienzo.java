@@ -0,0 +1,119 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+package moo.multimedia;
+
+import java.awt.Color;
+
+/**
+ * Interfaz que describe las primitivas gráficas con las que se puede dibujar
+ * sobre un lienzo: textos, triángulos, rectángulos y círculos.
+ *
+ * Separando estas operaciones en una interfaz, los objetos del juego no necesitan
+ * saber si están dibujando en una ventana de verdad o en cualquier otro sitio
+ * (por ejemplo, un lienzo que no muestra nada y sólo cuenta las llamadas).
+ *
+ * Igual que en la clase Ventana, las coordenadas son <b>coordenadas de pantalla</b>:
+ * el origen (0,0) está en la esquina superior izquierda.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+public interface Lienzo {
+    /**
+     * Escribe un texto en el lienzo.
+     * @param texto El texto a escribir.
+     * @param x Coordenada izquierda del inicio del texto.
+     * @param y Coordenada superior del inicio del texto.
+     * @param medidaFuente Tamaño de la fuente, en píxels.
+     * @param color Color del texto.
+     */
+    public void escribeTexto(String texto, float x, float y, int medidaFuente, Color color);
+
+    /**
+     * Escribe un texto guardado en un BufferTexto. Sirve para escribir textos
+     * que cambian en cada fotograma (por ejemplo, la puntuación) sin tener que
+     * crear un String nuevo cada vez.
+     * @param texto El texto a escribir.
+     * @param x Coordenada izquierda del inicio del texto.
+     * @param y Coordenada superior del inicio del texto.
+     * @param medidaFuente Tamaño de la fuente, en píxels.
+     * @param color Color del texto.
+     */
+    public void escribeTexto(BufferTexto texto, float x, float y, int medidaFuente, Color color);
+
+    /**
+     * Dibuja un triángulo, dadas tres coordenadas en píxeles y un color.
+     * @param x1,y1 Coordenadas x,y del primer punto.
+     * @param x2,y2 Coordenadas x,y del segundo punto.
+     * @param x3,y3 Coordenadas x,y del tercer punto.
+     * @param color Color del triángulo.
+     */
+    public void dibujaTriangulo(float x1, float y1, float x2, float y2, float x3, float y3, Color color);
+
+    /**
+     * Dibuja un rectángulo, dadas las coordenadas de su esquina superior izquierda,
+     * su anchura y su altura.
+     * @param izquierda Coordenada del lado más a la izquierda del rectángulo.
+     * @param arriba Coordenada del lado superior del rectángulo.
+     * @param ancho Anchura del rectángulo, en pixels.
+     * @param alto Altura del rectángulo, en píxels.
+     * @param color Color del rectángulo.
+     */
+    public void dibujaRectangulo(float izquierda, float arriba, float ancho, float alto, Color color);
+
+    /**
+     * Dibuja un círculo.
+     * @param centroX Coordenada X del centro del círculo (en píxels).
+     * @param centroY Coordenada Y del centro del círculo (en píxels).
+     * @param radio Radio del círculo, en píxels.
+     * @param color Color del círculo.
+     */
+    public void dibujaCirculo(float centroX, float centroY, float radio, Color color);
+
+    /**
+     * Borra el contenido del lienzo (lo deja todo de color negro)
+     */
+    public void borrarLienzoOculto();
+
+    /**
+     * Devuelve la anchura del lienzo, en píxels.
+     * @return La anchura del lienzo.
+     */
+    public float getAnchuraLienzo();
+
+    /**
+     * Devuelve la altura del lienzo, en píxels.
+     * @return La altura del lienzo.
+     */
+    public float getAlturaLienzo();
+
+    /**
+     * Crea un sprite vacío (transparente) en el formato que más rápido se pueda
+     * dibujar en este lienzo. Para dibujar su contenido, se usa el lienzo que
+     * devuelve su método getLienzo().
+     * @param ancho Anchura del sprite, en píxels.
+     * @param alto Altura del sprite, en píxels.
+     * @param origenX Coordenada X, dentro del sprite, del punto que se colocará
+     *        en las coordenadas que se pasen a dibujaSprite().
+     * @param origenY Coordenada Y, dentro del sprite, de ese mismo punto.
+     * @return El sprite creado.
+     */
+    public Sprite creaSprite(int ancho, int alto, float origenX, float origenY);
+
+    /**
+     * Dibuja un sprite (creado con creaSprite()) de manera que su origen quede
+     * en unas coordenadas dadas.
+     * @param sprite Sprite a dibujar.
+     * @param x Coordenada X donde se colocará el origen del sprite.
+     * @param y Coordenada Y donde se colocará el origen del sprite.
+     */
+    public void dibujaSprite(Sprite sprite, float x, float y);
+}
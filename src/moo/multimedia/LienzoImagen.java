@@ -0,0 +1,178 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+package moo.multimedia;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lienzo que dibuja sobre una imagen en memoria. La Ventana lo usa para su
+ * lienzo oculto, y también se usa para dibujar dentro de los sprites.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+public class LienzoImagen implements Lienzo {
+    /**
+     * Imagen donde se dibuja.
+     */
+    private final Image imagen;
+    /**
+     * Graphics es una clase a través de la cual podremos dibujar en la imagen.
+     */
+    private final Graphics fg;
+    /**
+     * Configuración gráfica de la pantalla donde se acabará mostrando la imagen.
+     * Se usa para crear sprites en el formato que más rápido se pueda copiar.
+     * Puede ser null.
+     */
+    private final GraphicsConfiguration configuracion;
+
+    /**
+     * Crea un lienzo que dibuja sobre una imagen.
+     * @param imagen La imagen donde se dibujará.
+     * @param configuracion Configuración gráfica de la pantalla donde se mostrará
+     *        la imagen (o null si no se conoce).
+     */
+    public LienzoImagen(Image imagen, GraphicsConfiguration configuracion) {
+        this.imagen = imagen;
+        this.configuracion = configuracion;
+        this.fg = imagen.getGraphics();
+    }
+
+    /**
+     * Devuelve el objeto Graphics con el que se dibuja en la imagen.
+     * @return
+     */
+    public Graphics getGraphics() {
+        return fg;
+    }
+
+    /**
+     * Atlas de letras de cada tamaño y color que se ha usado. Normalmente hay
+     * muy pocos, así que se buscan recorriendo la lista. El último que se ha
+     * usado se mira primero.
+     */
+    private final List<AtlasFuente> atlas = new ArrayList<AtlasFuente>();
+    private AtlasFuente ultimoAtlas = null;
+    /**
+     * Array donde se copian los caracteres de los String que se escriben.
+     */
+    private char[] caracteres = new char[64];
+
+    private AtlasFuente getAtlas(int medidaFuente, Color color) {
+        if(ultimoAtlas != null && ultimoAtlas.es(medidaFuente, color)) {
+            return ultimoAtlas;
+        }
+        for(int i = 0; i < atlas.size(); i++) {
+            if(atlas.get(i).es(medidaFuente, color)) {
+                ultimoAtlas = atlas.get(i);
+                return ultimoAtlas;
+            }
+        }
+        ultimoAtlas = new AtlasFuente(medidaFuente, color, configuracion);
+        atlas.add(ultimoAtlas);
+        return ultimoAtlas;
+    }
+
+    /**
+     * Escribe un texto copiando sus letras de un atlas (ver AtlasFuente). La
+     * primera vez que se usa un tamaño y un color, se crea su atlas.
+     */
+    public void escribeTexto(String texto, float x, float y, int medidaFuente, Color color) {
+        int n = texto.length();
+        if(n > caracteres.length) {
+            caracteres = new char[n];
+        }
+        texto.getChars(0, n, caracteres, 0);
+        getAtlas(medidaFuente, color).escribe(fg, caracteres, n, (int)x, (int)y);
+    }
+
+    public void escribeTexto(BufferTexto texto, float x, float y, int medidaFuente, Color color) {
+        getAtlas(medidaFuente, color).escribe(fg, texto.getCaracteres(), texto.getLongitud(), (int)x, (int)y);
+    }
+
+    private int[] xTriangle = new int[3];
+    private int[] yTriangle = new int[3];
+
+    public void dibujaTriangulo(float x1, float y1, float x2, float y2, float x3, float y3, Color color){
+        xTriangle[0] = (int)x1; xTriangle[1] = (int)x2; xTriangle[2] = (int)x3;
+        yTriangle[0] = (int)y1; yTriangle[1] = (int)y2; yTriangle[2] = (int)y3;
+        fg.setColor(color);
+        fg.fillPolygon(xTriangle,yTriangle,3);
+    }
+
+    public void dibujaRectangulo(float izquierda, float arriba, float ancho, float alto, Color color) {
+        fg.setColor(color);
+        fg.fillRect((int)izquierda, (int)arriba, (int)ancho, (int)alto);
+    }
+
+    public void dibujaCirculo(float centroX, float centroY, float radio, Color color) {
+        fg.setColor(color);
+        fg.fillArc((int)(centroX - radio), (int)(centroY - radio), (int)(radio*2f),(int)(radio*2f) , 0, 360);
+    }
+
+    public void borrarLienzoOculto() {
+        fg.setColor(Color.black);
+        fg.fillRect(0, 0, (int)getAnchuraLienzo(), (int)getAlturaLienzo());
+    }
+
+    public float getAnchuraLienzo() {
+        return imagen.getWidth(null);
+    }
+
+    public float getAlturaLienzo() {
+        return imagen.getHeight(null);
+    }
+
+    /**
+     * Crea un sprite transparente. Si se conoce la pantalla donde se mostrará,
+     * la imagen se crea en un formato compatible con ella, para que Java la
+     * pueda guardar en la memoria de la tarjeta gráfica y copiarla muy rápido.
+     */
+    public Sprite creaSprite(int ancho, int alto, float origenX, float origenY) {
+        Image img = configuracion != null
+                ? configuracion.createCompatibleImage(ancho, alto, Transparency.BITMASK)
+                : new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_ARGB);
+        return new Sprite(img, new LienzoImagen(img, configuracion), ancho, alto, origenX, origenY);
+    }
+
+    /**
+     * Copia una imagen a la misma posición de este lienzo (por ejemplo, el fondo).
+     * @param imagen Imagen a copiar.
+     */
+    public void copiaImagen(Image imagen) {
+        fg.drawImage(imagen, 0, 0, null);
+    }
+
+    /**
+     * Copia una zona rectangular de una imagen (que debe tener el mismo tamaño que
+     * este lienzo) a la misma zona de este lienzo.
+     * @param imagen Imagen a copiar.
+     * @param x Coordenada izquierda de la zona.
+     * @param y Coordenada superior de la zona.
+     * @param ancho Anchura de la zona.
+     * @param alto Altura de la zona.
+     */
+    public void copiaImagen(Image imagen, int x, int y, int ancho, int alto) {
+        fg.drawImage(imagen, x, y, x + ancho, y + alto, x, y, x + ancho, y + alto, null);
+    }
+
+    public void dibujaSprite(Sprite sprite, float x, float y) {
+        fg.drawImage(sprite.getImagen(), (int)(x - sprite.getOrigenX()), (int)(y - sprite.getOrigenY()), null);
+    }
+}
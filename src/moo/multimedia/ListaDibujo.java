@@ -0,0 +1,312 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.multimedia;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lienzo que no dibuja nada: apunta las órdenes de dibujo que recibe (dibuja
+ * este círculo, escribe este texto...) en una lista, para que otro hilo las
+ * repita después sobre un lienzo de verdad. Sirve para que un hilo simule el
+ * juego y "dibuje" cada tick en una ListaDibujo (que es muy rápido, porque sólo
+ * se guardan unos números), mientras otro hilo pinta en la pantalla la última
+ * lista terminada. Así, un fotograma lento de pintar no retrasa la simulación.
+ *
+ * Por dentro hay tres listas (un "triple buffer"):
+ * <ul>
+ *   <li>la que está llenando el hilo que dibuja,</li>
+ *   <li>la que está repitiendo el hilo que pinta,</li>
+ *   <li>y la última que se ha terminado, que espera a que el hilo que pinta
+ *       la recoja.</li>
+ * </ul>
+ * Al terminar una lista (publicar()), el hilo que dibuja la cambia por la que
+ * espera; y al empezar a pintar (reproducir()), el hilo que pinta cambia la
+ * suya por la que espera, si es más nueva. Los cambios se hacen con una sola
+ * operación atómica sobre un entero, así que ningún hilo espera nunca al otro,
+ * y cada lista sólo la usa un hilo a la vez. Si el hilo que pinta va lento, las
+ * listas que no le ha dado tiempo a recoger simplemente se descartan.
+ *
+ * Sólo un hilo debe dibujar en la lista y llamar a publicar(), y sólo otro
+ * debe llamar a reproducir() y esperarNueva(). Las listas se reutilizan, así que
+ * después de las primeras no se crea ningún objeto nuevo.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+public class ListaDibujo implements Lienzo {
+    /**
+     * Bit que indica que la lista que espera es nueva (el hilo que pinta aún no
+     * la ha visto), y máscara para sacar el número de la lista.
+     */
+    private static final int NUEVA = 4, NUMERO = 3;
+
+    /**
+     * Lienzo donde se crean los sprites, y del que se sacan las medidas.
+     */
+    private final Lienzo destino;
+    private final Ordenes[] listas = { new Ordenes(), new Ordenes(), new Ordenes() };
+    /**
+     * Número de la lista que se está llenando (sólo lo usa el hilo que dibuja)
+     * y de la que se está pintando (sólo lo usa el hilo que pinta).
+     */
+    private int llenando = 0, pintando = 1;
+    /**
+     * Número de la lista que espera, más el bit NUEVA si el hilo que pinta aún no la ha recogido.
+     */
+    private final AtomicInteger esperando = new AtomicInteger(2);
+    /**
+     * Hilo que está en esperarNueva(), para despertarlo al publicar una lista.
+     */
+    private volatile Thread hiloEsperando = null;
+
+    /**
+     * Crea una lista de dibujo vacía.
+     * @param destino Lienzo donde se repetirán las órdenes. Se usa para crear
+     *        los sprites (para que tengan un formato que se copie rápido en él)
+     *        y para saber las medidas del lienzo.
+     */
+    public ListaDibujo(Lienzo destino) {
+        this.destino = destino;
+    }
+
+    /**
+     * Termina la lista que se está llenando y la deja preparada para que la
+     * recoja el hilo que pinta. Las siguientes órdenes se apuntan en una lista vacía.
+     */
+    public void publicar() {
+        int anterior = esperando.getAndSet(llenando | NUEVA);
+        llenando = anterior & NUMERO;
+        listas[llenando].vaciar();
+        Thread t = hiloEsperando;
+        if(t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Indica si hay una lista publicada que el hilo que pinta aún no ha recogido.
+     */
+    public boolean hayNueva() {
+        return (esperando.get() & NUEVA) != 0;
+    }
+
+    /**
+     * Duerme el hilo que pinta hasta que se publica una lista nueva, o hasta
+     * que pasa un tiempo, o hasta que alguien lo despierta (con LockSupport.unpark()).
+     * @param nanos Tiempo máximo de espera, en nanosegundos.
+     * @return true si hay una lista nueva.
+     */
+    public boolean esperarNueva(long nanos) {
+        if(hayNueva()) {
+            return true;
+        }
+        hiloEsperando = Thread.currentThread();
+        // se vuelve a mirar: puede haberse publicado justo antes de apuntar el hilo
+        if(!hayNueva()) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        hiloEsperando = null;
+        return hayNueva();
+    }
+
+    /**
+     * Repite sobre un lienzo las órdenes de la última lista publicada (o, si
+     * no se ha publicado ninguna desde la última vez, las de la misma lista
+     * que la última vez).
+     * @param lienzo Lienzo donde se dibuja.
+     */
+    public void reproducir(Lienzo lienzo) {
+        if(hayNueva()) {
+            int anterior = esperando.getAndSet(pintando);
+            pintando = anterior & NUMERO;
+        }
+        listas[pintando].reproducir(lienzo);
+    }
+
+    public void escribeTexto(String texto, float x, float y, int medidaFuente, Color color) {
+        listas[llenando].texto(texto, x, y, medidaFuente, color);
+    }
+
+    public void escribeTexto(BufferTexto texto, float x, float y, int medidaFuente, Color color) {
+        listas[llenando].texto(texto, x, y, medidaFuente, color);
+    }
+
+    public void dibujaTriangulo(float x1, float y1, float x2, float y2, float x3, float y3, Color color) {
+        Ordenes o = listas[llenando];
+        int d = o.orden(TRIANGULO, color, 6);
+        o.datos[d] = x1; o.datos[d + 1] = y1;
+        o.datos[d + 2] = x2; o.datos[d + 3] = y2;
+        o.datos[d + 4] = x3; o.datos[d + 5] = y3;
+    }
+
+    public void dibujaRectangulo(float izquierda, float arriba, float ancho, float alto, Color color) {
+        Ordenes o = listas[llenando];
+        int d = o.orden(RECTANGULO, color, 4);
+        o.datos[d] = izquierda; o.datos[d + 1] = arriba;
+        o.datos[d + 2] = ancho; o.datos[d + 3] = alto;
+    }
+
+    public void dibujaCirculo(float centroX, float centroY, float radio, Color color) {
+        Ordenes o = listas[llenando];
+        int d = o.orden(CIRCULO, color, 3);
+        o.datos[d] = centroX; o.datos[d + 1] = centroY; o.datos[d + 2] = radio;
+    }
+
+    public void dibujaSprite(Sprite sprite, float x, float y) {
+        Ordenes o = listas[llenando];
+        int d = o.orden(SPRITE, sprite, 2);
+        o.datos[d] = x; o.datos[d + 1] = y;
+    }
+
+    /**
+     * Borra la lista que se está llenando y apunta que hay que borrar el lienzo.
+     */
+    public void borrarLienzoOculto() {
+        Ordenes o = listas[llenando];
+        o.vaciar();
+        o.orden(BORRAR, null, 0);
+    }
+
+    /**
+     * Crea el sprite en el lienzo de destino. Se puede dibujar en él enseguida
+     * (antes de publicar la lista que lo usa).
+     */
+    public Sprite creaSprite(int ancho, int alto, float origenX, float origenY) {
+        return destino.creaSprite(ancho, alto, origenX, origenY);
+    }
+
+    public float getAnchuraLienzo() {
+        return destino.getAnchuraLienzo();
+    }
+
+    public float getAlturaLienzo() {
+        return destino.getAlturaLienzo();
+    }
+
+    /**
+     * Tipos de orden.
+     */
+    private static final int TRIANGULO = 0, RECTANGULO = 1, CIRCULO = 2, SPRITE = 3,
+            TEXTO = 4, BORRAR = 5;
+
+    /**
+     * Una lista de órdenes. Cada orden tiene un tipo, un objeto (el color, el
+     * sprite o el texto) y unos cuantos números seguidos en el array de datos.
+     */
+    private static final class Ordenes {
+        int[] tipos = new int[256];
+        Object[] objetos = new Object[256];
+        float[] datos = new float[1024];
+        int numeroOrdenes = 0, numeroDatos = 0;
+        /**
+         * Copia de cada texto escrito (el original puede cambiar antes de que
+         * se reproduzca la lista).
+         */
+        final List<BufferTexto> textos = new ArrayList<BufferTexto>();
+        int numeroTextos = 0;
+
+        void vaciar() {
+            // se quitan las referencias, para no retener sprites o colores que ya no se usan
+            for(int i = 0; i < numeroOrdenes; i++) {
+                objetos[i] = null;
+            }
+            numeroOrdenes = 0;
+            numeroDatos = 0;
+            numeroTextos = 0;
+        }
+
+        /**
+         * Añade una orden y reserva sitio para sus números.
+         * @return Posición del primer número de la orden en el array de datos.
+         */
+        int orden(int tipo, Object objeto, int datosOrden) {
+            if(numeroOrdenes == tipos.length) {
+                tipos = Arrays.copyOf(tipos, tipos.length * 2);
+                objetos = Arrays.copyOf(objetos, objetos.length * 2);
+            }
+            if(numeroDatos + datosOrden > datos.length) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, numeroDatos + datosOrden));
+            }
+            tipos[numeroOrdenes] = tipo;
+            objetos[numeroOrdenes] = objeto;
+            numeroOrdenes++;
+            int d = numeroDatos;
+            numeroDatos += datosOrden;
+            return d;
+        }
+
+        void texto(String texto, float x, float y, int medidaFuente, Color color) {
+            BufferTexto copia = siguienteTexto();
+            copia.vaciar().anyadir(texto);
+            anyadirTexto(copia, x, y, medidaFuente, color);
+        }
+
+        void texto(BufferTexto texto, float x, float y, int medidaFuente, Color color) {
+            BufferTexto copia = siguienteTexto();
+            copia.vaciar().anyadir(texto);
+            anyadirTexto(copia, x, y, medidaFuente, color);
+        }
+
+        private BufferTexto siguienteTexto() {
+            if(numeroTextos == textos.size()) {
+                textos.add(new BufferTexto(32));
+            }
+            return textos.get(numeroTextos++);
+        }
+
+        private void anyadirTexto(BufferTexto copia, float x, float y, int medidaFuente, Color color) {
+            // el objeto de la orden es el color; el texto está en la lista de
+            // textos, en el mismo orden que las órdenes TEXTO
+            int d = orden(TEXTO, color, 3);
+            datos[d] = x;
+            datos[d + 1] = y;
+            datos[d + 2] = medidaFuente;
+        }
+
+        void reproducir(Lienzo l) {
+            int d = 0, t = 0;
+            for(int i = 0; i < numeroOrdenes; i++) {
+                switch(tipos[i]) {
+                    case TRIANGULO:
+                        l.dibujaTriangulo(datos[d], datos[d + 1], datos[d + 2], datos[d + 3],
+                                datos[d + 4], datos[d + 5], (Color) objetos[i]);
+                        d += 6;
+                        break;
+                    case RECTANGULO:
+                        l.dibujaRectangulo(datos[d], datos[d + 1], datos[d + 2], datos[d + 3], (Color) objetos[i]);
+                        d += 4;
+                        break;
+                    case CIRCULO:
+                        l.dibujaCirculo(datos[d], datos[d + 1], datos[d + 2], (Color) objetos[i]);
+                        d += 3;
+                        break;
+                    case SPRITE:
+                        l.dibujaSprite((Sprite) objetos[i], datos[d], datos[d + 1]);
+                        d += 2;
+                        break;
+                    case TEXTO:
+                        l.escribeTexto(textos.get(t++), datos[d], datos[d + 1], (int) datos[d + 2], (Color) objetos[i]);
+                        d += 3;
+                        break;
+                    case BORRAR:
+                        l.borrarLienzoOculto();
+                        break;
+                }
+            }
+        }
+    }
+}
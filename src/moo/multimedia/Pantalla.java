@@ -0,0 +1,129 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+package moo.multimedia;
+
+/**
+ * Una Pantalla es un Lienzo que además se puede mostrar (fotograma a fotograma)
+ * y que informa del estado de las teclas de control.
+ *
+ * La clase Ventana es la implementación "de verdad", que abre una ventana en el
+ * escritorio. La clase PantallaVirtual no muestra nada, y sirve para ejecutar el
+ * juego en máquinas sin pantalla o para medir lo rápido que va la simulación.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+public interface Pantalla extends Lienzo {
+    /**
+     * Devuelve el lienzo del fondo: una capa aparte donde se dibujan las cosas
+     * que no cambian de un fotograma a otro (paredes, suelo...). Lo que se
+     * dibuja en el fondo no se ve hasta que se llama a restaurarFondo().
+     * @return El lienzo del fondo. Al crear la pantalla, está todo negro.
+     */
+    public Lienzo getFondo();
+
+    /**
+     * Copia todo el fondo al lienzo oculto, tapando lo que hubiera. Es como
+     * borrarLienzoOculto(), pero dejando el fondo dibujado en vez de negro,
+     * con una sola copia de imagen.
+     */
+    public void restaurarFondo();
+
+    /**
+     * Copia una zona rectangular del fondo al lienzo oculto. Sirve para borrar
+     * un objeto que se ha movido sin tener que volver a dibujar toda la pantalla.
+     * @param izquierda Coordenada del lado izquierdo de la zona.
+     * @param arriba Coordenada del lado superior de la zona.
+     * @param ancho Anchura de la zona, en píxels.
+     * @param alto Altura de la zona, en píxels.
+     */
+    public void restaurarFondo(float izquierda, float arriba, float ancho, float alto);
+
+    /**
+     * Muestra el contenido (dibujo) del lienzo oculto.
+     */
+    public void mostrarLienzo();
+
+    /**
+     * Indica si lo que se muestra en la pantalla lo está viendo alguien en tiempo
+     * real. Si es así, el juego debe avanzar al ritmo del reloj. Si no (por
+     * ejemplo, en una PantallaVirtual), el juego puede simular tan rápido como pueda.
+     * @return true si la pantalla es de tiempo real.
+     */
+    public boolean isTiempoReal();
+
+    /**
+     * Actualiza el estado de las teclas con lo que ha pasado en el teclado hasta
+     * un instante. El juego lo llama una vez antes de cada tick, con el instante
+     * que corresponde al final del tick, y así lo que devuelven los métodos
+     * isPulsado...() durante el tick es exactamente lo que se ha pulsado hasta ese
+     * momento. Una tecla que se ha pulsado y soltado entre dos ticks se considera
+     * pulsada durante el tick siguiente, para que no se pierda.
+     * @param instante Instante, según System.nanoTime().
+     */
+    public void actualizarTeclas(long instante);
+
+    /**
+     * Comprueba si la flecha "Arriba" del cursor está pulsada o no.
+     * @return true si está pulsada. false en caso contrario.
+     */
+    public boolean isPulsadoArriba();
+
+    /**
+     * Comprueba si la flecha "Abajo" del cursor está pulsada o no.
+     * @return true si está pulsada. false en caso contrario.
+     */
+    public boolean isPulsadoAbajo();
+
+    /**
+     * Comprueba si la flecha "Izquierda" del cursor está pulsada o no.
+     * @return true si está pulsada. false en caso contrario.
+     */
+    public boolean isPulsadoIzquierda();
+
+    /**
+     * Comprueba si la flecha "Derecha" del cursor está pulsada o no.
+     * @return true si está pulsada. false en caso contrario.
+     */
+    public boolean isPulsadoDerecha();
+
+    /**
+     * Comprueba si la barra espaciadora está pulsada o no.
+     * <b>NOTA:</b> a diferencia de los cursores, la barra espaciadora debe
+     * soltarse y volver a pulsarse para que la función devuelva "true" dos veces.
+     * @return true si está pulsada. false en caso contrario.
+     */
+    public boolean isPulsadoEspacio();
+
+    /**
+     * Comprueba si se ha pulsado la tecla que muestra u oculta las estadísticas
+     * de rendimiento (F3). Como la barra espaciadora, debe soltarse y volver a
+     * pulsarse para que la función devuelva "true" dos veces.
+     * @return true si se ha pulsado. false en caso contrario.
+     */
+    public boolean isPulsadoEstadisticas();
+
+    /**
+     * Deja el programa dormido (sin gastar CPU) hasta que se pulse la barra
+     * espaciadora, o hasta que pase un tiempo máximo. Como isPulsadoEspacio(),
+     * cada pulsación sólo cuenta una vez: si la barra ya se había pulsado y nadie
+     * lo ha consultado todavía, vuelve enseguida.
+     * @param milisegundos Tiempo máximo de espera. Si es 0, espera indefinidamente.
+     * @return true si se ha pulsado la barra espaciadora; false si se ha acabado
+     *         el tiempo de espera (o si la pantalla no tiene teclado).
+     */
+    public boolean esperarEspacio(long milisegundos);
+
+    /**
+     * Cierra la pantalla.
+     */
+    public void cerrar();
+}
@@ -0,0 +1,176 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+package moo.multimedia;
+
+import java.awt.Color;
+
+/**
+ * Pantalla que no muestra nada por ningún sitio: no abre ventanas ni necesita
+ * un servidor gráfico. Se limita a contar cuántas primitivas gráficas se le han
+ * pedido dibujar y cuántos fotogramas se han mostrado.
+ *
+ * A diferencia de la Ventana, el método mostrarLienzo() no limita el número
+ * de fotogramas por segundo, así que el juego irá tan rápido como pueda. Esto
+ * es útil para ejecutar la simulación en servidores, o para medir cuántos
+ * fotogramas por segundo es capaz de calcular el juego sin contar el coste de
+ * dibujar por pantalla.
+ *
+ * Ninguna tecla se considera pulsada.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+public class PantallaVirtual implements Pantalla {
+    private final float ancho, alto;
+
+    /**
+     * Contadores de primitivas dibujadas y de fotogramas mostrados.
+     */
+    private long primitivas = 0, fotogramas = 0;
+
+    /**
+     * Capa del fondo. Se crea la primera vez que se pide.
+     */
+    private PantallaVirtual fondo = null;
+
+    /**
+     * Crea una pantalla virtual de unas medidas determinadas.
+     * @param ancho Anchura del lienzo en píxels
+     * @param alto Altura del lienzo en píxels
+     */
+    public PantallaVirtual(int ancho, int alto) {
+        this.ancho = ancho;
+        this.alto = alto;
+    }
+
+    public void escribeTexto(String texto, float x, float y, int medidaFuente, Color color) {
+        primitivas++;
+    }
+
+    public void escribeTexto(BufferTexto texto, float x, float y, int medidaFuente, Color color) {
+        primitivas++;
+    }
+
+    public void dibujaTriangulo(float x1, float y1, float x2, float y2, float x3, float y3, Color color) {
+        primitivas++;
+    }
+
+    public void dibujaRectangulo(float izquierda, float arriba, float ancho, float alto, Color color) {
+        primitivas++;
+    }
+
+    public void dibujaCirculo(float centroX, float centroY, float radio, Color color) {
+        primitivas++;
+    }
+
+    public void borrarLienzoOculto() {
+        primitivas++;
+    }
+
+    /**
+     * Los sprites de una pantalla virtual no tienen imagen: su lienzo es otra
+     * pantalla virtual del tamaño del sprite.
+     */
+    public Sprite creaSprite(int ancho, int alto, float origenX, float origenY) {
+        return new Sprite(null, new PantallaVirtual(ancho, alto), ancho, alto, origenX, origenY);
+    }
+
+    public void dibujaSprite(Sprite sprite, float x, float y) {
+        primitivas++;
+    }
+
+    public Lienzo getFondo() {
+        if(fondo == null) {
+            fondo = new PantallaVirtual((int) ancho, (int) alto);
+        }
+        return fondo;
+    }
+
+    public void restaurarFondo() {
+        primitivas++;
+    }
+
+    public void restaurarFondo(float izquierda, float arriba, float ancho, float alto) {
+        primitivas++;
+    }
+
+    public float getAnchuraLienzo() {
+        return ancho;
+    }
+
+    public float getAlturaLienzo() {
+        return alto;
+    }
+
+    public void mostrarLienzo() {
+        fotogramas++;
+    }
+
+    public boolean isTiempoReal() {
+        return false;
+    }
+
+    public void actualizarTeclas(long instante) {
+    }
+
+    public boolean isPulsadoArriba() {
+        return false;
+    }
+
+    public boolean isPulsadoAbajo() {
+        return false;
+    }
+
+    public boolean isPulsadoIzquierda() {
+        return false;
+    }
+
+    public boolean isPulsadoDerecha() {
+        return false;
+    }
+
+    public boolean isPulsadoEspacio() {
+        return false;
+    }
+
+    public boolean isPulsadoEstadisticas() {
+        return false;
+    }
+
+    /**
+     * Nadie puede pulsar la barra espaciadora de una pantalla virtual, así que
+     * no tiene sentido esperar: vuelve enseguida.
+     * @return false
+     */
+    public boolean esperarEspacio(long milisegundos) {
+        return false;
+    }
+
+    public void cerrar() {
+    }
+
+    /**
+     * Devuelve el número de primitivas gráficas (círculos, textos, etc...) que
+     * se han pedido dibujar desde que se creó la pantalla.
+     * @return Número de primitivas dibujadas.
+     */
+    public long getPrimitivasDibujadas() {
+        return primitivas;
+    }
+
+    /**
+     * Devuelve el número de veces que se ha llamado a mostrarLienzo().
+     * @return Número de fotogramas mostrados.
+     */
+    public long getFotogramasMostrados() {
+        return fotogramas;
+    }
+}
@@ -0,0 +1,128 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+package moo.multimedia;
+
+/**
+ * Lista de las zonas rectangulares de un lienzo que han cambiado ("regiones
+ * sucias"). Se usa para copiar a la pantalla sólo lo que ha cambiado, en vez
+ * del lienzo entero.
+ *
+ * Cuando se añade un rectángulo que se solapa (o casi) con otro de la lista, se
+ * juntan los dos en uno solo que los engloba a ambos. Así la lista se mantiene
+ * corta, aunque se copien algunos píxels de más. Si aun así hay demasiados
+ * rectángulos, se juntan todos en uno.
+ *
+ * Las coordenadas se guardan como enteros: (x1,y1) es la esquina superior
+ * izquierda, incluida, y (x2,y2) la inferior derecha, sin incluir.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+class RegionesSucias {
+    /**
+     * Número máximo de rectángulos antes de juntarlos todos en uno.
+     */
+    private static final int MAXIMO_REGIONES = 48;
+    /**
+     * Dos rectángulos que estén a esta distancia (en píxels) o menos se juntan.
+     */
+    private static final int DISTANCIA_JUNTAR = 8;
+
+    private final int ancho, alto;
+    private final int[] x1 = new int[MAXIMO_REGIONES], y1 = new int[MAXIMO_REGIONES],
+            x2 = new int[MAXIMO_REGIONES], y2 = new int[MAXIMO_REGIONES];
+    private int total = 0;
+
+    /**
+     * Crea una lista vacía.
+     * @param ancho Anchura del lienzo (los rectángulos se recortan a sus medidas).
+     * @param alto Altura del lienzo.
+     */
+    RegionesSucias(int ancho, int alto) {
+        this.ancho = ancho;
+        this.alto = alto;
+    }
+
+    void vaciar() {
+        total = 0;
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    int getX1(int i) { return x1[i]; }
+    int getY1(int i) { return y1[i]; }
+    int getX2(int i) { return x2[i]; }
+    int getY2(int i) { return y2[i]; }
+
+    /**
+     * Añade un rectángulo. Se amplía un píxel por cada lado, porque las primitivas
+     * redondean las coordenadas y pueden pintar un poco fuera.
+     * @param izquierda Coordenada del lado izquierdo.
+     * @param arriba Coordenada del lado superior.
+     * @param anchura Anchura del rectángulo.
+     * @param altura Altura del rectángulo.
+     */
+    void anyadir(float izquierda, float arriba, float anchura, float altura) {
+        int ax1 = Math.max(0, (int) Math.floor(izquierda) - 1);
+        int ay1 = Math.max(0, (int) Math.floor(arriba) - 1);
+        int ax2 = Math.min(ancho, (int) Math.ceil(izquierda + anchura) + 1);
+        int ay2 = Math.min(alto, (int) Math.ceil(arriba + altura) + 1);
+        if(ax1 >= ax2 || ay1 >= ay2) {
+            return;
+        }
+        anyadirEnteros(ax1, ay1, ax2, ay2);
+    }
+
+    /**
+     * Añade todos los rectángulos de otra lista.
+     * @param otra
+     */
+    void anyadir(RegionesSucias otra) {
+        for(int i = 0; i < otra.total; i++) {
+            anyadirEnteros(otra.x1[i], otra.y1[i], otra.x2[i], otra.y2[i]);
+        }
+    }
+
+    private void anyadirEnteros(int ax1, int ay1, int ax2, int ay2) {
+        // si está cerca de algún rectángulo, se junta con él. Al crecer, el
+        // rectángulo resultante puede tocar a otros, así que se vuelve a mirar.
+        int i = 0;
+        while(i < total) {
+            if(ax1 <= x2[i] + DISTANCIA_JUNTAR && x1[i] <= ax2 + DISTANCIA_JUNTAR
+                    && ay1 <= y2[i] + DISTANCIA_JUNTAR && y1[i] <= ay2 + DISTANCIA_JUNTAR) {
+                ax1 = Math.min(ax1, x1[i]);
+                ay1 = Math.min(ay1, y1[i]);
+                ax2 = Math.max(ax2, x2[i]);
+                ay2 = Math.max(ay2, y2[i]);
+                // quitamos el rectángulo i (ponemos el último en su lugar) y volvemos a empezar
+                total--;
+                x1[i] = x1[total]; y1[i] = y1[total]; x2[i] = x2[total]; y2[i] = y2[total];
+                i = 0;
+            } else {
+                i++;
+            }
+        }
+        if(total == MAXIMO_REGIONES) {
+            // demasiados rectángulos: se juntan todos en uno
+            for(int j = 0; j < total; j++) {
+                ax1 = Math.min(ax1, x1[j]);
+                ay1 = Math.min(ay1, y1[j]);
+                ax2 = Math.max(ax2, x2[j]);
+                ay2 = Math.max(ay2, y2[j]);
+            }
+            total = 0;
+        }
+        x1[total] = ax1; y1[total] = ay1; x2[total] = ax2; y2[total] = ay2;
+        total++;
+    }
+}
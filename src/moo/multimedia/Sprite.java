@@ -0,0 +1,86 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+package moo.multimedia;
+
+import java.awt.Image;
+
+/**
+ * Un sprite es una imagen pequeña que se dibuja una sola vez (con las primitivas
+ * de siempre: círculos, rectángulos...) y que después se puede copiar al lienzo
+ * tantas veces como se quiera con una sola operación, que es mucho más rápida
+ * que volver a dibujar todas las primitivas cada vez.
+ *
+ * Los sprites se crean con el método creaSprite() del lienzo donde se van a
+ * dibujar, para que la imagen tenga el formato más rápido posible para ese lienzo.
+ * Las zonas del sprite donde no se dibuja nada son transparentes.
+ *
+ * Cada sprite tiene un "origen": el punto del sprite que se colocará en las
+ * coordenadas que se pasen a dibujaSprite(). Por ejemplo, para una bola es
+ * cómodo que el origen sea su centro.
+ *
+ * @author Mario Macías http://mario.site.ac.upc.edu
+ */
+public class Sprite {
+    private final Image imagen;
+    private final Lienzo lienzo;
+    private final int ancho, alto;
+    private final float origenX, origenY;
+
+    /**
+     * Crea un sprite. Normalmente no se llama directamente, sino a través del
+     * método creaSprite() de un lienzo.
+     * @param imagen Imagen del sprite (puede ser null si el lienzo no dibuja de verdad).
+     * @param lienzo Lienzo para dibujar en la imagen del sprite.
+     * @param ancho Anchura del sprite, en píxels.
+     * @param alto Altura del sprite, en píxels.
+     * @param origenX Coordenada X del origen, dentro del sprite.
+     * @param origenY Coordenada Y del origen, dentro del sprite.
+     */
+    public Sprite(Image imagen, Lienzo lienzo, int ancho, int alto, float origenX, float origenY) {
+        this.imagen = imagen;
+        this.lienzo = lienzo;
+        this.ancho = ancho;
+        this.alto = alto;
+        this.origenX = origenX;
+        this.origenY = origenY;
+    }
+
+    /**
+     * Devuelve un lienzo con el que se puede dibujar dentro del sprite. Las
+     * coordenadas de este lienzo son las del sprite: (0,0) es su esquina
+     * superior izquierda, no su origen.
+     * @return
+     */
+    public Lienzo getLienzo() {
+        return lienzo;
+    }
+
+    public Image getImagen() {
+        return imagen;
+    }
+
+    public int getAncho() {
+        return ancho;
+    }
+
+    public int getAlto() {
+        return alto;
+    }
+
+    public float getOrigenX() {
+        return origenX;
+    }
+
+    public float getOrigenY() {
+        return origenY;
+    }
+}
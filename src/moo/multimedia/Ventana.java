@@ -11,15 +11,20 @@
  */
 package moo.multimedia;
 
+import java.awt.Canvas;
 import java.awt.Color;
-import java.awt.Font;
+import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFrame;
@@ -40,6 +45,26 @@ import javax.swing.JPanel;
  * Una vez se ha acabado de mostrar el lienzo, se llamará al método "mostrarLienzo",
  * que mostrará el lienzo en la pantalla.
  *
+ * Hay dos maneras de mostrar el lienzo:
+ * <ul>
+ *   <li><b>Renderizado activo</b> (la manera por defecto): la ventana contiene un
+ *   Canvas con una BufferStrategy (dos o tres buffers, que normalmente están en la
+ *   memoria de la tarjeta gráfica). mostrarLienzo() copia el lienzo oculto al
+ *   buffer trasero y lo muestra en ese mismo momento, desde el hilo del juego.</li>
+ *   <li><b>Renderizado pasivo</b>: mostrarLienzo() sólo pide a Java que repinte
+ *   la ventana (repaint()), y el lienzo se copia más tarde desde el hilo de
+ *   eventos de Swing. Es más lento y se pueden perder fotogramas, pero funciona
+ *   en cualquier sitio. Se usa si se pide en el constructor, o si no se ha podido
+ *   crear la BufferStrategy.</li>
+ * </ul>
+ *
+ * Además, se puede activar el <b>renderizado por regiones</b>
+ * (setRenderizadoPorRegiones()): la ventana apunta qué zonas del lienzo se han
+ * dibujado en cada fotograma. restaurarFondo() sólo borra las zonas que se
+ * dibujaron en el fotograma anterior, y mostrarLienzo() sólo copia a la pantalla
+ * las zonas que han cambiado. Si casi toda la pantalla está quieta, se ahorra
+ * mucho trabajo de copiar píxels.
+ *
  * OJO! Las coordenadas que se utilizan son <b>coordenadas de pantalla</b>. Eso quiere
  * decir que el origen (0,0) está en la esquina superior izquierda de la ventana.
  * Coordenadas más altas de x estarán más a la derecha de la ventana, y coordenadas
@@ -48,21 +73,63 @@ import javax.swing.JPanel;
  *
  * @author Mario Macías http://mario.site.ac.upc.edu
  */
-public class Ventana implements KeyListener, WindowListener {
+public class Ventana implements Pantalla, KeyListener, WindowListener {
     /**
      * Indica el número de fotogramas por segundo. Es decir, el máximo de veces
-     * que se puede mostrar el lienzo por pantalla en un segundo.
+     * que se puede mostrar el lienzo por pantalla en un segundo. Si es 0, no
+     * hay límite.
      */
-    private static final float FOTOGRAMAS_SEGUNDO = 25;
+    private float fotogramasSegundo = 60;
 
     /**
      * Guarda una imagen del lienzo en el que se irán pintando las cosas
      */
     private Image lienzo;
     /**
-     * Graphics es una clase a través de la cual podremos dibujar en el lienzo.
+     * Lienzo a través del cual podremos dibujar en la imagen anterior.
+     */
+    private LienzoImagen lienzoOculto;
+
+    /**
+     * Imagen del fondo, y lienzo para dibujar en ella. Se compone una sola vez
+     * y se copia al lienzo oculto con restaurarFondo().
+     */
+    private Image fondo;
+    private LienzoImagen lienzoFondo;
+
+    /**
+     * En el modo de renderizado activo, Canvas donde se muestra el lienzo y
+     * BufferStrategy con la que se dibuja en él. En el modo pasivo, son null.
+     */
+    private Canvas canvas = null;
+    private BufferStrategy estrategia = null;
+    /**
+     * Componente donde se muestra el lienzo (el Canvas o el JPanel).
+     */
+    private Component superficie;
+
+    /**
+     * Indica si se usa el renderizado por regiones.
+     */
+    private boolean porRegiones = false;
+    /**
+     * Zonas dibujadas en este fotograma y en el anterior, y zonas que se han de
+     * copiar a la pantalla en el próximo mostrarLienzo().
+     */
+    private RegionesSucias dibujadas, dibujadasAnterior, aMostrar;
+    /**
+     * Si es true, no se sabe qué ha cambiado en el lienzo (por ejemplo, porque
+     * se ha borrado entero), así que el próximo restaurarFondo() copiará el fondo
+     * entero y el próximo mostrarLienzo() mostrará el lienzo entero.
      */
-    private Graphics fg;
+    private boolean todoSucio = true;
+
+    /**
+     * Si no es null, en cada mostrarLienzo() se apunta lo que se tarda en copiar
+     * el lienzo a la pantalla y lo que se duerme hasta el siguiente fotograma.
+     */
+    private Estadisticas estadisticas = null;
+    private int medidaPresentar, medidaEspera;
 
     /**
      * JFrame es un objeto que maneja una ventana de pantalla.
@@ -70,72 +137,182 @@ public class Ventana implements KeyListener, WindowListener {
     private JFrame marcoVentana = null;
 
     /**
-     * Las siguientes variables booleanas guardan el estado de algunas teclas.
-     * serán "true" cuando alguna de estas teclas esté pulsada, y "false" en caso
-     * contrario.
+     * Códigos con los que se guardan las teclas en la cola de eventos, y
+     * posición de cada tecla en los arrays de estado.
      */
-    private boolean teclaArriba = false,
-            teclaAbajo = false,
-            teclaIzquierda = false,
-            teclaDerecha = false,
-            barraEspaciadora = false;
+    private static final int ARRIBA = 0, ABAJO = 1, IZQUIERDA = 2, DERECHA = 3, ESPACIO = 4,
+            ESTADISTICAS = 5;
 
     /**
-     * Abre una nueva ventana.
+     * Cola de eventos de teclado. El hilo de eventos de Swing pone en ella cada
+     * tecla que se pulsa o se suelta (con el instante en que ha ocurrido), y el
+     * hilo del juego los saca en actualizarTeclas().
+     */
+    private final ColaEventosTeclado eventos = new ColaEventosTeclado();
+
+    /**
+     * Estado de las teclas, según los eventos que se han sacado de la cola.
+     * Sólo los usa el hilo del juego.
+     *
+     * teclaBajada[t] indica si la tecla t está bajada después del último evento
+     * sacado. teclaPulsada[t] es lo que devuelven los métodos isPulsado...():
+     * la tecla está bajada, o se ha bajado en algún momento desde el último
+     * actualizarTeclas(), aunque ya se haya vuelto a soltar. Así, una pulsación
+     * muy corta (entre dos ticks) no se pierde.
+     */
+    private final boolean[] teclaBajada = new boolean[6], teclaPulsada = new boolean[6];
+    /**
+     * true si se ha pulsado la barra espaciadora y aún no se ha consultado con isPulsadoEspacio().
+     */
+    private boolean barraEspaciadora = false;
+    /**
+     * true si se ha pulsado F3 y aún no se ha consultado con isPulsadoEstadisticas().
+     */
+    private boolean teclaEstadisticas = false;
+
+    /**
+     * Semáforo que recibe un permiso cada vez que se pulsa la barra espaciadora.
+     * El método esperarEspacio() se queda dormido en él hasta que llega una pulsación.
+     */
+    private final Semaphore pulsacionesEspacio = new Semaphore(0);
+
+    /**
+     * Abre una nueva ventana, con renderizado activo.
      * <b>NOTA</b>: Si se cierra la ventana con el ratón, el programa acabará.
      * @param titulo El texto que aparecerá en la barra de título de la ventana.
      * @param ancho Anchura de la ventana en píxels
      * @param alto Altura de la ventana en píxels
      */
     public Ventana(String titulo, int ancho, int alto) {
+        this(titulo, ancho, alto, true);
+    }
+
+    /**
+     * Abre una nueva ventana.
+     * <b>NOTA</b>: Si se cierra la ventana con el ratón, el programa acabará.
+     * @param titulo El texto que aparecerá en la barra de título de la ventana.
+     * @param ancho Anchura de la ventana en píxels
+     * @param alto Altura de la ventana en píxels
+     * @param renderizadoActivo true para mostrar el lienzo con una BufferStrategy
+     *        desde el hilo del juego; false para usar el modo pasivo (repaint()).
+     */
+    public Ventana(String titulo, int ancho, int alto, boolean renderizadoActivo) {
         final JPanel pantalla = new JPanel(true);
         marcoVentana = new JFrame(titulo) {
             @Override
             public void paint(Graphics g) {
                 //super.paint(g);
-                pantalla.getGraphics().drawImage(lienzo, 0, 0, null);
+                if(lienzo == null) {
+                    // todavía no se ha acabado de crear la ventana
+                    return;
+                }
+                if(estrategia != null) {
+                    // la ventana se ha destapado: se vuelve a mostrar el último fotograma
+                    presentar();
+                } else {
+                    pantalla.getGraphics().drawImage(lienzo, 0, 0, null);
+                }
             }
         };
         marcoVentana.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         marcoVentana.addWindowListener(this);
         marcoVentana.setSize(ancho, alto);
         marcoVentana.setResizable(false);
-        marcoVentana.getContentPane().add(pantalla);
+        if(renderizadoActivo) {
+            canvas = new Canvas();
+            // lo pintamos nosotros: que Java no lo repinte por su cuenta
+            canvas.setIgnoreRepaint(true);
+            // así, las teclas las sigue recibiendo el marco de la ventana
+            canvas.setFocusable(false);
+            marcoVentana.getContentPane().add(canvas);
+        } else {
+            marcoVentana.getContentPane().add(pantalla);
+        }
         marcoVentana.setVisible(true);
-        lienzo = new BufferedImage(pantalla.getWidth(), pantalla.getHeight(), BufferedImage.TYPE_INT_RGB);
-        fg = lienzo.getGraphics();
+        if(canvas != null) {
+            try {
+                // Java intentará usar page-flipping y, si no puede, copiará el buffer
+                canvas.createBufferStrategy(2);
+                estrategia = canvas.getBufferStrategy();
+            } catch (Exception ex) {
+                Logger.getLogger(Ventana.class.getName()).log(Level.WARNING,
+                        "No se ha podido usar renderizado activo. Se usará el pasivo.", ex);
+                marcoVentana.getContentPane().remove(canvas);
+                marcoVentana.getContentPane().add(pantalla);
+                marcoVentana.validate();
+                canvas = null;
+            }
+        }
+        if(estrategia != null) {
+            lienzo = marcoVentana.getGraphicsConfiguration().createCompatibleImage(canvas.getWidth(), canvas.getHeight());
+        } else {
+            lienzo = new BufferedImage(pantalla.getWidth(), pantalla.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+        superficie = canvas != null ? canvas : pantalla;
+        dibujadas = new RegionesSucias(lienzo.getWidth(null), lienzo.getHeight(null));
+        dibujadasAnterior = new RegionesSucias(lienzo.getWidth(null), lienzo.getHeight(null));
+        aMostrar = new RegionesSucias(lienzo.getWidth(null), lienzo.getHeight(null));
+        lienzoOculto = new LienzoImagen(lienzo, marcoVentana.getGraphicsConfiguration());
+        fondo = marcoVentana.getGraphicsConfiguration().createCompatibleImage(lienzo.getWidth(null), lienzo.getHeight(null));
+        lienzoFondo = new LienzoImagen(fondo, marcoVentana.getGraphicsConfiguration());
+        lienzoFondo.borrarLienzoOculto();
         borrarLienzoOculto();
         marcoVentana.addKeyListener(this);
 
     }
 
+    /**
+     * Indica si la ventana usa renderizado activo (BufferStrategy).
+     * @return true si usa renderizado activo, false si usa el pasivo.
+     */
+    public boolean isRenderizadoActivo() {
+        return estrategia != null;
+    }
+
+    /**
+     * Activa o desactiva el renderizado por regiones.
+     * @param porRegiones true para copiar a la pantalla sólo las zonas que cambian.
+     */
+    public void setRenderizadoPorRegiones(boolean porRegiones) {
+        this.porRegiones = porRegiones;
+        todoSucio = true;
+    }
+
+    /**
+     * Indica si se usa el renderizado por regiones.
+     * @return
+     */
+    public boolean isRenderizadoPorRegiones() {
+        return porRegiones;
+    }
+
     /**
      * Comprueba si la flecha "Arriba" del cursor está pulsada o no.
      * @return true si está pulsada. false en caso contrario.
      */
     public boolean isPulsadoArriba() {
-        return teclaArriba;
+        return teclaPulsada[ARRIBA];
     }
     /**
      * Comprueba si la flecha "Abajo" del cursor está pulsada o no.
      * @return true si está pulsada. false en caso contrario.
      */
     public boolean isPulsadoAbajo() {
-        return teclaAbajo;
+        return teclaPulsada[ABAJO];
     }
     /**
      * Comprueba si la flecha "Izquierda" del cursor está pulsada o no.
      * @return true si está pulsada. false en caso contrario.
      */
     public boolean isPulsadoIzquierda() {
-        return teclaIzquierda;
+        return teclaPulsada[IZQUIERDA];
     }
     /**
      * Comprueba si la flecha "Derecha" del cursor está pulsada o no.
      * @return true si está pulsada. false en caso contrario.
      */
     public boolean isPulsadoDerecha() {
-        return teclaDerecha;
+        return teclaPulsada[DERECHA];
     }
     /**
      * Comprueba si la barra espaciadora está pulsada o no.
@@ -152,6 +329,83 @@ public class Ventana implements KeyListener, WindowListener {
         }
     }
 
+    /**
+     * Comprueba si se ha pulsado F3. Debe soltarse y volver a pulsarse para que
+     * la función devuelva "true" dos veces.
+     * @return true si se ha pulsado. false en caso contrario.
+     */
+    public boolean isPulsadoEstadisticas() {
+        if(teclaEstadisticas) {
+            teclaEstadisticas = false;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Saca de la cola los eventos de teclado que han ocurrido hasta un instante,
+     * y actualiza el estado de las teclas (lo que devuelven los métodos isPulsado...()).
+     * @param instante Instante, según System.nanoTime().
+     */
+    public void actualizarTeclas(long instante) {
+        for(int t = 0; t < teclaPulsada.length; t++) {
+            teclaPulsada[t] = teclaBajada[t];
+        }
+        if(eventos.resincronizar()) {
+            // se han perdido eventos (quizás el de soltar una tecla): se dan
+            // todas por soltadas, igual que hace ponerEvento() al perder uno
+            Arrays.fill(teclaBajada, false);
+        }
+        while(eventos.hayEventoHasta(instante)) {
+            int t = eventos.getTecla();
+            boolean pulsada = eventos.isPulsada();
+            eventos.sacar();
+            teclaBajada[t] = pulsada;
+            if(pulsada) {
+                teclaPulsada[t] = true;
+                if(t == ESPACIO) {
+                    barraEspaciadora = true;
+                }
+                if(t == ESTADISTICAS) {
+                    teclaEstadisticas = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Duerme hasta que se pulse la barra espaciadora (o hasta que pase el
+     * tiempo máximo). Mientras espera, el programa no gasta nada de CPU.
+     * @param milisegundos Tiempo máximo de espera. Si es 0, espera indefinidamente.
+     * @return true si se ha pulsado la barra espaciadora, false si se ha acabado el tiempo.
+     */
+    public boolean esperarEspacio(long milisegundos) {
+        long limite = System.nanoTime() + milisegundos * 1000000L;
+        try {
+            while(true) {
+                actualizarTeclas(System.nanoTime());
+                if(isPulsadoEspacio()) {
+                    return true;
+                }
+                // Cada pulsación de la barra deja un permiso en el semáforo. Puede
+                // haber permisos de pulsaciones que ya se han consultado: en ese
+                // caso, simplemente se da otra vuelta.
+                if(milisegundos <= 0) {
+                    pulsacionesEspacio.acquire();
+                } else {
+                    long queda = limite - System.nanoTime();
+                    if(queda <= 0 || !pulsacionesEspacio.tryAcquire(queda, TimeUnit.NANOSECONDS)) {
+                        return false;
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     /**
      * Cierra la ventana.
      */
@@ -160,8 +414,6 @@ public class Ventana implements KeyListener, WindowListener {
         System.exit(0);
     }
 
-    private int ultimoTamanyo = 0;
-    private Font ultimaFuente = new Font(Font.SANS_SERIF,Font.PLAIN,12);;
     /**
      * Escribe un texto por pantalla.
      * @param texto El texto a escribir.
@@ -171,16 +423,30 @@ public class Ventana implements KeyListener, WindowListener {
      * @param color Color del texto.
      */
     public void escribeTexto(String texto, float x, float y, int medidaFuente, Color color) {
-        fg.setColor(color);
-        if(ultimoTamanyo != medidaFuente) {
-            ultimaFuente = new Font(Font.SANS_SERIF,Font.PLAIN,medidaFuente);
+        lienzoOculto.escribeTexto(texto, x, y, medidaFuente, color);
+        if(porRegiones) {
+            // (x,y) es la línea base del texto: las letras suben hasta medidaFuente
+            // por encima y algunas (g, p...) bajan un poco. La anchura se calcula a
+            // lo grande, suponiendo que todas las letras son muy anchas.
+            dibujadas.anyadir(x, y - medidaFuente, texto.length() * medidaFuente, medidaFuente * 1.5f);
+        }
+    }
+
+    /**
+     * Escribe por pantalla un texto guardado en un BufferTexto.
+     * @param texto El texto a escribir.
+     * @param x Coordenada izquierda del inicio del texto.
+     * @param y Coordenada superior del inicio del texto.
+     * @param medidaFuente Tamaño de la fuente, en píxels.
+     * @param color Color del texto.
+     */
+    public void escribeTexto(BufferTexto texto, float x, float y, int medidaFuente, Color color) {
+        lienzoOculto.escribeTexto(texto, x, y, medidaFuente, color);
+        if(porRegiones) {
+            dibujadas.anyadir(x, y - medidaFuente, texto.getLongitud() * medidaFuente, medidaFuente * 1.5f);
         }
-        fg.setFont(ultimaFuente);
-        fg.drawString(texto, (int)x, (int)y);
     }
 
-    private int[] xTriangle = new int[3];
-    private int[] yTriangle = new int[3];
     /**
      * Dibuja un triángulo, dadas tres coordenadas en píxeles y un color.
      * @param x1,y1 Coordenadas x,y del primer punto.
@@ -189,10 +455,11 @@ public class Ventana implements KeyListener, WindowListener {
      * @param color Color del triángulo.
      */
     public void dibujaTriangulo(float x1, float y1, float x2, float y2, float x3, float y3, Color color){
-        xTriangle[0] = (int)x1; xTriangle[1] = (int)x2; xTriangle[2] = (int)x3;
-        yTriangle[0] = (int)y1; yTriangle[1] = (int)y2; yTriangle[2] = (int)y3;
-        fg.setColor(color);
-        fg.fillPolygon(xTriangle,yTriangle,3);
+        lienzoOculto.dibujaTriangulo(x1, y1, x2, y2, x3, y3, color);
+        if(porRegiones) {
+            float izq = Math.min(x1, Math.min(x2, x3)), arr = Math.min(y1, Math.min(y2, y3));
+            dibujadas.anyadir(izq, arr, Math.max(x1, Math.max(x2, x3)) - izq, Math.max(y1, Math.max(y2, y3)) - arr);
+        }
     }
 
     /**
@@ -206,8 +473,10 @@ public class Ventana implements KeyListener, WindowListener {
      * @param color Color del rectángulo.
      */
     public void dibujaRectangulo(float izquierda, float arriba, float ancho, float alto, Color color) {
-        fg.setColor(color);
-        fg.fillRect((int)izquierda, (int)arriba, (int)ancho, (int)alto);
+        lienzoOculto.dibujaRectangulo(izquierda, arriba, ancho, alto, color);
+        if(porRegiones) {
+            dibujadas.anyadir(izquierda, arriba, ancho, alto);
+        }
     }
 
     /**
@@ -218,16 +487,82 @@ public class Ventana implements KeyListener, WindowListener {
      * @param color Color del círculo.
      */
     public void dibujaCirculo(float centroX, float centroY, float radio, Color color) {
-        fg.setColor(color);
-        fg.fillArc((int)(centroX - radio), (int)(centroY - radio), (int)(radio*2f),(int)(radio*2f) , 0, 360);
+        lienzoOculto.dibujaCirculo(centroX, centroY, radio, color);
+        if(porRegiones) {
+            dibujadas.anyadir(centroX - radio, centroY - radio, radio * 2, radio * 2);
+        }
+    }
+
+    /**
+     * Crea un sprite en un formato compatible con la pantalla, para que se pueda
+     * copiar lo más rápido posible (si la tarjeta gráfica lo permite, la imagen
+     * se guardará en su memoria).
+     */
+    public Sprite creaSprite(int ancho, int alto, float origenX, float origenY) {
+        return lienzoOculto.creaSprite(ancho, alto, origenX, origenY);
+    }
+
+    /**
+     * Dibuja un sprite por pantalla.
+     * @param sprite Sprite a dibujar.
+     * @param x Coordenada X donde se colocará el origen del sprite.
+     * @param y Coordenada Y donde se colocará el origen del sprite.
+     */
+    public void dibujaSprite(Sprite sprite, float x, float y) {
+        lienzoOculto.dibujaSprite(sprite, x, y);
+        if(porRegiones) {
+            dibujadas.anyadir(x - sprite.getOrigenX(), y - sprite.getOrigenY(), sprite.getAncho(), sprite.getAlto());
+        }
     }
 
     /**
      * Borra el contenido del lienzo oculto (lo deja todo de color negro)
      */
     public void borrarLienzoOculto() {
-        fg.setColor(Color.black);
-        fg.fillRect(0, 0, (int)getAnchuraLienzo(), (int)getAlturaLienzo());
+        lienzoOculto.borrarLienzoOculto();
+        todoSucio = true;
+    }
+
+    /**
+     * Devuelve el lienzo del fondo, donde se dibujan las cosas que no se mueven.
+     * @return El lienzo del fondo.
+     */
+    public Lienzo getFondo() {
+        return lienzoFondo;
+    }
+
+    /**
+     * Copia todo el fondo al lienzo oculto. En el renderizado por regiones, sólo
+     * copia las zonas del fondo que se taparon en el fotograma anterior (que es
+     * lo único que puede ser distinto del fondo).
+     */
+    public void restaurarFondo() {
+        if(!porRegiones || todoSucio) {
+            lienzoOculto.copiaImagen(fondo);
+            todoSucio = true;
+        } else {
+            for(int i = 0; i < dibujadasAnterior.getTotal(); i++) {
+                int x = dibujadasAnterior.getX1(i), y = dibujadasAnterior.getY1(i);
+                lienzoOculto.copiaImagen(fondo, x, y, dibujadasAnterior.getX2(i) - x, dibujadasAnterior.getY2(i) - y);
+            }
+            aMostrar.anyadir(dibujadasAnterior);
+        }
+        // lo que se dibujó en el fotograma anterior ya se ha borrado
+        dibujadasAnterior.vaciar();
+    }
+
+    /**
+     * Copia una zona del fondo al lienzo oculto.
+     * @param izquierda Coordenada del lado izquierdo de la zona.
+     * @param arriba Coordenada del lado superior de la zona.
+     * @param ancho Anchura de la zona, en píxels.
+     * @param alto Altura de la zona, en píxels.
+     */
+    public void restaurarFondo(float izquierda, float arriba, float ancho, float alto) {
+        lienzoOculto.copiaImagen(fondo, (int) izquierda, (int) arriba, (int) Math.ceil(ancho), (int) Math.ceil(alto));
+        if(porRegiones) {
+            aMostrar.anyadir(izquierda, arriba, ancho, alto);
+        }
     }
 
     /**
@@ -246,33 +581,161 @@ public class Ventana implements KeyListener, WindowListener {
         return lienzo.getHeight(null);
     }
 
-    private long lastFrameTime = 0;
+    /**
+     * Instante (según System.nanoTime()) en que se debe mostrar el siguiente fotograma.
+     */
+    private long siguienteFotograma = 0;
     /**
      * Muestra el contenido (dibujo) del lienzo oculto por pantalla.
      */
     public void mostrarLienzo() {
-        marcoVentana.repaint();
-
-        // Para que no vaya más rápido en ordenadores muy rápidos, y más lento
-        // en ordenadores lentos, se hace que vaya siempre a la misma velocidad
-        // limitando el número de fotogramas por segundo (especificado en la constante
-        // FOTOGRAMAS_SEGUNDO). Cuando se ejecuta y se repinta todo, se hace que el
-        // programa se ponga en estado de "sueño" (método Thread.sleep()) durante un
-        // tiempo en el que el programa estará parado. Así nos aseguramos que
-        // Siempre tendremos limitado el número de fotogramas por segundo al valor
-        // que especifica la constante FOTOGRAMAS_SEGUNDO
-        long now = System.currentTimeMillis();
+        long inicio = estadisticas != null ? System.nanoTime() : 0;
+        if(porRegiones && !todoSucio) {
+            presentarRegiones();
+        } else if(estrategia != null) {
+            presentar();
+        } else {
+            marcoVentana.repaint();
+        }
+        if(porRegiones) {
+            // lo dibujado en este fotograma se tendrá que borrar en el siguiente
+            RegionesSucias r = dibujadasAnterior;
+            dibujadasAnterior = dibujadas;
+            dibujadas = r;
+            dibujadas.vaciar();
+            aMostrar.vaciar();
+            todoSucio = false;
+        }
+        if(estadisticas != null) {
+            long ahora = System.nanoTime();
+            estadisticas.apuntar(medidaPresentar, ahora - inicio);
+            inicio = ahora;
+        }
+
+        // Para que no vaya más rápido en ordenadores muy rápidos, se limita el
+        // número de fotogramas por segundo (especificado en fotogramasSegundo).
+        // Cuando se ejecuta y se repinta todo, se hace que el programa se ponga
+        // en estado de "sueño" (método Thread.sleep()) hasta el instante en que
+        // toca mostrar el siguiente fotograma. Los instantes se calculan con
+        // System.nanoTime(), que es mucho más preciso que System.currentTimeMillis(),
+        // y se suma el periodo al instante previsto (no al actual), para que los
+        // pequeños retrasos de cada fotograma no se vayan acumulando.
+        if(fotogramasSegundo <= 0) {
+            Thread.yield();
+            apuntarEspera(inicio);
+            return;
+        }
+        long periodo = (long) (1000000000L / fotogramasSegundo);
+        long ahora = System.nanoTime();
+        if(siguienteFotograma == 0 || ahora - siguienteFotograma > periodo) {
+            // si vamos con mucho retraso, no intentamos recuperarlo: volvemos a empezar a contar
+            siguienteFotograma = ahora;
+        }
+        siguienteFotograma += periodo;
+        long espera = siguienteFotograma - ahora;
         try {
-            float sleepTime = (1000.0f / FOTOGRAMAS_SEGUNDO) - (float)(now - lastFrameTime);
-            if(sleepTime <= 0) {
+            if(espera <= 0) {
                 Thread.yield();
             } else {
-                Thread.sleep((int)sleepTime);
+                Thread.sleep(espera / 1000000L, (int) (espera % 1000000L));
             }
         } catch (InterruptedException ex) {
             Logger.getLogger(Ventana.class.getName()).log(Level.SEVERE, null, ex);
         }
-        lastFrameTime = System.currentTimeMillis();
+        apuntarEspera(inicio);
+    }
+
+    private void apuntarEspera(long inicio) {
+        if(estadisticas != null) {
+            estadisticas.apuntar(medidaEspera, System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Hace que en cada mostrarLienzo() se apunte cuánto se tarda en copiar el
+     * lienzo a la pantalla (medida "presentar") y cuánto se duerme hasta el
+     * siguiente fotograma (medida "espera").
+     * @param estadisticas Donde se apuntan los tiempos, o null para no medirlos.
+     */
+    public void setEstadisticas(Estadisticas estadisticas) {
+        if(estadisticas != null) {
+            medidaPresentar = estadisticas.anyadirTiempo("presentar");
+            medidaEspera = estadisticas.anyadirTiempo("espera");
+        }
+        this.estadisticas = estadisticas;
+    }
+
+    /**
+     * Copia el lienzo oculto al buffer trasero de la BufferStrategy y lo muestra.
+     *
+     * Los buffers de la tarjeta gráfica se pueden perder en cualquier momento (por
+     * ejemplo, si se cambia de resolución o se bloquea la pantalla). Por eso, se
+     * vuelve a copiar el lienzo mientras la BufferStrategy diga que el contenido
+     * se ha restaurado o perdido. Como el lienzo oculto es una imagen normal,
+     * nunca se pierde, y siempre se puede volver a copiar.
+     *
+     * Puede llamarse desde el hilo del juego o desde el de Swing (al destapar la
+     * ventana), por eso es synchronized.
+     */
+    private synchronized void presentar() {
+        do {
+            do {
+                Graphics g = estrategia.getDrawGraphics();
+                g.drawImage(lienzo, 0, 0, null);
+                g.dispose();
+            } while(estrategia.contentsRestored());
+            estrategia.show();
+        } while(estrategia.contentsLost());
+        // en algunos sistemas (Linux), si no se sincroniza, el fotograma puede tardar en verse
+        canvas.getToolkit().sync();
+    }
+
+    /**
+     * Copia a la pantalla sólo las zonas del lienzo que han cambiado: las que se
+     * han restaurado del fondo y las que se han dibujado en este fotograma.
+     *
+     * Se dibuja directamente en el componente (no en la BufferStrategy, porque
+     * después de cada show() no se sabe qué contiene el buffer trasero, así que
+     * habría que volver a copiarlo entero).
+     */
+    private synchronized void presentarRegiones() {
+        aMostrar.anyadir(dibujadas);
+        Graphics g = superficie.getGraphics();
+        if(g == null) {
+            return;
+        }
+        for(int i = 0; i < aMostrar.getTotal(); i++) {
+            int x1 = aMostrar.getX1(i), y1 = aMostrar.getY1(i), x2 = aMostrar.getX2(i), y2 = aMostrar.getY2(i);
+            g.drawImage(lienzo, x1, y1, x2, y2, x1, y1, x2, y2, null);
+        }
+        g.dispose();
+        superficie.getToolkit().sync();
+    }
+
+    /**
+     * Cambia el número máximo de fotogramas por segundo que se mostrarán.
+     * @param fotogramasSegundo Fotogramas por segundo. Si es 0, no hay límite y
+     *        se mostrarán tantos como se pueda.
+     */
+    public void setFotogramasSegundo(float fotogramasSegundo) {
+        this.fotogramasSegundo = fotogramasSegundo;
+        siguienteFotograma = 0;
+    }
+
+    /**
+     * Devuelve el número máximo de fotogramas por segundo que se mostrarán.
+     * @return Fotogramas por segundo (0 si no hay límite).
+     */
+    public float getFotogramasSegundo() {
+        return fotogramasSegundo;
+    }
+
+    /**
+     * La ventana siempre es de tiempo real: alguien está mirando.
+     * @return true
+     */
+    public boolean isTiempoReal() {
+        return true;
     }
 
     /**
@@ -296,35 +759,67 @@ public class Ventana implements KeyListener, WindowListener {
 
     /**
      * Implementacion de los métodos relativos a la interfaz KeyListener
-     * Cuando se llama al evento keyPressed, ponemos como "true" la tecla pulsada.
-     * Cuando se llama al evento keyReleased, ponemos como "false" la tecla pulsada.
+     * Cuando se llama al evento keyPressed o keyReleased, se pone en la cola
+     * de eventos la tecla que se ha pulsado o soltado, y el instante en que ha
+     * ocurrido. El juego sacará los eventos de la cola en actualizarTeclas().
      * Previamente se ha tenido que añadir una instancia de esta clase
      * mediante el método addKeyListener() de JFrame.
+     *
+     * Si se mantiene pulsada una tecla, el sistema repite el evento keyPressed:
+     * sólo se pone en la cola cuando la tecla cambia de verdad, para que la
+     * cola no se llene mientras el juego no la vacía (por ejemplo, en
+     * esperarEspacio()).
      */
-        private boolean spaceReleased = true;
+        /**
+         * Teclas bajadas según los eventos puestos en la cola. Sólo lo usa el
+         * hilo de eventos de Swing.
+         */
+        private final boolean[] teclaBajadaEnCola = new boolean[6];
+
+        /**
+         * Pone en la cola un evento de teclado, si la tecla ha cambiado.
+         * Si la cola lo descarta, el juego dará todas las teclas por soltadas
+         * (ver actualizarTeclas()), y aquí se hace lo mismo: así, si la tecla
+         * sigue bajada, su siguiente repetición se volverá a poner en la cola.
+         * @return true si se ha puesto en la cola.
+         */
+        private boolean ponerEvento(int tecla, boolean pulsada, long instante) {
+            if(teclaBajadaEnCola[tecla] == pulsada) {
+                return false;
+            }
+            if(!eventos.poner(tecla, pulsada, instante)) {
+                Arrays.fill(teclaBajadaEnCola, false);
+                return false;
+            }
+            teclaBajadaEnCola[tecla] = pulsada;
+            return true;
+        }
 
         public void keyTyped(KeyEvent e) {
         }
 
         public void keyPressed(KeyEvent e) {
+            long instante = System.nanoTime();
             switch(e.getKeyCode()) {
                 case KeyEvent.VK_UP:
-                    teclaArriba = true;
+                    ponerEvento(ARRIBA, true, instante);
                     break;
                 case KeyEvent.VK_DOWN:
-                    teclaAbajo = true;
+                    ponerEvento(ABAJO, true, instante);
                     break;
                 case KeyEvent.VK_LEFT:
-                    teclaIzquierda = true;
+                    ponerEvento(IZQUIERDA, true, instante);
                     break;
                 case KeyEvent.VK_RIGHT:
-                    teclaDerecha = true;
+                    ponerEvento(DERECHA, true, instante);
                     break;
                 case KeyEvent.VK_SPACE:
-                    if (spaceReleased) {
-                        barraEspaciadora = true;
+                    if (ponerEvento(ESPACIO, true, instante)) {
+                        pulsacionesEspacio.release();
                     }
-                    spaceReleased = false;
+                    break;
+                case KeyEvent.VK_F3:
+                    ponerEvento(ESTADISTICAS, true, instante);
                     break;
                 case KeyEvent.VK_ESCAPE:
                     cerrar();
@@ -333,22 +828,25 @@ public class Ventana implements KeyListener, WindowListener {
         }
 
         public void keyReleased(KeyEvent e) {
+            long instante = System.nanoTime();
             switch(e.getKeyCode()) {
                 case KeyEvent.VK_UP:
-                    teclaArriba = false;
+                    ponerEvento(ARRIBA, false, instante);
                     break;
                 case KeyEvent.VK_DOWN:
-                    teclaAbajo = false;
+                    ponerEvento(ABAJO, false, instante);
                     break;
                 case KeyEvent.VK_LEFT:
-                    teclaIzquierda = false;
+                    ponerEvento(IZQUIERDA, false, instante);
                     break;
                 case KeyEvent.VK_RIGHT:
-                    teclaDerecha = false;
+                    ponerEvento(DERECHA, false, instante);
                     break;
                 case KeyEvent.VK_SPACE:
-                    spaceReleased = true;
-                    barraEspaciadora = false;
+                    ponerEvento(ESPACIO, false, instante);
+                    break;
+                case KeyEvent.VK_F3:
+                    ponerEvento(ESTADISTICAS, false, instante);
                     break;
             }
         }
@@ -11,7 +11,29 @@
  */
 package moo.pang;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import moo.multimedia.Estadisticas;
+import moo.multimedia.Pantalla;
+import moo.multimedia.PantallaVirtual;
+import moo.multimedia.Ventana;
+import moo.pang.multimedia.ClientesAutomaticos;
+import moo.pang.multimedia.CodificadorInstantaneas;
+import moo.pang.multimedia.ControlesAutomaticos;
+import moo.pang.multimedia.DecodificadorInstantaneas;
+import moo.pang.multimedia.EjecutorPartidas;
+import moo.pang.multimedia.Espectador;
+import moo.pang.multimedia.Instantanea;
 import moo.pang.multimedia.Juego;
+import moo.pang.multimedia.ServidorPartidas;
+import moo.pang.multimedia.MedidorRendimiento;
+import moo.pang.multimedia.Repeticion;
 
 /**
  * Esta clase no hace nada más que alojar el método main(), y mantener continuamente
@@ -26,6 +48,16 @@ import moo.pang.multimedia.Juego;
 public class MOOPang {
     private MOOPang() {}
 
+    /**
+     * Cada cuántos segundos de partida se guardan las estadísticas ("-estadisticas").
+     */
+    private static final float SEGUNDOS_POR_VOLCADO = 5;
+
+    /**
+     * Ticks que tardan en llegar las confirmaciones del espectador ("-espectador").
+     */
+    private static final int LATENCIA_CONFIRMACION = 3;
+
     /**
      * Mantiene
      * el ciclo de la aplicación, que es: presentación - partida - mensaje de fin de juego
@@ -33,11 +65,164 @@ public class MOOPang {
      * a que está dentro de un "while(true)", el hecho es que la clase Ventana está
      * preparada (yo he decidido que sea así en el código interno) para que cuando se cierre
      * la ventana mediante la cruz de cerrar o mediante la tecla ESC, el programa se termine.
+     *
+     * Argumentos que se aceptan:
+     * <ul>
+     *   <li>"-sinventana": en vez de abrir una ventana juega una partida sobre
+     *       una PantallaVirtual (sin mostrar nada y sin límite de fotogramas por
+     *       segundo) y muestra por consola cuántos fotogramas por segundo ha sido
+     *       capaz de calcular.</li>
+     *   <li>"-fps N": muestra como máximo N fotogramas por segundo (0 = sin límite).</li>
+     *   <li>"-ticks N": simula N ticks por segundo.</li>
+     *   <li>"-pasivo": la ventana usa renderizado pasivo (repaint()) en vez de
+     *       renderizado activo (BufferStrategy).</li>
+     *   <li>"-grabar FICHERO": graba cada partida en un fichero (la última
+     *       partida sobrescribe las anteriores).</li>
+     *   <li>"-repetir FICHERO": repite sin ventana, tan rápido como se pueda,
+     *       una partida grabada con "-grabar", y muestra la puntuación final.</li>
+     *   <li>"-rapido": con "-repetir", la partida no se simula tick a tick,
+     *       sino saltando de golpe los ticks en los que no pasa nada (ver
+     *       Juego.avanzarRapido()). El resultado es el mismo.</li>
+     *   <li>"-hilodibujo": la escena se pinta en otro hilo, mientras el hilo
+     *       del juego ya simula el tick siguiente.</li>
+     *   <li>"-regiones": la ventana sólo copia a la pantalla las zonas que
+     *       cambian en cada fotograma.</li>
+     *   <li>"-estres N": prueba de carga. Cada segundo salen N bolas de golpe,
+     *       un jugador automático dispara sin parar, las bolas no le matan, y
+     *       cada segundo se muestra por consola el número de bolas y lo que
+     *       tardan los ticks y los fotogramas. Se puede usar con o sin ventana.</li>
+     *   <li>"-rafaga S": en la prueba de carga, segundos entre ráfaga y ráfaga.</li>
+     *   <li>"-duracion S": la partida acaba tras S segundos de simulación.</li>
+     *   <li>"-estadisticas FICHERO": cada 5 segundos de partida, añade a un
+     *       fichero CSV los percentiles del tiempo de cada fase de los ticks y
+     *       los fotogramas, y cuántos objetos de cada tipo hay. Con ventana,
+     *       las estadísticas también se pueden ver pulsando F3.</li>
+     *   <li>"-hilos N": cuando hay muchas bolas, se mueven con N hilos (por
+     *       defecto, uno por procesador; con 1, en el mismo hilo del juego).
+     *       Con "-partidas", son los hilos que se reparten las partidas.</li>
+     *   <li>"-partidas N": juega a la vez, sin ventana, N partidas del jugador
+     *       automático (ver EjecutorPartidas), y cada segundo muestra por
+     *       consola cuántas quedan y cuántos ticks por segundo se simulan entre
+     *       todas.</li>
+     *   <li>"-espectador": juega una partida del jugador automático y la
+     *       retransmite, tick a tick, a un espectador en el mismo programa
+     *       (ver partidaConEspectador()). Con "-sinventana", va tan rápido como
+     *       puede y sólo muestra por consola cuántos bytes ocupa cada tick.</li>
+     *   <li>"-servidor PUERTO": abre un servidor de partidas de dos jugadores
+     *       (ver ServidorPartidas) en ese puerto, y cada 5 segundos muestra
+     *       por consola cómo va.</li>
+     *   <li>"-red N": prueba del servidor en el mismo ordenador: abre un
+     *       servidor y le conecta N clientes con el jugador automático (ver
+     *       partidasEnRed()). Con "-duracion", los segundos que dura la prueba.</li>
+     * </ul>
      * @param args
      */
     public static void main(String[] args) {
+        boolean sinVentana = false;
+        float fotogramasSegundo = 60;
+        int ticksPorSegundo = 60;
+        boolean renderizadoActivo = true;
+        boolean porRegiones = false;
+        boolean hiloDibujo = false;
+        boolean rapido = false;
+        String ficheroGrabacion = null, ficheroRepeticion = null, ficheroEstadisticas = null;
+        int bolasPorRafaga = 0;
+        float segundosEntreRafagas = 1, duracion = 0;
+        int hilos = Runtime.getRuntime().availableProcessors();
+        int partidas = 0;
+        boolean espectador = false;
+        int puertoServidor = -1, clientesRed = 0;
+        for(int i = 0; i < args.length; i++) {
+            if("-sinventana".equals(args[i])) {
+                sinVentana = true;
+            } else if("-fps".equals(args[i]) && i + 1 < args.length) {
+                fotogramasSegundo = Float.parseFloat(args[++i]);
+            } else if("-ticks".equals(args[i]) && i + 1 < args.length) {
+                ticksPorSegundo = Integer.parseInt(args[++i]);
+            } else if("-pasivo".equals(args[i])) {
+                renderizadoActivo = false;
+            } else if("-grabar".equals(args[i]) && i + 1 < args.length) {
+                ficheroGrabacion = args[++i];
+            } else if("-repetir".equals(args[i]) && i + 1 < args.length) {
+                ficheroRepeticion = args[++i];
+            } else if("-rapido".equals(args[i])) {
+                rapido = true;
+            } else if("-regiones".equals(args[i])) {
+                porRegiones = true;
+            } else if("-estadisticas".equals(args[i]) && i + 1 < args.length) {
+                ficheroEstadisticas = args[++i];
+            } else if("-hilodibujo".equals(args[i])) {
+                hiloDibujo = true;
+            } else if("-estres".equals(args[i]) && i + 1 < args.length) {
+                bolasPorRafaga = Integer.parseInt(args[++i]);
+            } else if("-rafaga".equals(args[i]) && i + 1 < args.length) {
+                segundosEntreRafagas = Float.parseFloat(args[++i]);
+            } else if("-duracion".equals(args[i]) && i + 1 < args.length) {
+                duracion = Float.parseFloat(args[++i]);
+            } else if("-hilos".equals(args[i]) && i + 1 < args.length) {
+                hilos = Integer.parseInt(args[++i]);
+            } else if("-partidas".equals(args[i]) && i + 1 < args.length) {
+                partidas = Integer.parseInt(args[++i]);
+            } else if("-espectador".equals(args[i])) {
+                espectador = true;
+            } else if("-servidor".equals(args[i]) && i + 1 < args.length) {
+                puertoServidor = Integer.parseInt(args[++i]);
+            } else if("-red".equals(args[i]) && i + 1 < args.length) {
+                clientesRed = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Argumento desconocido: " + args[i]);
+            }
+        }
+        if(ficheroRepeticion != null) {
+            repetirPartida(ficheroRepeticion, rapido);
+            return;
+        }
+        if(partidas > 0) {
+            muchasPartidas(partidas, ticksPorSegundo, hilos, duracion);
+            return;
+        }
+        if(puertoServidor >= 0) {
+            servidor(puertoServidor, ticksPorSegundo);
+            return;
+        }
+        if(clientesRed > 0) {
+            partidasEnRed(clientesRed, ticksPorSegundo, duracion);
+            return;
+        }
+        if(espectador) {
+            partidaConEspectador(sinVentana, ticksPorSegundo, bolasPorRafaga, segundosEntreRafagas, duracion);
+            return;
+        }
+        if(sinVentana) {
+            partidaSinVentana(ticksPorSegundo, hilos, bolasPorRafaga, segundosEntreRafagas, duracion,
+                    ficheroEstadisticas);
+            return;
+        }
         // Se crea el objeto "Juego"
-        Juego elJuego = new Juego();
+        Ventana ventana = new Ventana("MOOPang", 640, 480, renderizadoActivo);
+        ventana.setFotogramasSegundo(fotogramasSegundo);
+        ventana.setRenderizadoPorRegiones(porRegiones);
+        Juego elJuego = new Juego(ventana);
+        elJuego.setFrecuenciaSimulacion(ticksPorSegundo);
+        if(ficheroGrabacion != null) {
+            elJuego.setFicheroGrabacion(new File(ficheroGrabacion));
+        }
+        elJuego.setDuracionMaxima(duracion);
+        elJuego.setHilosSimulacion(hilos);
+        elJuego.setHiloDibujo(hiloDibujo);
+        // con ventana siempre se miden las fases, para poder verlas con F3
+        Estadisticas estadisticas = new Estadisticas();
+        elJuego.setEstadisticas(estadisticas);
+        ventana.setEstadisticas(estadisticas);
+        if(ficheroEstadisticas != null) {
+            elJuego.setVolcadoEstadisticas(new File(ficheroEstadisticas), SEGUNDOS_POR_VOLCADO);
+        }
+        if(bolasPorRafaga > 0) {
+            // en la prueba de carga no hay presentación ni fin de juego
+            prepararPruebaDeCarga(elJuego, bolasPorRafaga, segundosEntreRafagas);
+            elJuego.partida();
+            System.exit(0);
+        }
         //Repite infinitamente (cuando el usuario cierre la ventana, internamente
         //se llamará a System.exit() y se saldrá de este bucle)...
         while(true) {
@@ -50,4 +235,286 @@ public class MOOPang {
         }
 
     }
+
+    /**
+     * Prepara un juego para la prueba de carga: ráfagas de bolas, un jugador
+     * automático invulnerable, y un resumen del rendimiento cada segundo.
+     * @param elJuego
+     * @param bolasPorRafaga Bolas que salen en cada ráfaga.
+     * @param segundosEntreRafagas Segundos de simulación entre ráfaga y ráfaga.
+     */
+    private static void prepararPruebaDeCarga(Juego elJuego, int bolasPorRafaga, float segundosEntreRafagas) {
+        elJuego.setRafagas(bolasPorRafaga, segundosEntreRafagas);
+        elJuego.setInvulnerable(true);
+        elJuego.setFuenteControles(new ControlesAutomaticos(elJuego.getFrecuenciaSimulacion() * 3));
+        elJuego.setMedidorRendimiento(new MedidorRendimiento(System.out, 1));
+    }
+
+    /**
+     * Juega una partida sin ventana (nadie mueve al protagonista, así que acabará
+     * en cuanto una bola le toque, salvo en la prueba de carga) y muestra por
+     * consola la velocidad de la simulación.
+     * @param ticksPorSegundo Ticks por segundo de la simulación.
+     * @param hilos Hilos con los que se mueven las bolas.
+     * @param bolasPorRafaga Si es mayor que 0, se hace la prueba de carga con
+     *        ráfagas de este número de bolas.
+     * @param segundosEntreRafagas Segundos entre ráfaga y ráfaga.
+     * @param duracion Segundos de simulación que dura la partida (0 = sin límite).
+     * @param ficheroEstadisticas Fichero donde se guardan las estadísticas de
+     *        cada fase, o null para no medirlas.
+     */
+    private static void partidaSinVentana(int ticksPorSegundo, int hilos, int bolasPorRafaga,
+            float segundosEntreRafagas, float duracion, String ficheroEstadisticas) {
+        PantallaVirtual pantalla = new PantallaVirtual(640, 480);
+        Juego elJuego = new Juego(pantalla);
+        elJuego.setFrecuenciaSimulacion(ticksPorSegundo);
+        elJuego.setDuracionMaxima(duracion);
+        elJuego.setHilosSimulacion(hilos);
+        if(ficheroEstadisticas != null) {
+            elJuego.setEstadisticas(new Estadisticas());
+            elJuego.setVolcadoEstadisticas(new File(ficheroEstadisticas), SEGUNDOS_POR_VOLCADO);
+        }
+        if(bolasPorRafaga > 0) {
+            prepararPruebaDeCarga(elJuego, bolasPorRafaga, segundosEntreRafagas);
+        }
+        long inicio = System.nanoTime();
+        elJuego.partida();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.println("Fotogramas: " + pantalla.getFotogramasMostrados()
+                + " en " + segundos + " s ("
+                + (long) (pantalla.getFotogramasMostrados() / segundos) + " fotogramas/s)");
+    }
+
+    /**
+     * Juega a la vez muchas partidas sin ventana del jugador automático, cada una
+     * con sus semillas, y muestra por consola la velocidad de la simulación y
+     * las puntuaciones. Las semillas son siempre las mismas (la partida i usa la
+     * semilla i), para que dos ejecuciones simulen exactamente lo mismo y se
+     * puedan comparar sus tiempos.
+     * @param partidas Número de partidas.
+     * @param ticksPorSegundo Ticks por segundo de la simulación.
+     * @param hilos Hilos que se reparten las partidas.
+     * @param duracion Segundos de simulación que dura cada partida como mucho
+     *        (0 = hasta que una bola toque al protagonista).
+     */
+    private static void muchasPartidas(int partidas, int ticksPorSegundo, int hilos, float duracion) {
+        EjecutorPartidas ejecutor = new EjecutorPartidas(hilos, ticksPorSegundo);
+        for(int i = 0; i < partidas; i++) {
+            Juego elJuego = new Juego(new PantallaVirtual(640, 480));
+            elJuego.setFrecuenciaSimulacion(ticksPorSegundo);
+            elJuego.setDuracionMaxima(duracion);
+            // cada partida ya va en un hilo; las bolas se mueven en ese mismo
+            elJuego.setHilosSimulacion(1);
+            elJuego.setSemillas(i, i * 31 + 17);
+            // para que no todos los jugadores vayan igual, cada uno da la vuelta a un ritmo
+            elJuego.setFuenteControles(new ControlesAutomaticos(ticksPorSegundo * (2 + i % 3)));
+            ejecutor.anyadir(elJuego);
+        }
+        try {
+            ejecutor.ejecutar(System.out, 1);
+        } catch (InterruptedException ex) {
+            return;
+        }
+        long puntos = 0;
+        int maximo = 0;
+        for(Juego elJuego : ejecutor.getJuegos()) {
+            puntos += elJuego.getPuntuacion();
+            maximo = Math.max(maximo, elJuego.getPuntuacion());
+        }
+        System.out.println("Puntos: media " + (puntos / partidas) + ", máximo " + maximo);
+    }
+
+    /**
+     * Prueba de la retransmisión a espectadores: juega sin ventana una partida
+     * del jugador automático y, después de cada tick, escribe su instantánea
+     * con un CodificadorInstantaneas, la lee con un DecodificadorInstantaneas
+     * (como haría el espectador al otro lado de la red) y la muestra con un
+     * Espectador. Las confirmaciones del espectador llegan con unos ticks de
+     * retraso, como si fueran por la red. Al acabar, muestra por consola
+     * cuántos bytes ocupa cada tick, lo que se tarda en escribir y leer las
+     * instantáneas, y si alguna leída no es igual que la original.
+     * @param sinVentana Si es true, el espectador no abre ventana, y la
+     *        partida va tan rápido como se pueda.
+     * @param ticksPorSegundo Ticks por segundo de la simulación.
+     * @param bolasPorRafaga Si es mayor que 0, salen ráfagas de este número de
+     *        bolas (ver Juego.setRafagas()) y el jugador no muere.
+     * @param segundosEntreRafagas Segundos entre ráfaga y ráfaga.
+     * @param duracion Segundos de simulación que dura la partida (0 = sin límite).
+     */
+    private static void partidaConEspectador(boolean sinVentana, int ticksPorSegundo, int bolasPorRafaga,
+            float segundosEntreRafagas, float duracion) {
+        Juego elJuego = new Juego(new PantallaVirtual(640, 480));
+        elJuego.setFrecuenciaSimulacion(ticksPorSegundo);
+        elJuego.setDuracionMaxima(duracion);
+        elJuego.setHilosSimulacion(1);
+        elJuego.setFuenteControles(new ControlesAutomaticos(ticksPorSegundo * 3));
+        if(bolasPorRafaga > 0) {
+            elJuego.setRafagas(bolasPorRafaga, segundosEntreRafagas);
+            elJuego.setInvulnerable(true);
+        }
+        Pantalla pantalla = sinVentana ? new PantallaVirtual(640, 480) : new Ventana("MOOPang - espectador", 640, 480);
+        Espectador espectador = new Espectador(pantalla);
+        CodificadorInstantaneas codificador = new CodificadorInstantaneas();
+        DecodificadorInstantaneas decodificador = new DecodificadorInstantaneas();
+        Instantanea original = new Instantanea();
+        long[] pendientes = new long[LATENCIA_CONFIRMACION];
+        Arrays.fill(pendientes, -1);
+
+        long nanosCodificar = 0, nanosDecodificar = 0, bytesClaves = 0, bytesDeltas = 0;
+        int diferentes = 0;
+        long nanosPorTick = 1000000000L / ticksPorSegundo;
+        long siguienteTick = System.nanoTime();
+        elJuego.empezarPartida();
+        while(!elJuego.isPartidaAcabada()) {
+            elJuego.nuevoTickDeSimulacion();
+            original.capturar(elJuego);
+
+            long claves = codificador.getClaves();
+            long t = System.nanoTime();
+            ByteBuffer datos = codificador.codificar(original);
+            long t2 = System.nanoTime();
+            nanosCodificar += t2 - t;
+            if(codificador.getClaves() > claves) {
+                bytesClaves += datos.remaining();
+            } else {
+                bytesDeltas += datos.remaining();
+            }
+            Instantanea recibida = decodificador.decodificar(datos);
+            nanosDecodificar += System.nanoTime() - t2;
+
+            if(recibida == null || !recibida.isIgual(original)) {
+                diferentes++;
+            } else {
+                // la confirmación de este tick llegará dentro de unos ticks
+                int i = (int) (recibida.getTick() % LATENCIA_CONFIRMACION);
+                codificador.confirmar(pendientes[i]);
+                pendientes[i] = recibida.getTick();
+                espectador.mostrar(recibida);
+            }
+            if(!sinVentana) {
+                siguienteTick += nanosPorTick;
+                long espera = siguienteTick - System.nanoTime();
+                if(espera > 0) {
+                    LockSupport.parkNanos(espera);
+                }
+            }
+        }
+        elJuego.acabarPartida();
+
+        long ticks = elJuego.getTicks(), bytes = bytesClaves + bytesDeltas;
+        long claves = codificador.getClaves(), deltas = codificador.getDeltas();
+        System.out.println(String.format("Ticks: %d (%d claves, %d deltas), diferentes: %d", ticks, claves, deltas, diferentes));
+        System.out.println(String.format("Bytes por tick: %.1f (claves %.1f, deltas %.1f)",
+                bytes / (double) ticks, claves == 0 ? 0 : bytesClaves / (double) claves,
+                deltas == 0 ? 0 : bytesDeltas / (double) deltas));
+        System.out.println(String.format("Escribir: %.0f ns/tick (%.1f MB/s), leer: %.0f ns/tick (%.1f MB/s)",
+                nanosCodificar / (double) ticks, bytes * 1e3 / nanosCodificar,
+                nanosDecodificar / (double) ticks, bytes * 1e3 / nanosDecodificar));
+        if(!sinVentana) {
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Abre un servidor de partidas y lo deja funcionando hasta que se acaba el
+     * programa.
+     * @param puerto Puerto donde acepta conexiones.
+     * @param ticksPorSegundo Ticks por segundo de las partidas.
+     */
+    private static void servidor(int puerto, int ticksPorSegundo) {
+        try {
+            ServidorPartidas servidor = new ServidorPartidas(new InetSocketAddress(puerto), ticksPorSegundo);
+            servidor.setResumen(System.out, 5);
+            System.out.println("Esperando jugadores en el puerto " + servidor.getPuerto());
+            servidor.ejecutar();
+        } catch (IOException ex) {
+            System.err.println("Error en el servidor: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Prueba del servidor de partidas: lo abre en un puerto libre del propio
+     * ordenador y le conecta unos cuantos clientes con el jugador automático,
+     * todos en otro hilo, que juegan por parejas. Para que las partidas duren
+     * toda la prueba, las bolas no matan a los jugadores. Cada segundo muestra
+     * por consola cuántos ticks por segundo simula el servidor y con qué
+     * regularidad, y al acabar, cuántos bytes ha enviado y recibido cada cliente
+     * y cuántas veces se ha tenido que corregir su predicción.
+     * @param clientes Número de clientes.
+     * @param ticksPorSegundo Ticks por segundo de las partidas.
+     * @param duracion Segundos que dura la prueba (0 = 10 segundos).
+     */
+    private static void partidasEnRed(int clientes, int ticksPorSegundo, float duracion) {
+        final ServidorPartidas servidor;
+        final ClientesAutomaticos jugadores;
+        try {
+            servidor = new ServidorPartidas(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), ticksPorSegundo);
+            servidor.setInvulnerable(true);
+            servidor.setResumen(System.out, 1);
+            Thread hiloServidor = new Thread("MOOPang - servidor") {
+                public void run() {
+                    try {
+                        servidor.ejecutar();
+                    } catch (IOException ex) {
+                        System.err.println("Error en el servidor: " + ex.getMessage());
+                    }
+                }
+            };
+            hiloServidor.start();
+            jugadores = new ClientesAutomaticos(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    servidor.getPuerto()), clientes, ticksPorSegundo);
+            Thread hiloClientes = new Thread("MOOPang - clientes") {
+                public void run() {
+                    try {
+                        jugadores.ejecutar();
+                    } catch (IOException ex) {
+                        System.err.println("Error en los clientes: " + ex.getMessage());
+                    }
+                }
+            };
+            hiloClientes.start();
+            Thread.sleep((long) ((duracion > 0 ? duracion : 10) * 1000));
+            jugadores.parar();
+            hiloClientes.join();
+            servidor.parar();
+            hiloServidor.join();
+        } catch (IOException ex) {
+            System.err.println("No se puede abrir el servidor: " + ex.getMessage());
+            return;
+        } catch (InterruptedException ex) {
+            return;
+        }
+        System.out.println("Partidas: " + servidor.getPartidasJugadas());
+        jugadores.escribirResumen(System.out);
+    }
+
+    /**
+     * Repite una partida grabada sin ventana y sin límite de velocidad, y
+     * muestra por consola la puntuación final y lo que ha tardado.
+     * @param fichero Fichero con la partida grabada.
+     * @param rapido Si es true, se avanza a saltos (ver Juego.partidaRapida()).
+     */
+    private static void repetirPartida(String fichero, boolean rapido) {
+        Repeticion repeticion;
+        try {
+            repeticion = new Repeticion(new FileInputStream(fichero));
+        } catch (IOException ex) {
+            System.err.println("No se puede leer " + fichero + ": " + ex.getMessage());
+            return;
+        }
+        PantallaVirtual pantalla = new PantallaVirtual(640, 480);
+        Juego elJuego = new Juego(pantalla);
+        repeticion.preparar(elJuego);
+        long inicio = System.nanoTime();
+        if(rapido) {
+            elJuego.partidaRapida();
+        } else {
+            elJuego.partida();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.println("Puntos: " + elJuego.getPuntuacion()
+                + " Ticks: " + elJuego.getTicks()
+                + " (" + (elJuego.getTicks() / repeticion.getTicksPorSegundo()) + " s de partida)"
+                + " repetidos en " + segundos + " s");
+    }
 }
@@ -0,0 +1,45 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.eventos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JDK Flight Recorder que dura lo que tarda un objeto (un disparo o
+ * el protagonista) en comprobar si choca con las bolas que tiene cerca, con
+ * cuántas ha mirado y con cuántas ha chocado. Desactivado por defecto.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+@Name("moo.pang.Colisiones")
+@Label("Comprobación de colisiones")
+@Category("MOOPang")
+@Description("Un objeto comprueba si choca con las bolas cercanas")
+@Enabled(false)
+@StackTrace(false)
+public class EventoColisiones extends Event {
+    @Label("Objeto")
+    public String objeto;
+
+    @Label("Bolas comprobadas")
+    public int comprobadas;
+
+    @Label("Bolas tocadas")
+    public int tocadas;
+}
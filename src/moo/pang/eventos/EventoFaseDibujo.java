@@ -0,0 +1,54 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.eventos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JDK Flight Recorder que dura lo que dura una fase del dibujo de un
+ * fotograma (restaurar el fondo, dibujar los objetos, mostrar el lienzo...).
+ * Desactivado por defecto.
+ *
+ * Las fases van una detrás de otra: cada una acaba cuando empieza la siguiente.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+@Name("moo.pang.FaseDibujo")
+@Label("Fase de dibujo")
+@Category("MOOPang")
+@Description("Una fase del dibujo de un fotograma")
+@Enabled(false)
+@StackTrace(false)
+public class EventoFaseDibujo extends Event {
+    @Label("Fase")
+    public String fase;
+
+    /**
+     * Empieza una fase. Sólo se debe llamar si el evento está activado (ver
+     * EventosActivos).
+     * @param fase Nombre de la fase.
+     * @return El evento, que se debe acabar con commit().
+     */
+    public static EventoFaseDibujo empezar(String fase) {
+        EventoFaseDibujo e = new EventoFaseDibujo();
+        e.fase = fase;
+        e.begin();
+        return e;
+    }
+}
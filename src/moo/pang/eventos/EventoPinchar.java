@@ -0,0 +1,54 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.eventos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JDK Flight Recorder que se emite cada vez que se pincha una bola:
+ * dónde estaba, qué radio tenía, y si se ha dividido en dos o ha desaparecido.
+ * Desactivado por defecto.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+@Name("moo.pang.Pinchar")
+@Label("Bola pinchada")
+@Category("MOOPang")
+@Description("Una bola se divide en dos o desaparece al pincharla")
+@Enabled(false)
+@StackTrace(false)
+public class EventoPinchar extends Event {
+    @Label("Centro X")
+    public float centroX;
+
+    @Label("Centro Y")
+    public float centroY;
+
+    @Label("Radio")
+    @Description("Radio que tenía la bola antes de pincharla")
+    public float radio;
+
+    @Label("Dividida")
+    @Description("true si se ha dividido en dos bolas, false si ha desaparecido")
+    public boolean dividida;
+
+    @Label("Bolas")
+    @Description("Bolas que hay en el juego después de pincharla")
+    public int bolas;
+}
@@ -0,0 +1,49 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.eventos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JDK Flight Recorder que dura lo que dura un tick de la simulación,
+ * con cuántos objetos había al acabarlo. En una grabación de JFR permite ver en
+ * qué tick ha habido una pausa del recolector de basura, un safepoint...
+ *
+ * Como todos los eventos del juego, está desactivado por defecto, y mientras no
+ * se active (ver el fichero moopang.jfc) el juego no lo crea (ver EventosActivos).
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+@Name("moo.pang.Tick")
+@Label("Tick")
+@Category("MOOPang")
+@Description("Un tick de la simulación del juego")
+@Enabled(false)
+@StackTrace(false)
+public class EventoTick extends Event {
+    @Label("Número de tick")
+    public long tick;
+
+    @Label("Bolas")
+    public int bolas;
+
+    @Label("Objetos animados")
+    @Description("Objetos en la lista de objetos animados (el almacén de bolas cuenta como uno)")
+    public int objetos;
+}
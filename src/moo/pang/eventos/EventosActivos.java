@@ -0,0 +1,78 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.eventos;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+
+/**
+ * Sabe qué eventos del juego están activados en alguna grabación de JFR.
+ *
+ * Para preguntárselo a un evento (isEnabled()) hay que crearlo, y el juego
+ * crearía varios en cada tick aunque JFR no esté grabando. Además, la primera
+ * vez que se usa una clase de evento la máquina virtual pone en marcha JFR, y
+ * tarda unos cientos de milisegundos. Por eso aquí se mira sólo cuando empieza
+ * o acaba una grabación (con -XX:StartFlightRecording, con jcmd...), y el
+ * juego sólo crea un evento si está activado.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public final class EventosActivos {
+    private static volatile boolean tick = false, faseSimulacion = false, faseDibujo = false,
+            colisiones = false, pinchar = false;
+
+    static {
+        // si JFR ya está funcionando, se llama enseguida a recorderInitialized()
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            public void recorderInitialized(FlightRecorder recorder) {
+                actualizar();
+            }
+
+            public void recordingStateChanged(Recording grabacion) {
+                actualizar();
+            }
+        });
+    }
+
+    private EventosActivos() {
+    }
+
+    private static void actualizar() {
+        tick = new EventoTick().isEnabled();
+        faseSimulacion = new EventoFaseSimulacion().isEnabled();
+        faseDibujo = new EventoFaseDibujo().isEnabled();
+        colisiones = new EventoColisiones().isEnabled();
+        pinchar = new EventoPinchar().isEnabled();
+    }
+
+    public static boolean isTick() {
+        return tick;
+    }
+
+    public static boolean isFaseSimulacion() {
+        return faseSimulacion;
+    }
+
+    public static boolean isFaseDibujo() {
+        return faseDibujo;
+    }
+
+    public static boolean isColisiones() {
+        return colisiones;
+    }
+
+    public static boolean isPinchar() {
+        return pinchar;
+    }
+}
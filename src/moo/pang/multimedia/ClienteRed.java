@@ -0,0 +1,293 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import moo.pang.objetosanimados.Protagonista;
+
+/**
+ * Un jugador de una partida en red (ver ServidorPartidas). En cada tick envía
+ * al servidor los controles que da su FuenteControles, y recibe de él el estado
+ * de la partida.
+ *
+ * El estado tarda un rato en ir y volver, así que el cliente no espera al
+ * servidor para mover a su protagonista: lo mueve él mismo en cuanto pulsa los
+ * controles, con las mismas operaciones que hará el servidor (la predicción).
+ * Guarda los controles que ha enviado y, cuando llega un estado, parte de la
+ * posición que dice el servidor y vuelve a aplicar los controles que el servidor
+ * todavía no había aplicado (la reconciliación). Si el resultado no coincide con
+ * lo que había predicho (por ejemplo, porque sus controles llegaron tarde y el
+ * servidor repitió los anteriores), se queda con el resultado y lo cuenta como
+ * una corrección.
+ *
+ * Sólo se predice el movimiento del propio protagonista: las bolas, los
+ * disparos y el otro jugador se ven como llegan del servidor.
+ *
+ * No crea ningún hilo: quien lo usa lo tiene que registrar en un Selector y
+ * llamar a leer() cuando el canal tenga datos, y a tick() y enviar() en cada
+ * tick (ver ClientesAutomaticos).
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class ClienteRed {
+    /**
+     * Número de controles enviados que se guardan para volver a aplicarlos.
+     */
+    private static final int HISTORIAL_CONTROLES = 128;
+
+    private final SocketChannel canal;
+    private final FuenteControles fuenteControles;
+    private final ByteBuffer entrada = ByteBuffer.allocateDirect(ServidorPartidas.TAMANYO_BUFFER);
+    private final ByteBuffer salida = ByteBuffer.allocateDirect(1024);
+    private final DecodificadorInstantaneas decodificador = new DecodificadorInstantaneas();
+
+    private int jugador = -1;
+    private float segundosPorTick, margenIzquierdo, margenDerecho;
+    /**
+     * Controles enviados: los de la secuencia s están en la posición s % HISTORIAL_CONTROLES.
+     */
+    private final int[] enviados = new int[HISTORIAL_CONTROLES];
+    private long secuencia = 0;
+    private Instantanea instantanea = null;
+    private boolean posicionConocida = false;
+    private float posicionX;
+    private boolean acabada = false;
+    private int puntuacion = 0;
+
+    private long estados = 0, correcciones = 0, bytesRecibidos = 0, bytesEnviados = 0;
+    private float correccionMaxima = 0;
+
+    /**
+     * @param canal Canal ya conectado al servidor y en modo no bloqueante.
+     * @param fuenteControles De dónde salen los controles del jugador en cada tick.
+     */
+    public ClienteRed(SocketChannel canal, FuenteControles fuenteControles) {
+        this.canal = canal;
+        this.fuenteControles = fuenteControles;
+    }
+
+    public SocketChannel getCanal() {
+        return canal;
+    }
+
+    /**
+     * Lee lo que haya llegado del servidor y procesa los mensajes completos.
+     * Si el servidor ha cerrado la conexión, la cierra también (ver cerrar()).
+     * @throws IOException Si falla la conexión o el servidor envía algo incorrecto.
+     */
+    public void leer() throws IOException {
+        int leidos = canal.read(entrada);
+        if(leidos < 0) {
+            cerrar();
+            return;
+        }
+        bytesRecibidos += leidos;
+        entrada.flip();
+        while(entrada.remaining() >= 4) {
+            int longitud = entrada.getInt(entrada.position());
+            if(longitud < 1 || longitud > entrada.capacity() - 4) {
+                throw new IOException("Longitud de mensaje incorrecta: " + longitud);
+            }
+            if(entrada.remaining() < 4 + longitud) {
+                break;
+            }
+            entrada.getInt();
+            int fin = entrada.position() + longitud;
+            int limite = entrada.limit();
+            // el mensaje no se puede leer más allá de su longitud
+            entrada.limit(fin);
+            try {
+                leerMensaje();
+            } catch(RuntimeException ex) {
+                // mensaje más corto de lo que debe, o una instantánea incorrecta
+                throw new IOException("Mensaje incorrecto", ex);
+            }
+            entrada.limit(limite);
+            entrada.position(fin);
+        }
+        entrada.compact();
+    }
+
+    private void leerMensaje() throws IOException {
+        int tipo = entrada.get();
+        if(tipo == ServidorPartidas.BIENVENIDA) {
+            jugador = entrada.get();
+            segundosPorTick = 1f / entrada.getInt();
+            margenIzquierdo = entrada.getFloat();
+            margenDerecho = entrada.getFloat();
+        } else if(tipo == ServidorPartidas.ESTADO) {
+            long aplicada = CodificadorInstantaneas.leerVarint(entrada);
+            recibirEstado(aplicada, decodificador.decodificar(entrada));
+        } else if(tipo == ServidorPartidas.FIN) {
+            puntuacion = entrada.getInt();
+            acabada = true;
+        } else {
+            throw new IOException("Mensaje desconocido: " + tipo);
+        }
+    }
+
+    /**
+     * Da la partida por acabada y cierra la conexión (con lo que deja de
+     * estar registrada en el Selector).
+     */
+    public void cerrar() {
+        acabada = true;
+        try {
+            canal.close();
+        } catch(IOException ex) {
+            // ya está cerrada
+        }
+    }
+
+    /**
+     * Reconcilia la posición predicha con la que dice el servidor.
+     * @param aplicada Secuencia de los últimos controles que ha aplicado el servidor.
+     * @param nueva Estado de la partida, o null si no se ha podido leer.
+     */
+    private void recibirEstado(long aplicada, Instantanea nueva) {
+        if(nueva == null) {
+            return;
+        }
+        estados++;
+        instantanea = nueva;
+        puntuacion = nueva.getPuntuacion();
+        float x = nueva.getJugadorX(jugador);
+        if(secuencia - aplicada > HISTORIAL_CONTROLES) {
+            // ya no se sabe qué controles faltan
+            posicionX = x;
+            posicionConocida = true;
+            return;
+        }
+        for(long s = aplicada + 1; s <= secuencia; s++) {
+            x = Protagonista.andar(x, enviados[(int) (s % HISTORIAL_CONTROLES)], 1, segundosPorTick, margenIzquierdo, margenDerecho);
+        }
+        // la posición que llega está redondeada: las diferencias menores no cuentan
+        float error = Math.abs(x - posicionX);
+        if(!posicionConocida || error > 1f / Instantanea.PARTES_POR_PIXEL) {
+            if(posicionConocida) {
+                correcciones++;
+                correccionMaxima = Math.max(correccionMaxima, error);
+            }
+            posicionX = x;
+            posicionConocida = true;
+        }
+    }
+
+    /**
+     * Lee los controles del tick, mueve al protagonista según ellos y los deja
+     * preparados para enviarlos al servidor (junto con el último estado recibido,
+     * como confirmación). No hace nada hasta que el servidor da la bienvenida,
+     * ni cuando la partida ha acabado.
+     */
+    public void tick() {
+        if(jugador < 0 || acabada) {
+            return;
+        }
+        int controles = fuenteControles.siguienteTick() & 0xFF;
+        secuencia++;
+        enviados[(int) (secuencia % HISTORIAL_CONTROLES)] = controles;
+        if(posicionConocida) {
+            posicionX = Protagonista.andar(posicionX, controles, 1, segundosPorTick, margenIzquierdo, margenDerecho);
+        }
+        // 4 de la longitud, 1 del tipo, 1 de los controles y como mucho 10 por varint
+        if(salida.remaining() < 4 + 1 + 10 + 1 + 10) {
+            return;
+        }
+        int inicio = salida.position();
+        salida.putInt(0);
+        salida.put((byte) ServidorPartidas.CONTROLES);
+        CodificadorInstantaneas.escribirVarint(salida, secuencia);
+        salida.put((byte) controles);
+        CodificadorInstantaneas.escribirVarint(salida, instantanea == null ? 0 : instantanea.getTick() + 1);
+        salida.putInt(inicio, salida.position() - inicio - 4);
+    }
+
+    /**
+     * Escribe lo que se pueda de lo que está preparado para enviar.
+     * @return true si ha quedado algo por enviar.
+     * @throws IOException
+     */
+    public boolean enviar() throws IOException {
+        if(salida.position() > 0) {
+            salida.flip();
+            bytesEnviados += canal.write(salida);
+            salida.compact();
+        }
+        return salida.position() > 0;
+    }
+
+    /**
+     * Indica si la partida ha acabado (o se ha cerrado la conexión).
+     */
+    public boolean isAcabada() {
+        return acabada;
+    }
+
+    /**
+     * Jugador que es este cliente en la partida (-1 si todavía no ha empezado).
+     */
+    public int getJugador() {
+        return jugador;
+    }
+
+    /**
+     * Último estado de la partida recibido del servidor, o null.
+     * <b>OJO</b>: se reutiliza (ver DecodificadorInstantaneas.decodificar).
+     */
+    public Instantanea getInstantanea() {
+        return instantanea;
+    }
+
+    /**
+     * Posición X predicha del propio protagonista, para dibujarlo en vez de la
+     * que llega en la instantánea.
+     */
+    public float getPosicionX() {
+        return posicionX;
+    }
+
+    public int getPuntuacion() {
+        return puntuacion;
+    }
+
+    /**
+     * Número de estados recibidos (y leídos) del servidor.
+     */
+    public long getEstados() {
+        return estados;
+    }
+
+    /**
+     * Número de veces que la posición predicha no coincidía con la del servidor.
+     */
+    public long getCorrecciones() {
+        return correcciones;
+    }
+
+    /**
+     * Mayor diferencia entre la posición predicha y la del servidor, en píxeles.
+     */
+    public float getCorreccionMaxima() {
+        return correccionMaxima;
+    }
+
+    public long getBytesRecibidos() {
+        return bytesRecibidos;
+    }
+
+    public long getBytesEnviados() {
+        return bytesEnviados;
+    }
+}
@@ -0,0 +1,169 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Muchos clientes de red (ver ClienteRed) con el jugador automático, todos
+ * en un solo hilo, para probar un ServidorPartidas: cuántos jugadores aguanta
+ * y cuántos bytes envía y recibe cada uno.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class ClientesAutomaticos {
+    private final Selector selector;
+    private final ClienteRed[] clientes;
+    private final int ticksPorSegundo;
+    private volatile boolean parado = false;
+    private long nanosegundos = 0;
+
+    /**
+     * Conecta los clientes al servidor.
+     * @param servidor
+     * @param numeroClientes
+     * @param ticksPorSegundo Ticks por segundo a los que los clientes envían
+     *        los controles (los mismos que el servidor).
+     * @throws IOException
+     */
+    public ClientesAutomaticos(InetSocketAddress servidor, int numeroClientes, int ticksPorSegundo) throws IOException {
+        this.ticksPorSegundo = ticksPorSegundo;
+        selector = Selector.open();
+        clientes = new ClienteRed[numeroClientes];
+        for(int i = 0; i < numeroClientes; i++) {
+            SocketChannel canal = SocketChannel.open(servidor);
+            canal.configureBlocking(false);
+            canal.socket().setTcpNoDelay(true);
+            // cada uno cambia de sentido a un ritmo distinto
+            clientes[i] = new ClienteRed(canal, new ControlesAutomaticos(ticksPorSegundo * (2 + i % 3)));
+            canal.register(selector, SelectionKey.OP_READ, clientes[i]);
+        }
+    }
+
+    /**
+     * Juega hasta que se acaban todas las partidas o se llama a parar(). Al
+     * acabar, cierra las conexiones.
+     * @throws IOException
+     */
+    public void ejecutar() throws IOException {
+        long nanosPorTick = 1000000000L / ticksPorSegundo;
+        long inicio = System.nanoTime();
+        long siguienteTick = inicio;
+        while(!parado && !isAcabados()) {
+            long espera = siguienteTick - System.nanoTime();
+            if(espera > 0) {
+                selector.select(Math.max(1, espera / 1000000));
+            } else {
+                selector.selectNow();
+            }
+            Iterator<SelectionKey> listas = selector.selectedKeys().iterator();
+            while(listas.hasNext()) {
+                SelectionKey clave = listas.next();
+                listas.remove();
+                ClienteRed cliente = (ClienteRed) clave.attachment();
+                try {
+                    if(clave.isValid() && clave.isReadable()) {
+                        cliente.leer();
+                    }
+                    if(clave.isValid() && clave.isWritable()) {
+                        escribir(clave, cliente);
+                    }
+                } catch(IOException ex) {
+                    cliente.cerrar();
+                }
+            }
+            long ahora = System.nanoTime();
+            if(ahora - siguienteTick < 0) {
+                continue;
+            }
+            for(SelectionKey clave : selector.keys()) {
+                ClienteRed cliente = (ClienteRed) clave.attachment();
+                cliente.tick();
+                try {
+                    escribir(clave, cliente);
+                } catch(IOException ex) {
+                    cliente.cerrar();
+                }
+            }
+            siguienteTick += nanosPorTick;
+            if(ahora - siguienteTick > nanosPorTick * ticksPorSegundo) {
+                siguienteTick = ahora;
+            }
+        }
+        nanosegundos = System.nanoTime() - inicio;
+        for(ClienteRed cliente : clientes) {
+            cliente.cerrar();
+        }
+        selector.close();
+    }
+
+    private static void escribir(SelectionKey clave, ClienteRed cliente) throws IOException {
+        if(!clave.isValid()) {
+            return;
+        }
+        clave.interestOps(cliente.enviar()
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ);
+    }
+
+    private boolean isAcabados() {
+        for(ClienteRed cliente : clientes) {
+            if(!cliente.isAcabada()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hace que ejecutar() acabe. Se puede llamar desde cualquier hilo.
+     */
+    public void parar() {
+        parado = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Escribe, después de ejecutar(), los bytes por segundo que ha recibido y
+     * enviado cada cliente (de media y el que más), los estados recibidos y las
+     * correcciones de la posición predicha.
+     * @param salida
+     */
+    public void escribirResumen(PrintStream salida) {
+        double segundos = nanosegundos / 1e9;
+        long recibidos = 0, enviados = 0, maximoRecibidos = 0, maximoEnviados = 0;
+        long estados = 0, correcciones = 0;
+        float correccionMaxima = 0;
+        for(ClienteRed cliente : clientes) {
+            recibidos += cliente.getBytesRecibidos();
+            enviados += cliente.getBytesEnviados();
+            maximoRecibidos = Math.max(maximoRecibidos, cliente.getBytesRecibidos());
+            maximoEnviados = Math.max(maximoEnviados, cliente.getBytesEnviados());
+            estados += cliente.getEstados();
+            correcciones += cliente.getCorrecciones();
+            correccionMaxima = Math.max(correccionMaxima, cliente.getCorreccionMaxima());
+        }
+        int n = clientes.length;
+        salida.println(String.format("clientes=%d segundos=%.1f recibido=%.0f B/s (max %.0f) enviado=%.0f B/s (max %.0f) por cliente",
+                n, segundos, recibidos / segundos / n, maximoRecibidos / segundos,
+                enviados / segundos / n, maximoEnviados / segundos));
+        salida.println(String.format("estados=%.1f/s por cliente correcciones=%d (%.3f%%) correccion maxima=%.2f px",
+                estados / segundos / n, correcciones, estados == 0 ? 0 : 100.0 * correcciones / estados, correccionMaxima));
+    }
+}
@@ -0,0 +1,210 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Escribe instantáneas de una partida (ver Instantanea) en el menor número de
+ * bytes posible, para enviarlas a un espectador tick a tick (ver
+ * DecodificadorInstantaneas).
+ *
+ * En vez de enviar siempre la instantánea entera, se envía lo que ha cambiado
+ * respecto a la última que el espectador ha confirmado que tiene (ver
+ * confirmar()): es una "delta". Si todavía no ha confirmado ninguna, o la
+ * que confirmó es tan antigua que ya no se guarda, se envía una "clave": una
+ * delta respecto a una instantánea vacía, que el espectador puede leer sin
+ * tener ninguna otra.
+ *
+ * Formato de cada instantánea:
+ * <pre>
+ *   byte    CLAVE o DELTA
+ *   varint  tick
+ *   varint  (sólo en las DELTA) ticks entre la instantánea base y ésta
+ *   para cada sección (cabecera, jugadores, bolas, disparos, destellos):
+ *     varint  número de objetos
+ *     los valores de la sección, en grupos de 8:
+ *       byte    máscara: el bit n indica si el valor n del grupo ha cambiado
+ *       varint  diferencia con la base de cada valor que ha cambiado
+ * </pre>
+ *
+ * Los objetos se comparan con el que ocupa su misma posición en la base (y
+ * los que no estaban, con 0). Los "varint" son como los de GrabadoraControles,
+ * pero pasando antes los negativos a positivos ("zigzag": 0, -1, 1, -2... se
+ * escriben 0, 1, 2, 3...), para que una diferencia pequeña ocupe un solo byte.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class CodificadorInstantaneas {
+    static final int CLAVE = 1, DELTA = 2;
+    /**
+     * Número de instantáneas enviadas que se guardan para usarlas de base.
+     * Si el espectador tarda más ticks que éstos en confirmar una, se le
+     * envía una clave.
+     */
+    static final int HISTORIAL = 64;
+
+    /**
+     * Instantáneas enviadas: la del tick t está en la posición t % HISTORIAL.
+     */
+    private final Instantanea[] enviadas = new Instantanea[HISTORIAL];
+    private final Instantanea vacia = new Instantanea();
+    private long confirmada = -1, ultima = -1;
+    /**
+     * Buffer donde se escriben las instantáneas. Se reutiliza (y sólo se crea
+     * uno nuevo si no cabe alguna instantánea).
+     */
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+    private long claves = 0, deltas = 0;
+
+    public CodificadorInstantaneas() {
+        for(int i = 0; i < HISTORIAL; i++) {
+            enviadas[i] = new Instantanea();
+        }
+    }
+
+    /**
+     * Apunta que el espectador ya tiene la instantánea de un tick, para usarla
+     * de base en las siguientes. Si no es de un tick que se haya escrito (por
+     * ejemplo, porque llega tarde la confirmación de una partida anterior), no
+     * se tiene en cuenta.
+     * @param tick
+     */
+    public void confirmar(long tick) {
+        if(tick > confirmada && tick <= ultima) {
+            confirmada = tick;
+        }
+    }
+
+    /**
+     * Escribe una instantánea, como delta respecto a la última confirmada o como clave.
+     *
+     * <b>OJO</b>: el buffer que se devuelve se reutiliza en la siguiente
+     * llamada, así que hay que enviarlo antes de volver a llamar a este método.
+     * @param instantanea Instantánea a escribir. Si es de un tick anterior a
+     *        la última que se ha escrito, se entiende que ha empezado una
+     *        partida nueva, y se olvidan todas las enviadas.
+     * @return Buffer con la instantánea escrita, entre la posición 0 y el límite.
+     */
+    public ByteBuffer codificar(Instantanea instantanea) {
+        if(instantanea.tick < ultima) {
+            for(int i = 0; i < HISTORIAL; i++) {
+                enviadas[i].tick = -1;
+            }
+            confirmada = -1;
+        }
+        ultima = instantanea.tick;
+        int posicion = (int) (instantanea.tick % HISTORIAL);
+        int posicionBase = (int) (confirmada % HISTORIAL);
+        Instantanea base = null;
+        if(confirmada >= 0 && posicionBase != posicion && enviadas[posicionBase].tick == confirmada) {
+            base = enviadas[posicionBase];
+        }
+        enviadas[posicion].copiar(instantanea);
+
+        asegurarCapacidad(instantanea);
+        buffer.clear();
+        if(base == null) {
+            buffer.put((byte) CLAVE);
+            escribirVarint(buffer, instantanea.tick);
+            base = vacia;
+            claves++;
+        } else {
+            buffer.put((byte) DELTA);
+            escribirVarint(buffer, instantanea.tick);
+            escribirVarint(buffer, instantanea.tick - base.tick);
+            deltas++;
+        }
+        for(int s = 0; s < Instantanea.SECCIONES; s++) {
+            escribirSeccion(instantanea, base, s);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void escribirSeccion(Instantanea instantanea, Instantanea base, int s) {
+        int[] valores = instantanea.valores[s], valoresBase = base.valores[s];
+        int n = instantanea.objetos[s] * Instantanea.CAMPOS[s];
+        int nBase = base.objetos[s] * Instantanea.CAMPOS[s];
+        escribirVarint(buffer, instantanea.objetos[s]);
+        for(int grupo = 0; grupo < n; grupo += 8) {
+            int fin = Math.min(n, grupo + 8);
+            int posicionMascara = buffer.position();
+            buffer.put((byte) 0);
+            int mascara = 0;
+            for(int i = grupo; i < fin; i++) {
+                int diferencia = valores[i] - (i < nBase ? valoresBase[i] : 0);
+                if(diferencia != 0) {
+                    mascara |= 1 << (i - grupo);
+                    escribirVarint(buffer, ((diferencia << 1) ^ (diferencia >> 31)) & 0xFFFFFFFFL);
+                }
+            }
+            buffer.put(posicionMascara, (byte) mascara);
+        }
+    }
+
+    /**
+     * Se asegura de que en el buffer quepa la instantánea aunque cambien todos
+     * sus valores: como mucho, 5 bytes por valor, una máscara cada 8 valores,
+     * y la cabecera.
+     */
+    private void asegurarCapacidad(Instantanea instantanea) {
+        int maximo = 32;
+        for(int s = 0; s < Instantanea.SECCIONES; s++) {
+            int n = instantanea.objetos[s] * Instantanea.CAMPOS[s];
+            maximo += 5 + n * 5 + (n + 7) / 8;
+        }
+        if(maximo > buffer.capacity()) {
+            buffer = ByteBuffer.allocateDirect(Math.max(maximo, buffer.capacity() * 2));
+        }
+    }
+
+    /**
+     * Escribe un número positivo en bytes de 7 bits.
+     */
+    static void escribirVarint(ByteBuffer buffer, long numero) {
+        while((numero & ~0x7FL) != 0) {
+            buffer.put((byte) ((numero & 0x7F) | 0x80));
+            numero >>>= 7;
+        }
+        buffer.put((byte) numero);
+    }
+
+    /**
+     * Lee un número escrito con escribirVarint().
+     */
+    static long leerVarint(ByteBuffer buffer) {
+        long numero = 0;
+        for(int desplazamiento = 0; ; desplazamiento += 7) {
+            if(desplazamiento > 63) {
+                throw new IllegalArgumentException("Número demasiado largo en la instantánea");
+            }
+            int b = buffer.get();
+            numero |= (long) (b & 0x7F) << desplazamiento;
+            if((b & 0x80) == 0) {
+                return numero;
+            }
+        }
+    }
+
+    /**
+     * Número de claves y de deltas escritas.
+     */
+    public long getClaves() {
+        return claves;
+    }
+
+    public long getDeltas() {
+        return deltas;
+    }
+}
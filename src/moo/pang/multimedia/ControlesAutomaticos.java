@@ -0,0 +1,62 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+/**
+ * Controles de un jugador automático, para el modo de prueba de carga: dispara
+ * siempre que puede y camina de un lado a otro del escenario, de manera que
+ * siempre hay ganchos subiendo y bolas pinchándose. Nunca se acaba.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class ControlesAutomaticos implements FuenteControles {
+    private final int ticksPorSentido;
+    private int tick = 0;
+
+    /**
+     * Crea el jugador automático.
+     * @param ticksPorSentido Ticks que camina hacia la derecha antes de
+     *        dar media vuelta, y luego hacia la izquierda.
+     */
+    public ControlesAutomaticos(int ticksPorSentido) {
+        if(ticksPorSentido <= 0) {
+            throw new IllegalArgumentException("Los ticks por sentido deben ser positivos: " + ticksPorSentido);
+        }
+        this.ticksPorSentido = ticksPorSentido;
+    }
+
+    public int siguienteTick() {
+        int controles = controles(tick);
+        tick++;
+        return controles;
+    }
+
+    public long saltarTicksIguales(int controles, long maximo) {
+        if(controles != controles(tick)) {
+            return 0;
+        }
+        // hasta el final del tramo que camina hacia el mismo lado
+        long ticks = Math.min(maximo, ticksPorSentido - tick % ticksPorSentido);
+        tick += ticks;
+        return ticks;
+    }
+
+    private int controles(int tick) {
+        boolean haciaDerecha = (tick / ticksPorSentido) % 2 == 0;
+        return Juego.CONTROL_ESPACIO | (haciaDerecha ? Juego.CONTROL_DERECHA : Juego.CONTROL_IZQUIERDA);
+    }
+
+    public boolean isAcabada() {
+        return false;
+    }
+}
@@ -0,0 +1,105 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lee las instantáneas que escribe un CodificadorInstantaneas. Guarda las
+ * últimas que ha leído, porque las deltas se leen sumando las diferencias a
+ * una instantánea anterior. Después de leer cada una, hay que confirmarla al
+ * codificador (por ejemplo, enviándole su tick por la red), para que la pueda
+ * usar de base.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class DecodificadorInstantaneas {
+    /**
+     * Instantáneas leídas: la del tick t está en la posición t % HISTORIAL.
+     */
+    private final Instantanea[] leidas = new Instantanea[CodificadorInstantaneas.HISTORIAL];
+    private final Instantanea vacia = new Instantanea();
+
+    public DecodificadorInstantaneas() {
+        for(int i = 0; i < leidas.length; i++) {
+            leidas[i] = new Instantanea();
+        }
+    }
+
+    /**
+     * Lee una instantánea, desde la posición del buffer hasta su límite.
+     *
+     * <b>OJO</b>: la instantánea que se devuelve se reutiliza al leer otras
+     * (como muy pronto, la de HISTORIAL ticks después), así que si se quiere
+     * guardar hay que copiarla.
+     * @param buffer
+     * @return La instantánea leída, o null si es una delta respecto a una
+     *         instantánea que no se ha leído (habrá que esperar a una clave).
+     * @throws IllegalArgumentException si los datos no son una instantánea.
+     */
+    public Instantanea decodificar(ByteBuffer buffer) {
+        int tipo = buffer.get();
+        long tick = CodificadorInstantaneas.leerVarint(buffer);
+        if(tick < 0) {
+            throw new IllegalArgumentException("Tick incorrecto en la instantánea: " + tick);
+        }
+        Instantanea base;
+        if(tipo == CodificadorInstantaneas.CLAVE) {
+            base = vacia;
+        } else if(tipo == CodificadorInstantaneas.DELTA) {
+            long tickBase = tick - CodificadorInstantaneas.leerVarint(buffer);
+            if(tickBase < 0 || tickBase >= tick) {
+                throw new IllegalArgumentException("Base incorrecta en la instantánea " + tick + ": " + tickBase);
+            }
+            base = leidas[posicion(tickBase)];
+            if(base.tick != tickBase) {
+                buffer.position(buffer.limit());
+                return null;
+            }
+        } else {
+            throw new IllegalArgumentException("Tipo de instantánea desconocido: " + tipo);
+        }
+        Instantanea instantanea = leidas[posicion(tick)];
+        if(instantanea == base) {
+            throw new IllegalArgumentException("La base de la instantánea " + tick + " es demasiado antigua");
+        }
+        instantanea.tick = tick;
+        for(int s = 0; s < Instantanea.SECCIONES; s++) {
+            leerSeccion(buffer, instantanea, base, s);
+        }
+        return instantanea;
+    }
+
+    private static void leerSeccion(ByteBuffer buffer, Instantanea instantanea, Instantanea base, int s) {
+        instantanea.setObjetos(s, (int) CodificadorInstantaneas.leerVarint(buffer));
+        int[] valores = instantanea.valores[s], valoresBase = base.valores[s];
+        int n = instantanea.objetos[s] * Instantanea.CAMPOS[s];
+        int nBase = base.objetos[s] * Instantanea.CAMPOS[s];
+        for(int grupo = 0; grupo < n; grupo += 8) {
+            int fin = Math.min(n, grupo + 8);
+            int mascara = buffer.get();
+            for(int i = grupo; i < fin; i++) {
+                int valor = i < nBase ? valoresBase[i] : 0;
+                if((mascara & (1 << (i - grupo))) != 0) {
+                    int zigzag = (int) CodificadorInstantaneas.leerVarint(buffer);
+                    valor += (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+                valores[i] = valor;
+            }
+        }
+    }
+
+    private static int posicion(long tick) {
+        return (int) (tick % CodificadorInstantaneas.HISTORIAL);
+    }
+}
@@ -0,0 +1,200 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Juega a la vez muchas partidas sin ventana (por ejemplo, miles de partidas
+ * con el jugador automático), con unos pocos hilos, y cada cierto tiempo
+ * escribe un resumen: cuántas partidas quedan y cuántos ticks por segundo se
+ * simulan entre todas.
+ *
+ * No se crea un hilo para cada partida: las partidas esperan su turno en una
+ * cola, y cada hilo coge una, la avanza unos cuantos ticks con
+ * Juego.avanzarRapido() y, si no se ha acabado, la vuelve a poner al final.
+ * Así, miles de partidas caben en tantos hilos como procesadores. Cada juego
+ * sólo lo mueve un hilo a la vez, y como cada juego tiene sus propios números
+ * aleatorios y contadores, las partidas no se molestan entre ellas: cada una
+ * sale igual que si se jugara sola.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class EjecutorPartidas {
+    /**
+     * Milisegundos que un hilo espera a que vuelva alguna partida a la cola
+     * antes de mirar si ya se han acabado todas.
+     */
+    private static final long ESPERA_COLA = 10;
+
+    /**
+     * Una partida de la cola, y si ya se ha llamado a Juego.empezarPartida().
+     */
+    private static class Partida {
+        private final Juego juego;
+        private boolean empezada = false;
+
+        private Partida(Juego juego) {
+            this.juego = juego;
+        }
+    }
+
+    private final int hilos;
+    private final int ticksPorTurno;
+    private final List<Juego> juegos = new ArrayList<Juego>();
+    private final LinkedBlockingQueue<Partida> cola = new LinkedBlockingQueue<Partida>();
+    /**
+     * Ticks simulados entre todas las partidas. Lo suman todos los hilos a la
+     * vez, así que es un LongAdder para que no se peleen por un mismo contador.
+     */
+    private final LongAdder ticksSimulados = new LongAdder();
+    private CountDownLatch pendientes;
+
+    /**
+     * Crea el ejecutor.
+     * @param hilos Número de hilos que avanzan las partidas.
+     * @param ticksPorTurno Ticks que se avanza una partida cada vez que le toca.
+     */
+    public EjecutorPartidas(int hilos, int ticksPorTurno) {
+        if(hilos <= 0 || ticksPorTurno <= 0) {
+            throw new IllegalArgumentException("Los hilos y los ticks por turno deben ser positivos: "
+                    + hilos + ", " + ticksPorTurno);
+        }
+        this.hilos = hilos;
+        this.ticksPorTurno = ticksPorTurno;
+    }
+
+    /**
+     * Añade una partida. El juego ya debe estar configurado (fuente de
+     * controles, semillas, duración...); la partida se empieza al ejecutar(),
+     * preparada para avanzar a saltos (ver Juego.setAvanceRapido()).
+     * Para que pueda avanzar a saltos, los controles deben venir de una
+     * FuenteControles, y el juego no debe tener medidor de rendimiento, ya que
+     * los resúmenes se escriben para todas las partidas a la vez.
+     * @param juego
+     */
+    public void anyadir(Juego juego) {
+        juego.setAvanceRapido(true);
+        juegos.add(juego);
+    }
+
+    /**
+     * Devuelve los juegos añadidos, para ver sus puntuaciones cuando acaban.
+     * @return
+     */
+    public List<Juego> getJuegos() {
+        return juegos;
+    }
+
+    /**
+     * Juega todas las partidas añadidas, y no vuelve hasta que se han acabado todas.
+     * @param salida Dónde se escriben los resúmenes (por ejemplo, System.out), o null.
+     * @param segundosPorResumen Cada cuántos segundos (de reloj) se escribe un resumen.
+     * @return Número total de ticks simulados.
+     * @throws InterruptedException si se interrumpe el hilo mientras espera.
+     */
+    public long ejecutar(PrintStream salida, float segundosPorResumen) throws InterruptedException {
+        pendientes = new CountDownLatch(juegos.size());
+        ticksSimulados.reset();
+        cola.clear();
+        for(Juego juego : juegos) {
+            cola.add(new Partida(juego));
+        }
+        Thread[] trabajadores = new Thread[hilos];
+        for(int i = 0; i < hilos; i++) {
+            trabajadores[i] = new Thread(new Runnable() {
+                public void run() {
+                    trabajar();
+                }
+            }, "MOOPang - partidas " + i);
+            trabajadores[i].setDaemon(true);
+            trabajadores[i].start();
+        }
+
+        long nanosPorResumen = (long) (segundosPorResumen * 1e9);
+        long inicio = System.nanoTime();
+        long inicioResumen = inicio, ticksResumen = 0;
+        try {
+            while(!pendientes.await(nanosPorResumen, TimeUnit.NANOSECONDS)) {
+                long ahora = System.nanoTime();
+                long total = ticksSimulados.sum();
+                if(salida != null) {
+                    salida.println(String.format("t=%.1fs partidas=%d/%d ticks=%d ticks/s=%.1f",
+                            (ahora - inicio) / 1e9, pendientes.getCount(), juegos.size(), total,
+                            (total - ticksResumen) / ((ahora - inicioResumen) / 1e9)));
+                }
+                inicioResumen = ahora;
+                ticksResumen = total;
+            }
+        } finally {
+            for(Thread t : trabajadores) {
+                t.interrupt();
+            }
+        }
+        for(Thread t : trabajadores) {
+            t.join();
+        }
+        long total = ticksSimulados.sum();
+        if(salida != null) {
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            salida.println(String.format("%d partidas, %d ticks en %.3fs (%.1f ticks/s)",
+                    juegos.size(), total, segundos, total / segundos));
+        }
+        return total;
+    }
+
+    /**
+     * Lo que hace cada hilo: coger una partida de la cola, avanzarla un turno y,
+     * si no se ha acabado, volverla a poner en la cola. Acaba cuando ya no
+     * quedan partidas por acabar (o si le interrumpen).
+     */
+    private void trabajar() {
+        try {
+            while(pendientes.getCount() > 0) {
+                Partida p = cola.poll(ESPERA_COLA, TimeUnit.MILLISECONDS);
+                if(p == null) {
+                    continue;
+                }
+                Juego juego = p.juego;
+                try {
+                    if(!p.empezada) {
+                        juego.empezarPartida();
+                        p.empezada = true;
+                    }
+                    long antes = juego.getTicks();
+                    juego.avanzarRapido(ticksPorTurno);
+                    ticksSimulados.add(juego.getTicks() - antes);
+                } catch(RuntimeException ex) {
+                    // una partida que falla no debe dejar a las demás esperando
+                    ex.printStackTrace();
+                    pendientes.countDown();
+                    continue;
+                }
+                if(juego.isPartidaAcabada()) {
+                    juego.acabarPartida();
+                    pendientes.countDown();
+                } else {
+                    cola.add(p);
+                }
+            }
+        } catch(InterruptedException ex) {
+            // ejecutar() ha acabado
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.awt.Color;
+import moo.multimedia.BufferTexto;
+import moo.multimedia.Pantalla;
+import moo.pang.objetosanimados.Bola;
+import moo.pang.objetosanimados.CacheSprites;
+import moo.pang.objetosanimados.Destello;
+import moo.pang.objetosanimados.Disparo;
+import moo.pang.objetosanimados.Protagonista;
+
+/**
+ * Pantalla de un espectador: dibuja una partida que se está jugando en otro
+ * sitio a partir de las instantáneas que le llegan (ver
+ * DecodificadorInstantaneas). No simula nada: sólo dibuja cada instantánea
+ * tal como llega, igual que la dibujaría el Juego.
+ *
+ * Los destellos cambian de color en cada tick, pero su color no se envía
+ * (son números aleatorios del juego), así que el espectador los dibuja
+ * siempre del mismo color.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class Espectador {
+    private static final Color COLOR_DESTELLOS = Color.orange;
+
+    private final Pantalla pantalla;
+    private final CacheSprites cacheSprites = new CacheSprites();
+    private final BufferTexto textoPuntuacion = new BufferTexto(32);
+
+    /**
+     * Crea el espectador, y dibuja el escenario en el fondo de la pantalla.
+     * @param pantalla Pantalla donde se mostrará la partida.
+     */
+    public Espectador(Pantalla pantalla) {
+        this.pantalla = pantalla;
+        Juego.dibujarEscenario(pantalla.getFondo());
+    }
+
+    /**
+     * Dibuja una instantánea y la muestra por pantalla.
+     * @param instantanea
+     */
+    public void mostrar(Instantanea instantanea) {
+        pantalla.restaurarFondo();
+        float suelo = pantalla.getAlturaLienzo() - Juego.MARGEN;
+
+        int[] v = instantanea.valores[Instantanea.BOLAS];
+        for(int i = 0, n = 0; i < instantanea.objetos[Instantanea.BOLAS]; i++, n += Instantanea.CAMPOS[Instantanea.BOLAS]) {
+            int nivel = v[n + Instantanea.NIVEL];
+            cacheSprites.dibujaBola(pantalla, nivel, Instantanea.pixels(v[n + Instantanea.X]),
+                    Instantanea.pixels(v[n + Instantanea.Y]), Bola.radioDeNivel(nivel));
+        }
+        v = instantanea.valores[Instantanea.DISPAROS];
+        for(int i = 0, n = 0; i < instantanea.objetos[Instantanea.DISPAROS]; i++, n += Instantanea.CAMPOS[Instantanea.DISPAROS]) {
+            Disparo.dibuja(pantalla, Instantanea.pixels(v[n + Instantanea.X]),
+                    Instantanea.pixels(v[n + Instantanea.Y]), suelo);
+        }
+        v = instantanea.valores[Instantanea.DESTELLOS];
+        for(int i = 0, n = 0; i < instantanea.objetos[Instantanea.DESTELLOS]; i++, n += Instantanea.CAMPOS[Instantanea.DESTELLOS]) {
+            Destello.dibuja(pantalla, Instantanea.pixels(v[n + Instantanea.X]),
+                    Instantanea.pixels(v[n + Instantanea.Y]),
+                    Instantanea.pixels(v[n + Instantanea.RADIO]), COLOR_DESTELLOS);
+        }
+        v = instantanea.valores[Instantanea.JUGADORES];
+        for(int i = 0, n = 0; i < instantanea.objetos[Instantanea.JUGADORES]; i++, n += Instantanea.CAMPOS[Instantanea.JUGADORES]) {
+            cacheSprites.dibujaProtagonista(pantalla,
+                    Instantanea.pixels(v[n + Instantanea.X]) - Protagonista.MARGEN_IZQUIERDO_COLISION,
+                    Instantanea.pixels(v[n + Instantanea.Y]));
+        }
+
+        textoPuntuacion.vaciar().anyadir("Puntos: ").anyadir(instantanea.getPuntuacion());
+        pantalla.escribeTexto(textoPuntuacion, 30, 20, 18, Color.white);
+        pantalla.mostrarLienzo();
+    }
+}
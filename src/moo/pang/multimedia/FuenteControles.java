@@ -0,0 +1,51 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+/**
+ * Fuente de la que el juego lee, en cada tick, qué controles están pulsados.
+ * Normalmente el juego lee los controles del teclado de su pantalla, pero se le
+ * puede dar otra fuente (ver Juego.setFuenteControles()), por ejemplo, una
+ * Repeticion que los lee de una partida grabada.
+ *
+ * Los controles de cada tick se representan con un int, en el que cada bit
+ * indica si un control está pulsado (ver Juego.CONTROL_IZQUIERDA, etc...).
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public interface FuenteControles {
+    /**
+     * Devuelve los controles pulsados en el siguiente tick.
+     * @return Combinación de bits Juego.CONTROL_...
+     */
+    public int siguienteTick();
+
+    /**
+     * Indica si la fuente ya no tiene más controles que dar (por ejemplo, porque
+     * se ha acabado la partida grabada). Si es así, el juego acaba la partida.
+     * @return true si ya no quedan más ticks.
+     */
+    public boolean isAcabada();
+
+    /**
+     * Salta los siguientes ticks, como si se hubiera llamado a siguienteTick()
+     * para cada uno, mientras den unos controles determinados. Lo usa el juego
+     * para avanzar a saltos (ver Juego.avanzarRapido()). Nunca salta el último
+     * tick de la fuente, para que el juego se entere de que se ha acabado.
+     * @param controles Controles que deben dar los ticks saltados.
+     * @param maximo Número máximo de ticks que se pueden saltar.
+     * @return Número de ticks saltados, entre 0 y maximo (0 si la fuente no
+     *         sabe qué controles dará, o si son otros).
+     */
+    public long saltarTicksIguales(int controles, long maximo);
+}
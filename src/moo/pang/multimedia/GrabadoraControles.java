@@ -0,0 +1,127 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Graba en un fichero los controles que se han pulsado en cada tick de una
+ * partida, junto con las semillas de los números aleatorios y el número de
+ * ticks por segundo. Como la simulación es determinista (sólo depende de esto),
+ * con el fichero se puede volver a jugar exactamente la misma partida (ver
+ * la clase Repeticion).
+ *
+ * Formato del fichero (los números de más de un byte, en big-endian):
+ * <pre>
+ *   int     MAGICO ("MOOP")
+ *   byte    VERSION
+ *   long    semilla del juego (posición de las bolas)
+ *   long    semilla de los destellos (colores)
+ *   int     ticks por segundo
+ *   tramos: byte controles, varint número de ticks seguidos con esos controles
+ *   byte    FIN
+ * </pre>
+ *
+ * Casi siempre se pulsan los mismos controles durante muchos ticks seguidos,
+ * así que con los tramos una partida de media hora ocupa muy pocos KB. Los
+ * números "varint" se guardan en bytes de 7 bits: el bit más alto de cada
+ * byte indica si el número sigue en el byte siguiente.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class GrabadoraControles {
+    static final int MAGICO = 0x4D4F4F50;
+    /**
+     * Versión del fichero. Cambia también cuando cambia la simulación (por
+     * ejemplo, cómo se calcula el movimiento de las bolas), porque una partida
+     * grabada con otra versión ya no se repetiría igual.
+     */
+    static final int VERSION = 3;
+    /**
+     * Byte que marca el final de los tramos (ningún control usa este valor).
+     */
+    static final int FIN = 0xFF;
+
+    private final DataOutputStream salida;
+    /**
+     * Controles del tramo actual y número de ticks que lleva.
+     */
+    private int controlesTramo = 0;
+    private long ticksTramo = 0;
+
+    /**
+     * Empieza una grabación, escribiendo la cabecera del fichero.
+     * @param salida Donde se escribe la grabación.
+     * @param semillaJuego Semilla de los números aleatorios del juego.
+     * @param semillaDestellos Semilla de los números aleatorios de los destellos.
+     * @param ticksPorSegundo Ticks por segundo de la simulación.
+     * @throws IOException
+     */
+    public GrabadoraControles(OutputStream salida, long semillaJuego, long semillaDestellos, int ticksPorSegundo) throws IOException {
+        this.salida = new DataOutputStream(new BufferedOutputStream(salida));
+        this.salida.writeInt(MAGICO);
+        this.salida.writeByte(VERSION);
+        this.salida.writeLong(semillaJuego);
+        this.salida.writeLong(semillaDestellos);
+        this.salida.writeInt(ticksPorSegundo);
+    }
+
+    /**
+     * Graba los controles de un tick.
+     * @param controles Combinación de bits Juego.CONTROL_...
+     * @throws IOException
+     */
+    public void grabar(int controles) throws IOException {
+        grabar(controles, 1);
+    }
+
+    /**
+     * Graba los controles de varios ticks seguidos con los mismos controles.
+     * @param controles Combinación de bits Juego.CONTROL_...
+     * @param ticks Número de ticks.
+     * @throws IOException
+     */
+    public void grabar(int controles, long ticks) throws IOException {
+        if(ticksTramo > 0 && controles != controlesTramo) {
+            escribirTramo();
+        }
+        controlesTramo = controles;
+        ticksTramo += ticks;
+    }
+
+    private void escribirTramo() throws IOException {
+        salida.writeByte(controlesTramo);
+        long n = ticksTramo;
+        while(n >= 0x80) {
+            salida.writeByte((int) (n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        salida.writeByte((int) n);
+        ticksTramo = 0;
+    }
+
+    /**
+     * Acaba la grabación y cierra el fichero.
+     * @throws IOException
+     */
+    public void cerrar() throws IOException {
+        if(ticksTramo > 0) {
+            escribirTramo();
+        }
+        salida.writeByte(FIN);
+        salida.close();
+    }
+}
@@ -0,0 +1,237 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import moo.pang.objetosanimados.Bola;
+import moo.pang.objetosanimados.Destello;
+import moo.pang.objetosanimados.Disparo;
+import moo.pang.objetosanimados.ObjetoAnimado;
+import moo.pang.objetosanimados.Protagonista;
+
+/**
+ * Foto del estado de un Juego en un tick: lo que hace falta para dibujar la
+ * escena desde otro sitio (ver Espectador), como la posición y la velocidad de
+ * cada bola, los ganchos, los destellos, el protagonista, la puntuación y el
+ * tiempo que falta para la bola siguiente.
+ *
+ * Todos los datos se guardan como números enteros: las coordenadas y las
+ * velocidades en punto fijo, en dieciseisavos de píxel (ver PARTES_POR_PIXEL),
+ * y el tiempo en milisegundos. Así ocupan poco al enviarlos (ver
+ * CodificadorInstantaneas), y de un tick a otro cambian en números pequeños.
+ *
+ * Los datos están repartidos en secciones: la cabecera (un solo "objeto", con
+ * la puntuación y el tiempo), los protagonistas de los jugadores, las bolas,
+ * los disparos y los destellos. En cada sección, los campos de cada objeto van seguidos, y los
+ * objetos uno detrás de otro.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class Instantanea {
+    /**
+     * Partes en que se divide cada píxel (y cada píxel/segundo) al guardar las
+     * coordenadas y las velocidades en punto fijo.
+     */
+    public static final int PARTES_POR_PIXEL = 16;
+
+    static final int CABECERA = 0, JUGADORES = 1, BOLAS = 2, DISPAROS = 3, DESTELLOS = 4;
+    static final int SECCIONES = 5;
+    /**
+     * Número de campos de cada objeto, en cada sección.
+     */
+    static final int[] CAMPOS = {2, 2, 5, 2, 3};
+
+    /**
+     * Campos de la cabecera.
+     */
+    static final int PUNTUACION = 0, TIEMPO_BOLA = 1;
+    /**
+     * Campos de cada bola, de cada protagonista y de cada disparo (X e Y), y
+     * de cada destello (X, Y y RADIO).
+     */
+    static final int X = 0, Y = 1, VELOCIDAD_X = 2, VELOCIDAD_Y = 3, NIVEL = 4, RADIO = 2;
+
+    long tick = -1;
+    /**
+     * Valores de cada sección, y número de objetos de cada sección.
+     */
+    final int[][] valores = new int[SECCIONES][];
+    final int[] objetos = new int[SECCIONES];
+
+    /**
+     * Crea una instantánea vacía (sin ningún objeto, y con la cabecera a 0).
+     */
+    public Instantanea() {
+        for(int s = 0; s < SECCIONES; s++) {
+            valores[s] = new int[CAMPOS[s] * 16];
+        }
+        objetos[CABECERA] = 1;
+    }
+
+    /**
+     * Guarda en la instantánea el estado actual de un juego.
+     * @param juego
+     */
+    public void capturar(Juego juego) {
+        tick = juego.getTicks();
+        objetos[JUGADORES] = objetos[BOLAS] = objetos[DISPAROS] = objetos[DESTELLOS] = 0;
+        int[] cabecera = valores[CABECERA];
+        cabecera[PUNTUACION] = juego.getPuntuacion();
+        cabecera[TIEMPO_BOLA] = Math.round(juego.getTiempoHastaSiguienteBola() * 1000);
+        for(int i = 0; i < juego.getNumeroBolas(); i++) {
+            Bola b = juego.getBola(i);
+            int n = anyadir(BOLAS);
+            int[] v = valores[BOLAS];
+            v[n + X] = fijo(b.getCentroX());
+            v[n + Y] = fijo(b.getCentroY());
+            v[n + VELOCIDAD_X] = fijo(b.getVelocidadX());
+            v[n + VELOCIDAD_Y] = fijo(b.getVelocidadY());
+            v[n + NIVEL] = b.getNivel();
+        }
+        for(int i = 0; i < juego.getNumeroObjetosAnimados(); i++) {
+            ObjetoAnimado o = juego.getObjetoAnimado(i);
+            if(o instanceof Disparo) {
+                Disparo d = (Disparo) o;
+                int n = anyadir(DISPAROS);
+                valores[DISPAROS][n + X] = fijo(d.getPosicionX());
+                valores[DISPAROS][n + Y] = fijo(d.getPosicionY());
+            } else if(o instanceof Destello) {
+                Destello d = (Destello) o;
+                int n = anyadir(DESTELLOS);
+                valores[DESTELLOS][n + X] = fijo(d.getCentroX());
+                valores[DESTELLOS][n + Y] = fijo(d.getCentroY());
+                valores[DESTELLOS][n + RADIO] = fijo(d.getRadio());
+            } else if(o instanceof Protagonista) {
+                // los protagonistas se añaden al juego en orden de jugador
+                Protagonista p = (Protagonista) o;
+                int n = anyadir(JUGADORES);
+                valores[JUGADORES][n + X] = fijo(p.getPosicionX());
+                valores[JUGADORES][n + Y] = fijo(p.getPosicionY());
+            }
+        }
+    }
+
+    /**
+     * Pasa una coordenada o una velocidad a punto fijo.
+     */
+    private static int fijo(float valor) {
+        return Math.round(valor * PARTES_POR_PIXEL);
+    }
+
+    /**
+     * Pasa un valor en punto fijo a píxels (o píxels/segundo).
+     */
+    static float pixels(int valor) {
+        return valor / (float) PARTES_POR_PIXEL;
+    }
+
+    /**
+     * Añade un objeto al final de una sección, haciendo sitio si hace falta.
+     * @return Posición de su primer campo en valores[seccion].
+     */
+    private int anyadir(int seccion) {
+        int n = objetos[seccion] * CAMPOS[seccion];
+        setObjetos(seccion, objetos[seccion] + 1);
+        return n;
+    }
+
+    /**
+     * Cambia el número de objetos de una sección, haciendo sitio si hace falta.
+     * Los valores de los objetos nuevos no se inicializan.
+     */
+    void setObjetos(int seccion, int numero) {
+        int necesarios = numero * CAMPOS[seccion];
+        if(necesarios > valores[seccion].length) {
+            int[] nuevos = new int[Math.max(necesarios, valores[seccion].length * 2)];
+            System.arraycopy(valores[seccion], 0, nuevos, 0, valores[seccion].length);
+            valores[seccion] = nuevos;
+        }
+        objetos[seccion] = numero;
+    }
+
+    /**
+     * Copia en esta instantánea todo lo que hay en otra.
+     * @param otra
+     */
+    public void copiar(Instantanea otra) {
+        tick = otra.tick;
+        for(int s = 0; s < SECCIONES; s++) {
+            setObjetos(s, otra.objetos[s]);
+            System.arraycopy(otra.valores[s], 0, valores[s], 0, otra.objetos[s] * CAMPOS[s]);
+        }
+    }
+
+    /**
+     * Indica si otra instantánea guarda exactamente el mismo estado, en el mismo tick.
+     * @param otra
+     * @return
+     */
+    public boolean isIgual(Instantanea otra) {
+        if(tick != otra.tick) {
+            return false;
+        }
+        for(int s = 0; s < SECCIONES; s++) {
+            if(objetos[s] != otra.objetos[s]) {
+                return false;
+            }
+            for(int i = objetos[s] * CAMPOS[s] - 1; i >= 0; i--) {
+                if(valores[s][i] != otra.valores[s][i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tick del juego en el que se hizo la instantánea (-1 si está vacía).
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    public int getPuntuacion() {
+        return valores[CABECERA][PUNTUACION];
+    }
+
+    /**
+     * Segundos que faltaban para que apareciese la siguiente bola.
+     */
+    public float getTiempoHastaSiguienteBola() {
+        return valores[CABECERA][TIEMPO_BOLA] / 1000f;
+    }
+
+    public int getNumeroJugadores() {
+        return objetos[JUGADORES];
+    }
+
+    /**
+     * Coordenada X de la parte izquierda del rectángulo de colisión del
+     * protagonista de un jugador (ver Protagonista.getPosicionX()).
+     * @param jugador Número del jugador, empezando por 0.
+     */
+    public float getJugadorX(int jugador) {
+        return pixels(valores[JUGADORES][jugador * CAMPOS[JUGADORES] + X]);
+    }
+
+    public int getNumeroBolas() {
+        return objetos[BOLAS];
+    }
+
+    public int getNumeroDisparos() {
+        return objetos[DISPAROS];
+    }
+
+    public int getNumeroDestellos() {
+        return objetos[DESTELLOS];
+    }
+}
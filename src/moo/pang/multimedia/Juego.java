@@ -13,14 +13,38 @@
 package moo.pang.multimedia;
 
 import java.awt.Color;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
-import moo.multimedia.Ventana;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import moo.multimedia.BufferTexto;
+import moo.multimedia.Estadisticas;
+import moo.multimedia.Histograma;
+import moo.multimedia.Lienzo;
+import moo.multimedia.ListaDibujo;
+import moo.multimedia.Pantalla;
+import moo.pang.eventos.EventoFaseDibujo;
+import moo.pang.eventos.EventoFaseSimulacion;
+import moo.pang.eventos.EventoTick;
+import moo.pang.eventos.EventosActivos;
+import moo.pang.objetosanimados.AlmacenBolas;
 import moo.pang.objetosanimados.Bola;
+import moo.pang.objetosanimados.CacheSprites;
+import moo.pang.objetosanimados.Colisionable;
+import moo.pang.objetosanimados.Destello;
 import moo.pang.objetosanimados.Disparo;
 import moo.pang.objetosanimados.ObjetoAnimado;
+import moo.pang.objetosanimados.ObjetoPredecible;
 import moo.pang.objetosanimados.Protagonista;
 
 /**
@@ -39,116 +63,1321 @@ public class Juego {
      * una constante que indica el tamaño en pixels (tanto ancho como alto) de
      * las paredes laterales y el suelo
      */
-    private static final int MARGEN = 24;
+    static final int MARGEN = 24;
 
     /**
      * Lista que guarda todos los objetos animados: bolas, protagonista, disparos...
+     * Los objetos que se añaden o eliminan durante un tick no se añaden o eliminan
+     * de verdad hasta el final del tick.
      */
-    private List<ObjetoAnimado> objetosAnimados;
+    private ListaObjetosAnimados objetosAnimados;
 
     /**
-     * Instancia de la ventana donde se mostrará el juego
+     * Almacén con los datos de todas las bolas. Es un objeto animado más (que
+     * mueve y dibuja todas las bolas a la vez), y también está en la lista
+     * objetosAnimados.
      */
-    private Ventana ventana;
+    private AlmacenBolas bolas;
 
     /**
-     * Tiempo (en milisegundos) entre bola y bola que aparece por el techo.
+     * Rejilla que guarda dónde está cada bola, para que los objetos que tienen
+     * que comprobar colisiones no tengan que mirar todas las bolas del juego.
      */
-    private long frecuenciaEntreBolas;
+    private RejillaBolas rejilla;
     /**
-     * Tiempo (en milisegundos) en que apareció la última bola.
+     * Lista (reutilizada en cada tick) de los objetos que tienen que comprobar colisiones.
      */
-    private long tiempoDeUltimaBola = 0;
+    private final List<Colisionable> colisionables = new ArrayList<Colisionable>();
+    /**
+     * Lista (reutilizada en cada búsqueda) que devuelve getBolasCercanas().
+     */
+    private final List<Bola> bolasCercanas = new ArrayList<Bola>();
+
+    /**
+     * Reservas de objetos reciclables, para no crear objetos nuevos en cada
+     * disparo o cada vez que se pincha una bola.
+     */
+    private final Reserva<Disparo> reservaDisparos = new Reserva<Disparo>() {
+        protected Disparo crear() {
+            return new Disparo(Juego.this);
+        }
+    };
+    private final Reserva<Destello> reservaDestellos = new Reserva<Destello>() {
+        protected Destello crear() {
+            return new Destello(Juego.this);
+        }
+    };
+    /**
+     * Objetos eliminados durante el tick actual. No se devuelven a su reserva
+     * hasta que acaba el tick y se han quitado de la lista de objetos animados.
+     */
+    private final List<ObjetoAnimado> eliminadosEnEsteTick = new ArrayList<ObjetoAnimado>();
+
+    /**
+     * Instancia de la pantalla donde se mostrará el juego (normalmente, una Ventana)
+     */
+    private Pantalla pantalla;
+
+    /**
+     * Sprites ya dibujados de las bolas y del protagonista. Se guardan entre
+     * partidas, y sólo se vuelven a dibujar si cambia el lienzo o los colores.
+     */
+    private final CacheSprites cacheSprites = new CacheSprites();
+
+    /**
+     * Tiempo (en segundos) entre bola y bola que aparece por el techo.
+     */
+    private float frecuenciaEntreBolas;
+    /**
+     * Tiempo de simulación (en segundos) que falta para que aparezca la siguiente bola.
+     * Se cuenta en tiempo simulado y no con el reloj del sistema, para que el juego
+     * se comporte igual vaya a la velocidad que vaya.
+     */
+    private float tiempoHastaSiguienteBola = 0;
+    /**
+     * Tiempo que faltaba para la siguiente bola justo después de salir la
+     * anterior, y ticks que han pasado desde entonces. tiempoHastaSiguienteBola
+     * se calcula a partir de ellos (ver tiempoHastaBola()) en vez de restando
+     * tick a tick, para que al saltar ticks se pueda calcular de golpe.
+     */
+    private float tiempoOrigenBola = 0;
+    private int ticksDesdeOrigenBola = 0;
     /**
      * Puntuación de la partida
      */
     private int puntuacion;
+    /**
+     * Texto con la puntuación que se escribe en cada fotograma. Se reutiliza
+     * para no crear un String nuevo cada vez.
+     */
+    private final BufferTexto textoPuntuacion = new BufferTexto(32);
 
     /**
      * Inicialmente, 15 segundos entre una bola y otra. Se irá decrementando poco a poco
      * para hacer el juego más difícil.
      */
-    private static final long MINIMA_FRECUENCIA_ENTRE_BOLAS = 15000;
+    private static final float MINIMA_FRECUENCIA_ENTRE_BOLAS = 15;
     /**
      * Para que el juego no acabe siendo imposible, la frecuencia máxima será de una
      * bola cada 5 segundos.
      */
-    private static final long MAXIMA_FRECUENCIA_ENTRE_BOLAS = 5000;
+    private static final float MAXIMA_FRECUENCIA_ENTRE_BOLAS = 5;
     /**
      * Por cada bola que salga, el tiempo que tarda entre ésta y la siguiente
      * Se acortará 200 milisegundos
      */
-    private static final long ACELERACION_FRECUENCIA_BOLAS = 200;
+    private static final float ACELERACION_FRECUENCIA_BOLAS = 0.2f;
 
-    private static final Random RANDOM = new Random();
+    /**
+     * Números aleatorios de la partida: los de este juego (dónde salen las
+     * bolas) y los de los destellos (de qué color son). Son de cada juego, y no
+     * estáticos, para que varias partidas puedan ir a la vez en hilos distintos
+     * sin repartirse los números (ver EjecutorPartidas).
+     */
+    private final Random random = new Random();
+    private final Random randomDestellos = new Random();
+
+    /**
+     * Modo de prueba de carga (ver setRafagas()): si bolasPorRafaga es mayor
+     * que 0, en vez de salir una bola del techo de vez en cuando, salen ráfagas
+     * de bolasPorRafaga bolas cada segundosEntreRafagas segundos.
+     */
+    private int bolasPorRafaga = 0;
+    private float segundosEntreRafagas = 1;
+    /**
+     * Si es true, las bolas no matan al jugador (ver setInvulnerable()).
+     */
+    private boolean invulnerable = false;
+    /**
+     * Si es mayor que 0, la partida acaba tras simular estos segundos.
+     */
+    private float duracionMaxima = 0;
+    /**
+     * Si no es null, se le dice cuánto tarda cada tick y cada fotograma.
+     */
+    private MedidorRendimiento medidor = null;
+
+    /**
+     * Número de hilos con los que se mueven las bolas cuando hay muchas (ver
+     * AlmacenBolas), y pool de hilos que lo hace. El pool no se crea hasta que
+     * hace falta, y sus hilos no arrancan hasta que hay bastantes bolas.
+     */
+    private int hilosSimulacion = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool poolSimulacion = null;
+
+    /**
+     * Si es true, la escena se pinta en otro hilo (ver setHiloDibujo()).
+     */
+    private boolean hiloDibujo = false;
+    /**
+     * Lista donde el hilo del juego "dibuja" la escena para que la pinte el
+     * hilo de dibujo. Se crea la primera vez que hace falta.
+     */
+    private ListaDibujo listaDibujo = null;
+    /**
+     * El hilo de dibujo sigue pintando mientras sea true.
+     */
+    private volatile boolean dibujando = false;
+    /**
+     * Ticks, bolas y objetos que había al publicar la última lista de dibujo
+     * (para el medidor de rendimiento, que se llama desde el hilo de dibujo).
+     */
+    private volatile long ticksPublicados;
+    private volatile int bolasPublicadas, objetosPublicados;
+
+    /**
+     * Si no es null, se apunta en ellas cuánto tarda cada fase de cada tick y
+     * de cada fotograma, y cuántos objetos de cada tipo hay (ver setEstadisticas()).
+     */
+    private Estadisticas estadisticas = null;
+    private int medidaControles, medidaMover, medidaRejilla, medidaColisiones,
+            medidaAparicion, medidaCambios, medidaFondo, medidaDibujo, medidaLista,
+            medidaMostrar, medidaBolas, medidaDisparos, medidaDestellos, medidaObjetos;
+    /**
+     * Cada cuántos segundos de partida se vacían las estadísticas (después de
+     * escribirlas en el fichero, si hay uno), y fichero donde se escriben.
+     */
+    private float segundosPorVolcado = 5;
+    private File ficheroEstadisticas = null;
+    private PrintWriter volcado = null;
+    /**
+     * Si es true, las estadísticas se muestran encima de la escena. Se cambia
+     * con la tecla F3.
+     */
+    private boolean mostrarEstadisticas = false;
+    private final BufferTexto textoEstadisticas = new BufferTexto(64);
+
+    /**
+     * Semillas de los números aleatorios de la partida: la de este juego (dónde
+     * salen las bolas) y la de los destellos (de qué color son). Si no se fijan
+     * con setSemillas(), cada partida elige unas nuevas.
+     */
+    private long semillaJuego, semillaDestellos;
+    private boolean semillasFijadas = false;
+
+    /**
+     * Número máximo de jugadores en una partida. Los controles de cada tick
+     * (ver FuenteControles) son un solo int, en el que cada jugador ocupa
+     * BITS_POR_JUGADOR bits: los del jugador 0 son los más bajos, los del 1
+     * los siguientes...
+     */
+    public static final int MAXIMO_JUGADORES = 4;
+    public static final int BITS_POR_JUGADOR = 8;
+    private static final int MASCARA_JUGADOR = (1 << BITS_POR_JUGADOR) - 1;
+    private int jugadores = 1;
+
+    /**
+     * Número de ganchos de cada jugador que hay en todo momento en pantalla.
+     */
+    private final int[] disparosSimultaneos = new int[MAXIMO_JUGADORES];
+
+    /**
+     * Bits con los que se representa cada control en un tick (ver FuenteControles).
+     */
+    public static final int CONTROL_ARRIBA = 1, CONTROL_ABAJO = 2,
+            CONTROL_IZQUIERDA = 4, CONTROL_DERECHA = 8, CONTROL_ESPACIO = 16;
+
+    /**
+     * Controles pulsados en el tick actual.
+     */
+    private int controles = 0;
+    /**
+     * De dónde se leen los controles. Si es null, se leen de la pantalla.
+     */
+    private FuenteControles fuenteControles = null;
+    /**
+     * Si no es null, cada partida se graba en este fichero (ver GrabadoraControles).
+     */
+    private File ficheroGrabacion = null;
+    private GrabadoraControles grabadora = null;
+    /**
+     * true si las partidas se tienen que poder avanzar a saltos (ver setAvanceRapido()).
+     */
+    private boolean avanceRapido = false;
+    /**
+     * Número de ticks simulados en la partida actual.
+     */
+    private long ticks;
+
+    /**
+     * Número de ticks de simulación por segundo. En cada tick se mueven todos
+     * los objetos animados una cantidad fija de tiempo (1/ticksPorSegundo segundos),
+     * independientemente de cuántos fotogramas se muestren por pantalla.
+     */
+    private int ticksPorSegundo = 60;
+
+    /**
+     * Si el juego va con mucho retraso (por ejemplo, porque el ordenador se ha
+     * quedado colgado un momento), como máximo se intentarán recuperar
+     * este tiempo (en nanosegundos) de simulación de golpe. Si no, el juego
+     * podría pasarse mucho rato simulando sin mostrar nada por pantalla.
+     */
+    private static final long MAXIMO_RETRASO = 250000000L;
 
     /**
      * Será "true" cuando una bola haya tocado al jugador, y el juego haya acabado.
      */
     private boolean finDeJuego;
     /**
-     * Se limita a crear una nueva Ventana y asociarla al juego cuya escena
-     * mostrará.
+     * Se limita a asociar al juego la pantalla en la que se mostrará su escena.
+     * @param pantalla Pantalla donde se dibujará el juego. Puede ser una Ventana
+     * o, si no se quiere mostrar nada (por ejemplo, en un servidor sin pantalla),
+     * una PantallaVirtual.
+     */
+    public Juego(Pantalla pantalla) {
+        this.pantalla = pantalla;
+        dibujarEscenario(pantalla.getFondo());
+    }
+
+    /**
+     * Dibuja el escenario (paredes y suelo) en el fondo de la pantalla. Como
+     * no cambia nunca, se dibuja una sola vez, y en cada fotograma simplemente
+     * se copia el fondo entero. También lo usa el Espectador.
+     * @param fondo Lienzo del fondo de la pantalla.
      */
-    public Juego() {
-        this.ventana = new Ventana("MOOPang", 640, 480);
+    static void dibujarEscenario(Lienzo fondo) {
+        fondo.borrarLienzoOculto();
+        fondo.dibujaRectangulo(0,0,MARGEN,fondo.getAlturaLienzo(), Color.yellow);
+        fondo.dibujaRectangulo(fondo.getAnchuraLienzo() - MARGEN, 0, MARGEN, fondo.getAlturaLienzo(), Color.yellow);
+        fondo.dibujaRectangulo(0, fondo.getAlturaLienzo() - MARGEN, fondo.getAnchuraLienzo(), MARGEN, Color.yellow);
     }
 
     /**
      * Lo que es propiamente el juego, ocurre dentro de esta función.
+     *
+     * La simulación avanza a saltos fijos (ticks) de 1/ticksPorSegundo segundos.
+     * En cada vuelta del bucle se mira cuánto tiempo real ha pasado (con
+     * System.nanoTime()), se acumula, y se simulan tantos ticks como quepan en
+     * el tiempo acumulado. Lo que sobra (menos de un tick) se usa para dibujar
+     * los objetos en un punto intermedio entre el tick anterior y el actual,
+     * de manera que el movimiento se vea suave aunque la pantalla muestre más
+     * fotogramas por segundo que ticks tiene la simulación.
+     *
+     * Si la pantalla no es de tiempo real (por ejemplo, una PantallaVirtual),
+     * no se mira el reloj: se simula un tick por vuelta tan rápido como se pueda.
+     *
+     * Antes de cada tick se actualiza el estado de las teclas con los eventos
+     * de teclado que han ocurrido hasta el instante que corresponde al final de
+     * ese tick. Así, si se simulan varios ticks seguidos para recuperar tiempo,
+     * cada uno ve las teclas tal como estaban en su momento.
+     *
+     * Con setHiloDibujo(true), la escena se pinta en otro hilo (ver bucleConHiloDibujo()).
      */
     public void partida() {
+        empezarPartida();
+
+        long nanosPorTick = 1000000000L / ticksPorSegundo;
+        // las teclas que se hayan pulsado antes de empezar la partida no cuentan
+        pantalla.actualizarTeclas(System.nanoTime());
+        pantalla.isPulsadoEspacio();
+        if(hiloDibujo && pantalla.isTiempoReal()) {
+            bucleConHiloDibujo(nanosPorTick);
+        } else {
+            bucleEnUnHilo(nanosPorTick);
+        }
+        acabarPartida();
+    }
+
+    /**
+     * Bucle de la partida en el que se simula y se dibuja en el mismo hilo
+     * (ver partida()).
+     */
+    private void bucleEnUnHilo(long nanosPorTick) {
+        long anterior = System.nanoTime();
+        long acumulado = 0;
+        // No saldrá de aquí mientras no hayan tocado al jugador (finDeJuego==true)
+        while(!finDeJuego) {
+            if(pantalla.isTiempoReal()) {
+                long ahora = System.nanoTime();
+                acumulado += ahora - anterior;
+                anterior = ahora;
+                if(acumulado > MAXIMO_RETRASO) {
+                    acumulado = MAXIMO_RETRASO;
+                }
+                while(acumulado >= nanosPorTick && !finDeJuego) {
+                    // el tick que se va a simular acaba en el instante ahora - acumulado + nanosPorTick
+                    pantalla.actualizarTeclas(ahora - acumulado + nanosPorTick);
+                    simularTick();
+                    acumulado -= nanosPorTick;
+                }
+                mostrarEscena((float) acumulado / nanosPorTick);
+            } else {
+                pantalla.actualizarTeclas(System.nanoTime());
+                simularTick();
+                mostrarEscena(1);
+            }
+        }
+    }
+
+    /**
+     * Bucle de la partida en el que la escena se pinta en otro hilo.
+     *
+     * Este hilo simula cada tick cuando le toca según el reloj (y mientras no
+     * le toca, duerme). Después de cada tick, si no va con retraso, "dibuja"
+     * la escena en una ListaDibujo y la publica. Mientras tanto, el hilo de
+     * dibujo pinta en la pantalla la última lista publicada. Así, mientras se
+     * pinta un fotograma ya se puede estar simulando el tick siguiente, y un
+     * fotograma que tarda en pintarse no retrasa la simulación.
+     *
+     * Los objetos se dibujan en la posición del último tick (sin interpolar),
+     * así que se muestran como mucho tantos fotogramas por segundo como ticks
+     * tiene la simulación.
+     */
+    private void bucleConHiloDibujo(long nanosPorTick) {
+        if(listaDibujo == null) {
+            listaDibujo = new ListaDibujo(pantalla);
+        }
+        final ListaDibujo lista = listaDibujo;
+        publicarEscena(lista);
+        dibujando = true;
+        Thread hilo = new Thread(new Runnable() {
+            public void run() {
+                pintarListas(lista);
+            }
+        }, "MOOPang - dibujo");
+        hilo.setDaemon(true);
+        hilo.start();
+
+        long finTick = System.nanoTime() + nanosPorTick;
+        while(!finDeJuego) {
+            long ahora = System.nanoTime();
+            if(finTick - ahora > 0) {
+                LockSupport.parkNanos(finTick - ahora);
+                continue;
+            }
+            if(ahora - finTick > MAXIMO_RETRASO) {
+                finTick = ahora - MAXIMO_RETRASO;
+            }
+            pantalla.actualizarTeclas(finTick);
+            simularTick();
+            finTick += nanosPorTick;
+            // si va con retraso, primero se simulan los ticks que faltan
+            if(finTick - System.nanoTime() > 0) {
+                publicarEscena(lista);
+            }
+        }
+
+        dibujando = false;
+        LockSupport.unpark(hilo);
+        try {
+            hilo.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Dibuja la escena en la lista de dibujo y la publica para el hilo de dibujo.
+     */
+    private void publicarEscena(ListaDibujo lista) {
+        long t = marca();
+        EventoFaseDibujo fase = faseDibujo(null, "lista");
+        dibujarObjetos(lista, 1);
+        faseDibujo(fase, null);
+        apuntar(medidaLista, t);
+        ticksPublicados = ticks;
+        bolasPublicadas = bolas.getTotal();
+        objetosPublicados = objetosAnimados.size();
+        lista.publicar();
+    }
+
+    /**
+     * Lo que hace el hilo de dibujo: cada vez que se publica una lista de
+     * dibujo, la pinta en la pantalla y la muestra.
+     */
+    private void pintarListas(ListaDibujo lista) {
+        while(dibujando) {
+            if(!lista.esperarNueva(MAXIMO_RETRASO)) {
+                continue;
+            }
+            long inicio = System.nanoTime();
+            EventoFaseDibujo fase = faseDibujo(null, "fondo");
+            pantalla.restaurarFondo();
+            long t = apuntar(medidaFondo, inicio);
+            fase = faseDibujo(fase, "dibujo");
+            lista.reproducir(pantalla);
+            t = apuntar(medidaDibujo, t);
+            fase = faseDibujo(fase, "mostrar");
+            pantalla.mostrarLienzo();
+            faseDibujo(fase, null);
+            apuntar(medidaMostrar, t);
+            if(medidor != null) {
+                medidor.fotograma(System.nanoTime() - inicio, ticksPublicados / (float) ticksPorSegundo,
+                        bolasPublicadas, objetosPublicados);
+            }
+        }
+    }
+
+    /**
+     * Simula un tick y, si hay un medidor de rendimiento, le dice cuánto ha tardado.
+     */
+    private void simularTick() {
+        if(pantalla.isPulsadoEstadisticas()) {
+            mostrarEstadisticas = !mostrarEstadisticas;
+        }
+        if(medidor == null) {
+            nuevoTickDeSimulacion();
+            return;
+        }
+        long inicio = System.nanoTime();
+        nuevoTickDeSimulacion();
+        medidor.tick(System.nanoTime() - inicio);
+    }
+
+    /**
+     * Dibuja la escena y la muestra por pantalla. Si hay un medidor de
+     * rendimiento, le dice cuánto ha tardado.
+     * @param interpolacion Ver dibujarEscena().
+     */
+    private void mostrarEscena(float interpolacion) {
+        long inicio = System.nanoTime();
+        dibujarEscena(interpolacion);
+        long t = marca();
+        EventoFaseDibujo fase = faseDibujo(null, "mostrar");
+        pantalla.mostrarLienzo();
+        faseDibujo(fase, null);
+        apuntar(medidaMostrar, t);
+        if(medidor != null) {
+            medidor.fotograma(System.nanoTime() - inicio, ticks / (float) ticksPorSegundo,
+                    bolas.getTotal(), objetosAnimados.size());
+        }
+    }
+
+    /**
+     * Si hay estadísticas, devuelve el instante actual, para medir cuánto
+     * tarda una fase con apuntar(). Si no, devuelve 0 sin mirar el reloj.
+     */
+    private long marca() {
+        return estadisticas != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Si hay estadísticas, apunta el tiempo que ha pasado desde un instante.
+     * @param medida Medida donde se apunta.
+     * @param desde Instante en que empezó la fase, según marca().
+     * @return El instante actual (para medir la fase siguiente), o 0 si no
+     *         hay estadísticas.
+     */
+    private long apuntar(int medida, long desde) {
+        if(estadisticas == null) {
+            return 0;
+        }
+        long ahora = System.nanoTime();
+        estadisticas.apuntar(medida, ahora - desde);
+        return ahora;
+    }
+
+    private void empezarGrabacion() {
+        if(ficheroGrabacion == null) {
+            return;
+        }
+        if(jugadores > 1) {
+            // el fichero guarda un byte de controles por tramo: sólo cabe un jugador
+            Logger.getLogger(Juego.class.getName()).log(Level.WARNING,
+                    "Las partidas de varios jugadores no se pueden grabar");
+            return;
+        }
+        try {
+            grabadora = new GrabadoraControles(new FileOutputStream(ficheroGrabacion),
+                    semillaJuego, semillaDestellos, ticksPorSegundo);
+        } catch (IOException ex) {
+            Logger.getLogger(Juego.class.getName()).log(Level.WARNING, "No se puede grabar la partida", ex);
+            grabadora = null;
+        }
+    }
+
+    private void acabarGrabacion() {
+        if(grabadora == null) {
+            return;
+        }
+        try {
+            grabadora.cerrar();
+        } catch (IOException ex) {
+            Logger.getLogger(Juego.class.getName()).log(Level.WARNING, "No se puede grabar la partida", ex);
+        }
+        grabadora = null;
+    }
+
+    /**
+     * Lee los controles del tick que se va a simular: de la fuente de controles
+     * si hay una, o si no, del teclado de la pantalla. Si se está grabando la
+     * partida, los graba.
+     */
+    private void leerControles() {
+        if(fuenteControles != null) {
+            controles = fuenteControles.siguienteTick();
+            if(fuenteControles.isAcabada()) {
+                finDeJuego = true;
+            }
+        } else {
+            controles = (pantalla.isPulsadoArriba() ? CONTROL_ARRIBA : 0)
+                    | (pantalla.isPulsadoAbajo() ? CONTROL_ABAJO : 0)
+                    | (pantalla.isPulsadoIzquierda() ? CONTROL_IZQUIERDA : 0)
+                    | (pantalla.isPulsadoDerecha() ? CONTROL_DERECHA : 0)
+                    | (pantalla.isPulsadoEspacio() ? CONTROL_ESPACIO : 0);
+        }
+        if(grabadora != null) {
+            try {
+                grabadora.grabar(controles);
+            } catch (IOException ex) {
+                Logger.getLogger(Juego.class.getName()).log(Level.WARNING, "No se puede grabar la partida", ex);
+                grabadora = null;
+            }
+        }
+    }
+
+    /**
+     * Prepara una partida nueva: vacía la escena, pone al protagonista y
+     * reinicia la puntuación y los números aleatorios. partida() lo llama al
+     * principio; también se puede llamar directamente para simular la partida
+     * tick a tick con nuevoTickDeSimulacion() o nuevoFotogramaDeJuego() (por
+     * ejemplo, en las pruebas de rendimiento).
+     */
+    public void empezarPartida() {
         //inicia algunos datos
         frecuenciaEntreBolas = MINIMA_FRECUENCIA_ENTRE_BOLAS;
-        objetosAnimados = new LinkedList<ObjetoAnimado>();
-        objetosAnimados.add(new Protagonista(this));
-        tiempoDeUltimaBola = 0;
+        objetosAnimados = new ListaObjetosAnimados();
+        rejilla = new RejillaBolas(getCoordenadaXMargenIzquierdo(), 0,
+                getCoordenadaXMargenDerecho(), getCoordenadaYSuelo(), Bola.RADIO_MAXIMO);
+        // las partidas grabadas se tienen que poder repetir a saltos
+        bolas = new AlmacenBolas(this, avanceRapido || ficheroGrabacion != null);
+        if(hilosSimulacion > 1) {
+            if(poolSimulacion == null || poolSimulacion.getParallelism() != hilosSimulacion) {
+                if(poolSimulacion != null) {
+                    poolSimulacion.shutdown();
+                }
+                poolSimulacion = new ForkJoinPool(hilosSimulacion);
+            }
+            bolas.setPool(poolSimulacion);
+        }
+        for(int j = 0; j < jugadores; j++) {
+            objetosAnimados.anyadir(new Protagonista(this, j));
+        }
+        objetosAnimados.anyadir(bolas);
+        objetosAnimados.aplicarCambios();
+        tiempoHastaSiguienteBola = tiempoOrigenBola = 0;
+        ticksDesdeOrigenBola = 0;
         finDeJuego = false;
         puntuacion = 0;
-        Disparo.setTotalDisparos(0);
+        ticks = 0;
+        Arrays.fill(disparosSimultaneos, 0);
 
-        // No saldrá de aquí mientras no hayan tocado al jugador (finDeJuego==true)
-        while(!finDeJuego) {
-            nuevoFotogramaDeJuego();
-            ventana.mostrarLienzo();
+        // Con las mismas semillas y los mismos controles en cada tick, la
+        // partida es exactamente igual: así se puede grabar y repetir.
+        if(!semillasFijadas) {
+            semillaJuego = System.nanoTime();
+            semillaDestellos = semillaJuego * 31 + 17;
         }
+        random.setSeed(semillaJuego);
+        randomDestellos.setSeed(semillaDestellos);
+        empezarGrabacion();
+        if(estadisticas != null) {
+            estadisticas.vaciar();
+            cerrarVolcado();
+            abrirVolcado();
+        }
+
     }
+
     /**
-     * Este método gestiona los cambios que se hacen en cada fotograma:
-     * <li>Dibuja el escenario (techo, suelos...)</li>
-     * <li>Llama a todos los elementos para que se muevan un pasito y se pinten
-     *     en el lienzo</li>
-     * <li>Si toca, lanza una nueva bola desde el techo</li>
-     * <li>Una vez todo está pintado, sobreimpresiona la puntuación</li>
+     * Simula un tick y dibuja el resultado, sin mirar el reloj. Equivale a
+     * una vuelta del bucle de partida() con una pantalla que no es de tiempo real.
      */
     public void nuevoFotogramaDeJuego() {
-        //Borra el lienzo, ya que todavía contiene el dibujo del fotograma anterior
-        ventana.borrarLienzoOculto();
-
-        //Dibujamos el techo y el suelo
-        ventana.dibujaRectangulo(0,0,MARGEN,ventana.getAlturaLienzo(), Color.yellow);
-        ventana.dibujaRectangulo(getCoordenadaXMargenDerecho(), 0, MARGEN, ventana.getAlturaLienzo(), Color.yellow);
-        ventana.dibujaRectangulo(0, getCoordenadaYSuelo(), ventana.getAnchuraLienzo(), MARGEN, Color.yellow);
-
-        //Mueve y pinta todos los objetos en pantalla
-        //creamos una lista aparte para no tener error de modificación
-        //en concurrencia cuando alguno de los objetos solicite insertar o borrar
-        //elementos en la lista de objetos animados
-        Iterator<ObjetoAnimado> iteradorObjetos = new LinkedList<ObjetoAnimado>(objetosAnimados).iterator();
-        while(iteradorObjetos.hasNext()) {
-            iteradorObjetos.next().moverYDibujar(ventana);
-        }        
+        pantalla.actualizarTeclas(System.nanoTime());
+        nuevoTickDeSimulacion();
+        dibujarEscena(1);
+    }
+
+    /**
+     * Acaba el evento de JFR de una fase de la simulación y empieza el de la
+     * siguiente. Si los eventos de fase no están activados, no se crea ninguno
+     * (ver EventosActivos).
+     * @param anterior Evento de la fase que acaba, o null.
+     * @param fase Nombre de la fase que empieza, o null si no empieza ninguna.
+     * @return El evento de la fase que empieza, o null.
+     */
+    private static EventoFaseSimulacion faseSimulacion(EventoFaseSimulacion anterior, String fase) {
+        if(anterior != null) {
+            anterior.commit();
+        }
+        return fase != null && EventosActivos.isFaseSimulacion() ? EventoFaseSimulacion.empezar(fase) : null;
+    }
+
+    /**
+     * Como faseSimulacion(), pero con las fases del dibujo.
+     */
+    private static EventoFaseDibujo faseDibujo(EventoFaseDibujo anterior, String fase) {
+        if(anterior != null) {
+            anterior.commit();
+        }
+        return fase != null && EventosActivos.isFaseDibujo() ? EventoFaseDibujo.empezar(fase) : null;
+    }
+
+    /**
+     * Este método gestiona los cambios que se hacen en cada tick de la simulación:
+     * <li>Llama a todos los elementos para que se muevan un pasito</li>
+     * <li>Coloca las bolas en la rejilla de colisiones, y llama a los objetos
+     *     colisionables para que comprueben si chocan con alguna bola</li>
+     * <li>Si toca, lanza una nueva bola desde el techo</li>
+     */
+    public void nuevoTickDeSimulacion() {
+        float segundos = 1f / ticksPorSegundo;
+        long t = marca();
+        EventoTick eventoTick = null;
+        if(EventosActivos.isTick()) {
+            eventoTick = new EventoTick();
+            eventoTick.begin();
+        }
+        EventoFaseSimulacion fase = faseSimulacion(null, "controles");
+        leerControles();
+        ticks++;
+        t = apuntar(medidaControles, t);
+        fase = faseSimulacion(fase, "mover");
+
+        //Mueve todos los objetos. Si alguno pide insertar o borrar elementos
+        //en la lista de objetos animados, no se hará hasta el final del tick
+        for(int i = 0; i < objetosAnimados.size(); i++) {
+            objetosAnimados.get(i).mover(segundos);
+        }
+        t = apuntar(medidaMover, t);
+        fase = faseSimulacion(fase, "rejilla");
+
+        //Una vez todo se ha movido, colocamos las bolas en la rejilla, y buscamos
+        //los objetos que deben comprobar si chocan con ellas
+        rejilla.vaciar();
+        for(int i = 0; i < bolas.getTotal(); i++) {
+            rejilla.insertar(bolas.getBola(i));
+        }
+        colisionables.clear();
+        for(int i = 0; i < objetosAnimados.size(); i++) {
+            ObjetoAnimado obj = objetosAnimados.get(i);
+            if(obj instanceof Colisionable && !objetosAnimados.isParaEliminar(i)) {
+                colisionables.add((Colisionable) obj);
+            }
+        }
+        t = apuntar(medidaRejilla, t);
+        fase = faseSimulacion(fase, "colisiones");
+        for(int i = 0; i < colisionables.size(); i++) {
+            colisionables.get(i).comprobarColisiones();
+        }
+        t = apuntar(medidaColisiones, t);
+        fase = faseSimulacion(fase, "aparicion");
 
         //Mira si hay que lanzar una nueva bola desde el techo
-        long ahora = System.currentTimeMillis();
-        if(ahora > tiempoDeUltimaBola + frecuenciaEntreBolas) {
-            objetosAnimados.add(new Bola(this, (float) (
-                       getCoordenadaXMargenIzquierdo()
-                       + RANDOM.nextInt((int)(getCoordenadaXMargenDerecho() - getCoordenadaXMargenIzquierdo())))));
-            tiempoDeUltimaBola = ahora;
+        //(o, en el modo de prueba de carga, una ráfaga de bolas)
+        ticksDesdeOrigenBola++;
+        tiempoHastaSiguienteBola = tiempoHastaBola(ticksDesdeOrigenBola, segundos);
+        if(tiempoHastaSiguienteBola <= 0 && bolasPorRafaga > 0) {
+            lanzarRafaga();
+            nuevoOrigenBola(segundosEntreRafagas);
+        } else if(tiempoHastaSiguienteBola <= 0) {
+            float x = getCoordenadaXMargenIzquierdo()
+                       + random.nextInt((int)(getCoordenadaXMargenDerecho() - getCoordenadaXMargenIzquierdo()));
+            anyadirBola(x, -Bola.RADIO_MAXIMO, Bola.RADIO_MAXIMO, Bola.velocidadXInicial(this, x), 0);
+            nuevoOrigenBola(frecuenciaEntreBolas);
+        }
+
+        t = apuntar(medidaAparicion, t);
+        fase = faseSimulacion(fase, "cambios");
+
+        //Finalmente, se aplican todos los cambios pedidos en la lista de objetos
+        //animados, y los objetos que se han eliminado se devuelven a su reserva
+        objetosAnimados.aplicarCambios();
+        for(int i = 0; i < eliminadosEnEsteTick.size(); i++) {
+            ObjetoAnimado obj = eliminadosEnEsteTick.get(i);
+            if(obj instanceof Disparo) {
+                reservaDisparos.liberar((Disparo) obj);
+            } else if(obj instanceof Destello) {
+                reservaDestellos.liberar((Destello) obj);
+            }
+        }
+        eliminadosEnEsteTick.clear();
+        apuntar(medidaCambios, t);
+        faseSimulacion(fase, null);
+        if(eventoTick != null && eventoTick.shouldCommit()) {
+            eventoTick.tick = ticks;
+            eventoTick.bolas = bolas.getTotal();
+            eventoTick.objetos = objetosAnimados.size();
+            eventoTick.commit();
+        }
+
+        if(estadisticas != null) {
+            contarObjetos();
+            if(ticks % Math.max(1, Math.round(segundosPorVolcado * ticksPorSegundo)) == 0) {
+                volcarEstadisticas();
+            }
+        }
+
+        if(duracionMaxima > 0 && ticks >= duracionMaxima * ticksPorSegundo) {
+            finDeJuego = true;
+        }
+    }
+
+    /**
+     * Juega una partida entera sin dibujarla y tan rápido como se pueda,
+     * avanzando a saltos con avanzarRapido(). Sirve, por ejemplo, para repetir
+     * una partida grabada y ver la puntuación final sin esperar a simular
+     * todos sus ticks.
+     */
+    public void partidaRapida() {
+        empezarPartida();
+        avanzarRapido(Long.MAX_VALUE);
+        acabarPartida();
+    }
+
+    /**
+     * Cierra la grabación y el volcado de estadísticas de la partida. Lo llaman
+     * partida() y partidaRapida() al acabar; quien avance la partida por su
+     * cuenta con avanzarRapido() lo debe llamar cuando isPartidaAcabada() sea true.
+     */
+    public void acabarPartida() {
+        acabarGrabacion();
+        cerrarVolcado();
+    }
+
+    /**
+     * Indica si la partida actual se ha acabado (han tocado al protagonista o
+     * se ha llegado a la duración máxima).
+     * @return
+     */
+    public boolean isPartidaAcabada() {
+        return finDeJuego;
+    }
+
+    /**
+     * Avanza la simulación sin dibujarla, hasta que se acaba la partida o se han
+     * simulado un número de ticks. El resultado es exactamente el mismo que
+     * llamando a nuevoTickDeSimulacion() ese número de veces, pero sólo se simulan
+     * uno a uno los ticks en los que pasa algo (un disparo, un choque, una bola
+     * nueva...). Los demás se saltan de golpe (ver saltarTicksTranquilos()), y
+     * el coste depende del número de cosas que pasan, no del número de ticks.
+     *
+     * Para poder saltar ticks, los controles deben venir de una fuente que sepa
+     * cuáles dará (ver setFuenteControles()), como una Repeticion, y la partida
+     * debe haber empezado con setAvanceRapido(true) (o grabándose). Si no, se
+     * simula tick a tick.
+     * @param ticksMaximos Número máximo de ticks que se avanzan.
+     */
+    public void avanzarRapido(long ticksMaximos) {
+        long restantes = ticksMaximos;
+        while(!finDeJuego && restantes > 0) {
+            nuevoTickDeSimulacion();
+            restantes--;
+            if(!finDeJuego && restantes > 0) {
+                restantes -= saltarTicksTranquilos(restantes);
+            }
+        }
+    }
+
+    /**
+     * Salta de golpe los ticks siguientes en los que no pasará nada más que
+     * moverse los objetos: nadie dispara ni choca, no desaparece ningún objeto,
+     * no sale ninguna bola nueva, la fuente de controles da los mismos controles
+     * que en el último tick... Los objetos avanzan con ObjetoPredecible.saltar().
+     *
+     * En los ticks saltados no se apuntan estadísticas ni se generan eventos
+     * de Flight Recorder, y la rejilla de colisiones no se actualiza (se
+     * vuelve a llenar en el tick siguiente, antes de usarla).
+     * @param maximo Número máximo de ticks a saltar.
+     * @return Número de ticks saltados (puede ser 0).
+     */
+    private int saltarTicksTranquilos(long maximo) {
+        if(fuenteControles == null || !bolas.isPredecible()) {
+            return 0;
+        }
+        float segundos = 1f / ticksPorSegundo;
+        int ticksTranquilos = (int) Math.min(maximo, Integer.MAX_VALUE);
+
+        // Ticks que faltan para que salga una bola nueva
+        ticksTranquilos = Math.min(ticksTranquilos, tickSiguienteBola(segundos) - ticksDesdeOrigenBola - 1);
+        // Ticks que faltan para el final de la partida y para el siguiente
+        // volcado de estadísticas
+        if(duracionMaxima > 0) {
+            float limite = duracionMaxima * ticksPorSegundo;
+            long n = Math.max(0, Math.min(ticksTranquilos, (long) Math.ceil(limite) - ticks));
+            while(n > 0 && ticks + n >= limite) {
+                n--;
+            }
+            ticksTranquilos = (int) n;
+        }
+        if(estadisticas != null) {
+            int ticksPorVolcado = Math.max(1, Math.round(segundosPorVolcado * ticksPorSegundo));
+            ticksTranquilos = (int) Math.min(ticksTranquilos, ticksPorVolcado - 1 - ticks % ticksPorVolcado);
+        }
+        for(int i = 0; i < objetosAnimados.size() && ticksTranquilos > 0; i++) {
+            ObjetoAnimado obj = objetosAnimados.get(i);
+            ticksTranquilos = obj instanceof ObjetoPredecible
+                    ? ((ObjetoPredecible) obj).getTicksTranquilos(segundos, ticksTranquilos)
+                    : 0;
+        }
+        if(ticksTranquilos <= 0) {
+            return 0;
         }
+
+        int saltados = (int) fuenteControles.saltarTicksIguales(controles, ticksTranquilos);
+        if(saltados == 0) {
+            return 0;
+        }
+        for(int i = 0; i < objetosAnimados.size(); i++) {
+            ((ObjetoPredecible) objetosAnimados.get(i)).saltar(saltados, segundos);
+        }
+        ticksDesdeOrigenBola += saltados;
+        tiempoHastaSiguienteBola = tiempoHastaBola(ticksDesdeOrigenBola, segundos);
+        ticks += saltados;
+        if(grabadora != null) {
+            try {
+                grabadora.grabar(controles, saltados);
+            } catch (IOException ex) {
+                Logger.getLogger(Juego.class.getName()).log(Level.WARNING, "No se puede grabar la partida", ex);
+                grabadora = null;
+            }
+        }
+        return saltados;
+    }
+
+    /**
+     * Tiempo que falta para la siguiente bola después de un número de ticks
+     * desde que salió la anterior.
+     */
+    private float tiempoHastaBola(int ticksDesdeOrigen, float segundos) {
+        return tiempoOrigenBola - ticksDesdeOrigen * segundos;
+    }
+
+    /**
+     * Vuelve a contar el tiempo hasta la siguiente bola, justo después de
+     * salir una.
+     * @param espera Tiempo que hay que esperar hasta la siguiente.
+     */
+    private void nuevoOrigenBola(float espera) {
+        tiempoHastaSiguienteBola = tiempoOrigenBola = tiempoHastaSiguienteBola + espera;
+        ticksDesdeOrigenBola = 0;
+    }
+
+    /**
+     * Calcula en qué tick (contado desde que salió la bola anterior) saldrá la
+     * siguiente bola. Siempre es posterior al tick actual.
+     */
+    private int tickSiguienteBola(float segundos) {
+        int k = Math.max(ticksDesdeOrigenBola + 1, (int) Math.ceil(tiempoOrigenBola / segundos));
+        // la estimación puede fallar por un tick por los redondeos: se ajusta
+        // con la misma fórmula que se usa en nuevoTickDeSimulacion()
+        while(k > ticksDesdeOrigenBola + 1 && tiempoHastaBola(k - 1, segundos) <= 0) {
+            k--;
+        }
+        while(tiempoHastaBola(k, segundos) > 0) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Lanza una ráfaga de bolasPorRafaga bolas de tamaños variados, repartidas
+     * al azar por la mitad superior del escenario.
+     */
+    private void lanzarRafaga() {
+        float izquierda = getCoordenadaXMargenIzquierdo();
+        float anchura = getCoordenadaXMargenDerecho() - izquierda;
+        float altura = getCoordenadaYSuelo() / 2;
+        int niveles = Bola.getNumeroNiveles();
+        for(int n = 0; n < bolasPorRafaga; n++) {
+            float radio = Bola.radioDeNivel(random.nextInt(niveles));
+            float x = izquierda + radio + random.nextFloat() * (anchura - 2 * radio);
+            float y = radio + random.nextFloat() * (altura - radio);
+            float velocidadX = random.nextBoolean() ? Bola.VELOCIDAD_HORIZONTAL : -Bola.VELOCIDAD_HORIZONTAL;
+            anyadirBola(x, y, radio, velocidadX, 0);
+        }
+    }
+
+    /**
+     * Dibuja la escena en el lienzo oculto de la pantalla:
+     * <li>Copia el fondo con el escenario (techo, suelos...)</li>
+     * <li>Dibuja todos los objetos animados</li>
+     * <li>Una vez todo está pintado, sobreimpresiona la puntuación</li>
+     * @param interpolacion Valor entre 0 y 1 que indica en qué punto entre el
+     *        tick anterior y el actual se deben dibujar los objetos.
+     */
+    public void dibujarEscena(float interpolacion) {
+        //Tapa el dibujo del fotograma anterior con el fondo (techo y suelo)
+        long t = marca();
+        EventoFaseDibujo fase = faseDibujo(null, "fondo");
+        pantalla.restaurarFondo();
+        t = apuntar(medidaFondo, t);
+        fase = faseDibujo(fase, "dibujo");
+        dibujarObjetos(pantalla, interpolacion);
+        faseDibujo(fase, null);
+        apuntar(medidaDibujo, t);
+    }
+
+    /**
+     * Dibuja todos los objetos animados y la puntuación (sin el fondo).
+     * @param lienzo Lienzo donde se dibujan.
+     * @param interpolacion Ver dibujarEscena().
+     */
+    private void dibujarObjetos(Lienzo lienzo, float interpolacion) {
+        for(int i = 0; i < objetosAnimados.size(); i++) {
+            objetosAnimados.get(i).dibujar(lienzo, interpolacion);
+        }
+
         //antes de mostrar el lienzo del juego, sobreimpresiona la puntuación
-        ventana.escribeTexto("Puntos: " + puntuacion, 30, 20, 18, Color.white);
+        textoPuntuacion.vaciar().anyadir("Puntos: ").anyadir(puntuacion);
+        lienzo.escribeTexto(textoPuntuacion, 30, 20, 18, Color.white);
+
+        if(mostrarEstadisticas && estadisticas != null) {
+            dibujarEstadisticas(lienzo);
+        }
+    }
+
+    /**
+     * Escribe las estadísticas debajo de la puntuación: para cada fase, los
+     * percentiles 50, 99 y 99.9 y el máximo de su tiempo (en milisegundos), y
+     * para cada tipo de objeto, cuántos hay y el máximo que ha habido.
+     */
+    private void dibujarEstadisticas(Lienzo lienzo) {
+        float y = 44;
+        textoEstadisticas.vaciar().anyadir("ms: p50 / p99 / p99.9 / max");
+        lienzo.escribeTexto(textoEstadisticas, 30, y, 12, Color.green);
+        for(int i = 0; i < estadisticas.getNumeroMedidas(); i++) {
+            Histograma h = estadisticas.getHistograma(i);
+            textoEstadisticas.vaciar().anyadir(estadisticas.getNombre(i)).anyadir(": ");
+            if(estadisticas.isTiempo(i)) {
+                textoEstadisticas.anyadir(h.getPercentil(50) / 1e6, 2)
+                        .anyadir(" / ").anyadir(h.getPercentil(99) / 1e6, 2)
+                        .anyadir(" / ").anyadir(h.getPercentil(99.9) / 1e6, 2)
+                        .anyadir(" / ").anyadir(h.getMaximo() / 1e6, 2);
+            } else {
+                textoEstadisticas.anyadir((int) estadisticas.getUltimo(i))
+                        .anyadir(" (max ").anyadir((int) h.getMaximo()).anyadir(")");
+            }
+            y += 14;
+            lienzo.escribeTexto(textoEstadisticas, 30, y, 12, Color.green);
+        }
+    }
+
+    /**
+     * Apunta en las estadísticas cuántos objetos de cada tipo hay.
+     */
+    private void contarObjetos() {
+        int disparos = 0, destellos = 0;
+        for(int i = 0; i < objetosAnimados.size(); i++) {
+            ObjetoAnimado obj = objetosAnimados.get(i);
+            if(obj instanceof Disparo) {
+                disparos++;
+            } else if(obj instanceof Destello) {
+                destellos++;
+            }
+        }
+        estadisticas.apuntar(medidaBolas, bolas.getTotal());
+        estadisticas.apuntar(medidaDisparos, disparos);
+        estadisticas.apuntar(medidaDestellos, destellos);
+        estadisticas.apuntar(medidaObjetos, objetosAnimados.size());
+    }
+
+    /**
+     * Escribe las estadísticas en el fichero (si hay uno) y las vacía, para
+     * empezar otro periodo de medida.
+     */
+    private void volcarEstadisticas() {
+        if(volcado != null) {
+            estadisticas.escribirCsv(volcado, ticks / (double) ticksPorSegundo);
+            volcado.flush();
+        }
+        estadisticas.vaciar();
+    }
+
+    private void abrirVolcado() {
+        if(ficheroEstadisticas == null || estadisticas == null) {
+            return;
+        }
+        try {
+            boolean nuevo = !ficheroEstadisticas.exists() || ficheroEstadisticas.length() == 0;
+            volcado = new PrintWriter(new BufferedWriter(new FileWriter(ficheroEstadisticas, true)));
+            if(nuevo) {
+                Estadisticas.escribirCabeceraCsv(volcado);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Juego.class.getName()).log(Level.WARNING, "No se pueden guardar las estadísticas", ex);
+            volcado = null;
+        }
+    }
+
+    private void cerrarVolcado() {
+        if(volcado != null) {
+            // lo que se ha medido desde el último volcado
+            volcarEstadisticas();
+            volcado.close();
+            volcado = null;
+        }
+    }
+
+    /**
+     * Cambia el número de ticks por segundo de la simulación. No cambia la
+     * velocidad del juego (todas las velocidades están en píxels por segundo),
+     * sino la precisión con la que se simula. Se tiene en cuenta a partir de
+     * la siguiente partida.
+     * @param ticksPorSegundo Número de ticks de simulación por segundo.
+     */
+    public void setFrecuenciaSimulacion(int ticksPorSegundo) {
+        if(ticksPorSegundo <= 0) {
+            throw new IllegalArgumentException("Los ticks por segundo deben ser positivos: " + ticksPorSegundo);
+        }
+        this.ticksPorSegundo = ticksPorSegundo;
+    }
+
+    /**
+     * Devuelve el número de ticks por segundo de la simulación.
+     * @return
+     */
+    public int getFrecuenciaSimulacion() {
+        return ticksPorSegundo;
+    }
+
+    /**
+     * Devuelve la pantalla donde se muestra el juego (por ejemplo, para que el
+     * protagonista pueda consultar qué teclas se han pulsado).
+     * @return
+     */
+    public Pantalla getPantalla() {
+        return pantalla;
+    }
+
+    /**
+     * Indica si un control está pulsado en el tick actual. Los objetos del juego
+     * (por ejemplo, el protagonista) deben consultar los controles con este
+     * método, y no directamente en la pantalla, para que la partida se pueda
+     * grabar y repetir.
+     * @param control Uno de los bits CONTROL_...
+     * @return true si está pulsado.
+     */
+    public boolean isPulsado(int control) {
+        return isPulsado(0, control);
+    }
+
+    /**
+     * Indica si un control de un jugador está pulsado en el tick actual.
+     * @param jugador Número del jugador, empezando por 0.
+     * @param control Uno de los bits CONTROL_...
+     * @return true si está pulsado.
+     */
+    public boolean isPulsado(int jugador, int control) {
+        return (getControles(jugador) & control) != 0;
+    }
+
+    /**
+     * Devuelve todos los controles de un jugador en el tick actual.
+     * @param jugador Número del jugador, empezando por 0.
+     * @return Combinación de bits CONTROL_...
+     */
+    public int getControles(int jugador) {
+        return (controles >>> (jugador * BITS_POR_JUGADOR)) & MASCARA_JUGADOR;
+    }
+
+    /**
+     * Cambia el número de jugadores de las siguientes partidas. Cada uno tiene
+     * su protagonista, que lleva con sus bits de los controles (ver
+     * BITS_POR_JUGADOR). Con el teclado sólo se controla al jugador 0, así que
+     * los demás necesitan una fuente de controles (ver setFuenteControles()).
+     * La partida se acaba en cuanto una bola toca a cualquiera de ellos. Las
+     * partidas de varios jugadores no se pueden grabar.
+     * @param jugadores Entre 1 y MAXIMO_JUGADORES.
+     */
+    public void setJugadores(int jugadores) {
+        if(jugadores < 1 || jugadores > MAXIMO_JUGADORES) {
+            throw new IllegalArgumentException("Número de jugadores incorrecto: " + jugadores);
+        }
+        this.jugadores = jugadores;
+    }
+
+    public int getJugadores() {
+        return jugadores;
+    }
+
+    /**
+     * Cambia la fuente de la que se leen los controles en cada tick.
+     * @param fuenteControles La fuente, o null para leerlos del teclado de la pantalla.
+     */
+    public void setFuenteControles(FuenteControles fuenteControles) {
+        this.fuenteControles = fuenteControles;
+    }
+
+    /**
+     * Activa el modo de prueba de carga: en vez de salir una bola del techo de
+     * vez en cuando, salen ráfagas de muchas bolas de todos los tamaños. Se
+     * tiene en cuenta a partir de la siguiente partida.
+     * @param bolasPorRafaga Bolas de cada ráfaga, o 0 para jugar normalmente.
+     * @param segundosEntreRafagas Segundos de simulación entre ráfaga y ráfaga.
+     */
+    public void setRafagas(int bolasPorRafaga, float segundosEntreRafagas) {
+        if(bolasPorRafaga < 0 || segundosEntreRafagas <= 0) {
+            throw new IllegalArgumentException("Ráfagas incorrectas: " + bolasPorRafaga
+                    + " bolas cada " + segundosEntreRafagas + " s");
+        }
+        this.bolasPorRafaga = bolasPorRafaga;
+        this.segundosEntreRafagas = segundosEntreRafagas;
+    }
+
+    /**
+     * Cambia el número de hilos con los que se mueven las bolas cuando hay
+     * muchas. Con un solo hilo, se mueven en el hilo del juego. Se tiene en
+     * cuenta a partir de la siguiente partida.
+     * @param hilos Número de hilos (por defecto, uno por procesador).
+     */
+    public void setHilosSimulacion(int hilos) {
+        if(hilos <= 0) {
+            throw new IllegalArgumentException("El número de hilos debe ser positivo: " + hilos);
+        }
+        this.hilosSimulacion = hilos;
+    }
+
+    /**
+     * Indica si la escena se debe pintar en otro hilo, para que la simulación
+     * no tenga que esperar a que se pinte cada fotograma (ver partida()). Sólo
+     * se usa con pantallas de tiempo real. Se tiene en cuenta a partir de la
+     * siguiente partida.
+     * @param hiloDibujo
+     */
+    public void setHiloDibujo(boolean hiloDibujo) {
+        this.hiloDibujo = hiloDibujo;
+    }
+
+    /**
+     * Hace que se apunte cuánto tarda cada fase de cada tick (leer los
+     * controles, mover, preparar la rejilla, comprobar colisiones, lanzar
+     * bolas, aplicar cambios) y de cada fotograma (restaurar el fondo, dibujar,
+     * mostrar), y cuántas bolas, disparos, destellos y objetos hay. Con la
+     * tecla F3 se muestran encima de la escena.
+     * @param estadisticas Donde se apuntan, o null para no apuntar nada.
+     */
+    public void setEstadisticas(Estadisticas estadisticas) {
+        if(estadisticas != null) {
+            medidaControles = estadisticas.anyadirTiempo("controles");
+            medidaMover = estadisticas.anyadirTiempo("mover");
+            medidaRejilla = estadisticas.anyadirTiempo("rejilla");
+            medidaColisiones = estadisticas.anyadirTiempo("colisiones");
+            medidaAparicion = estadisticas.anyadirTiempo("aparicion");
+            medidaCambios = estadisticas.anyadirTiempo("cambios");
+            medidaFondo = estadisticas.anyadirTiempo("fondo");
+            medidaDibujo = estadisticas.anyadirTiempo("dibujo");
+            medidaLista = estadisticas.anyadirTiempo("lista");
+            medidaMostrar = estadisticas.anyadirTiempo("mostrar");
+            medidaBolas = estadisticas.anyadirCantidad("bolas");
+            medidaDisparos = estadisticas.anyadirCantidad("disparos");
+            medidaDestellos = estadisticas.anyadirCantidad("destellos");
+            medidaObjetos = estadisticas.anyadirCantidad("objetos");
+        }
+        this.estadisticas = estadisticas;
+    }
+
+    /**
+     * Hace que las estadísticas (ver setEstadisticas()) se escriban en un
+     * fichero en formato CSV, y después se vacíen, cada cierto tiempo de
+     * partida. Aunque no haya fichero, las estadísticas se vacían igualmente
+     * cada ese tiempo. Se tiene en cuenta a partir de la siguiente partida.
+     * @param fichero Fichero donde se añaden las líneas, o null para no escribirlas.
+     * @param segundos Segundos de partida entre volcado y volcado.
+     */
+    public void setVolcadoEstadisticas(File fichero, float segundos) {
+        if(segundos <= 0) {
+            throw new IllegalArgumentException("Los segundos entre volcados deben ser positivos: " + segundos);
+        }
+        this.ficheroEstadisticas = fichero;
+        this.segundosPorVolcado = segundos;
+    }
+
+    /**
+     * Si es true, las bolas no matan al jugador, y la partida sólo acaba por
+     * la fuente de controles o por setDuracionMaxima().
+     * @param invulnerable
+     */
+    public void setInvulnerable(boolean invulnerable) {
+        this.invulnerable = invulnerable;
+    }
+
+    public boolean isInvulnerable() {
+        return invulnerable;
+    }
+
+    /**
+     * Hace que las partidas acaben tras simular unos segundos.
+     * @param segundos Segundos de simulación (no de reloj), o 0 para no limitar
+     *        la duración.
+     */
+    public void setDuracionMaxima(float segundos) {
+        this.duracionMaxima = segundos;
+    }
+
+    /**
+     * Indica a quién se debe decir cuánto tarda cada tick y cada fotograma de
+     * la partida.
+     * @param medidor El medidor, o null para no medir nada.
+     */
+    public void setMedidorRendimiento(MedidorRendimiento medidor) {
+        this.medidor = medidor;
+    }
+
+    /**
+     * Hace que las partidas se graben en un fichero, para poderlas repetir
+     * después con la clase Repeticion. Cada partida sobrescribe la anterior.
+     * @param fichero El fichero, o null para no grabar.
+     */
+    public void setFicheroGrabacion(File fichero) {
+        this.ficheroGrabacion = fichero;
+    }
+
+    /**
+     * Indica si las próximas partidas se tienen que poder avanzar a saltos con
+     * avanzarRapido(). Para eso, las bolas se mueven en cada tick con la
+     * fórmula de sus arcos (ver AlmacenBolas), que es algo más lenta que ir
+     * sumando su velocidad, y da un resultado distinto por los redondeos.
+     * Las partidas que se graban siempre se mueven así, para poder repetirlas
+     * a saltos, y por eso también se tienen que repetir así.
+     * @param avanceRapido true para poder saltar ticks.
+     */
+    public void setAvanceRapido(boolean avanceRapido) {
+        this.avanceRapido = avanceRapido;
+    }
+
+    /**
+     * Fija las semillas de los números aleatorios de las próximas partidas.
+     * @param semillaJuego Semilla del juego (dónde salen las bolas).
+     * @param semillaDestellos Semilla de los destellos.
+     */
+    public void setSemillas(long semillaJuego, long semillaDestellos) {
+        this.semillaJuego = semillaJuego;
+        this.semillaDestellos = semillaDestellos;
+        semillasFijadas = true;
+    }
+
+    public long getSemillaJuego() {
+        return semillaJuego;
+    }
+
+    public long getSemillaDestellos() {
+        return semillaDestellos;
+    }
+
+    /**
+     * Devuelve la puntuación de la partida actual (o de la última).
+     * @return
+     */
+    public int getPuntuacion() {
+        return puntuacion;
+    }
+
+    /**
+     * Devuelve el número de ticks que se han simulado en la partida actual (o en la última).
+     * @return
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Devuelve los sprites con los que se dibujan las bolas y el protagonista.
+     * @return
+     */
+    public CacheSprites getCacheSprites() {
+        return cacheSprites;
     }
 
     /**
@@ -156,26 +1385,166 @@ public class Juego {
      * @return
      */
     public ObjetoAnimado[] getObjetosAnimados() {
-        return objetosAnimados.toArray(new ObjetoAnimado[objetosAnimados.size()]);
+        return objetosAnimados.toArray();
+    }
+
+    /**
+     * Devuelve cuántos objetos animados hay (el almacén de bolas cuenta como uno solo).
+     * Con getObjetoAnimado() se pueden recorrer sin crear ningún array.
+     * @return
+     */
+    public int getNumeroObjetosAnimados() {
+        return objetosAnimados.size();
+    }
+
+    /**
+     * Devuelve un objeto animado.
+     * @param i Posición del objeto, entre 0 y getNumeroObjetosAnimados()-1.
+     * @return
+     */
+    public ObjetoAnimado getObjetoAnimado(int i) {
+        return objetosAnimados.get(i);
+    }
+
+    /**
+     * Devuelve el tiempo de simulación (en segundos) que falta para que aparezca
+     * la siguiente bola.
+     * @return
+     */
+    public float getTiempoHastaSiguienteBola() {
+        return tiempoHastaSiguienteBola;
+    }
+
+    /**
+     * Devuelve las bolas que pueden estar tocando una zona rectangular de la
+     * pantalla. Sólo mira las celdas cercanas de la rejilla de colisiones, así
+     * que es mucho más rápido que recorrer todos los objetos animados. Puede
+     * devolver alguna bola que en realidad no toca la zona, así que después hay
+     * que hacer la comprobación exacta.
+     *
+     * <b>OJO</b>: la lista que se devuelve se reutiliza en la siguiente llamada
+     * a este método, así que no se debe guardar.
+     * @param izquierda Coordenada X izquierda de la zona.
+     * @param arriba Coordenada Y superior de la zona.
+     * @param derecha Coordenada X derecha de la zona.
+     * @param abajo Coordenada Y inferior de la zona.
+     * @return Lista de bolas cercanas a la zona.
+     */
+    public List<Bola> getBolasCercanas(float izquierda, float arriba, float derecha, float abajo) {
+        bolasCercanas.clear();
+        rejilla.buscar(izquierda, arriba, derecha, abajo, bolasCercanas);
+        return bolasCercanas;
     }
 
     /**
      * Pide que se elimine un objeto animado (por ejemplo, cuando una bola pequeña
-     * ha sido pinchada, se pide que se elimine.
+     * ha sido pinchada, se pide que se elimine. El objeto no desaparecerá de la
+     * lista hasta el final del tick.
      * @param obj Una referencia al objeto a eliminar.
      */
     public void eliminarObjetoAnimado(ObjetoAnimado obj) {
-        objetosAnimados.remove(obj);
+        if(objetosAnimados.eliminar(obj)) {
+            eliminadosEnEsteTick.add(obj);
+            if(obj instanceof Disparo) {
+                disparosSimultaneos[((Disparo) obj).getJugador()]--;
+            }
+        }
+    }
+
+    /**
+     * Lanza un gancho desde el suelo. El objeto Disparo se saca de la reserva
+     * de disparos, y volverá a ella cuando se elimine.
+     * @param posicionX Coordenada X desde donde se lanza el gancho.
+     * @param jugador Jugador que lo lanza.
+     */
+    public void lanzarDisparo(float posicionX, int jugador) {
+        Disparo d = reservaDisparos.obtener();
+        d.reiniciar(posicionX, jugador);
+        anyadirObjetoAnimado(d);
+        disparosSimultaneos[jugador]++;
+    }
+
+    /**
+     * Devuelve cuántos ganchos de un jugador hay en pantalla.
+     * @param jugador Número del jugador, empezando por 0.
+     * @return
+     */
+    public int getDisparos(int jugador) {
+        return disparosSimultaneos[jugador];
+    }
+
+    /**
+     * Devuelve los números aleatorios con los que los destellos eligen su color.
+     * @return
+     */
+    public Random getRandomDestellos() {
+        return randomDestellos;
+    }
+
+    /**
+     * Muestra un destello en un punto de la pantalla. El objeto Destello se saca
+     * de la reserva de destellos, y volverá a ella cuando se elimine.
+     * @param centroX Coordenada X del centro del destello.
+     * @param centroY Coordenada Y del centro del destello.
+     */
+    public void lanzarDestello(float centroX, float centroY) {
+        Destello d = reservaDestellos.obtener();
+        d.reiniciar(centroX, centroY);
+        anyadirObjetoAnimado(d);
+    }
+
+    /**
+     * Añade una nueva bola al juego (por ejemplo, cuando cae una del techo o
+     * cuando una bola se divide en dos al pincharla).
+     * @param centroX Coordenada X del centro.
+     * @param centroY Coordenada Y del centro.
+     * @param radio Radio de la bola.
+     * @param velocidadX Velocidad horizontal (en píxels/segundo).
+     * @param velocidadY Velocidad vertical (en píxels/segundo).
+     * @return La bola añadida.
+     */
+    public Bola anyadirBola(float centroX, float centroY, float radio, float velocidadX, float velocidadY) {
+        Bola b = bolas.anyadir(centroX, centroY, radio, velocidadX, velocidadY);
+        rejilla.insertar(b);
+        return b;
+    }
+
+    /**
+     * Elimina una bola del juego (por ejemplo, cuando una bola pequeña ha sido pinchada).
+     * @param b La bola a eliminar.
+     */
+    public void eliminarBola(Bola b) {
+        rejilla.eliminar(b);
+        bolas.eliminar(b);
+    }
+
+    /**
+     * Devuelve el número de bolas que hay en el juego.
+     * @return
+     */
+    public int getNumeroBolas() {
+        return bolas.getTotal();
+    }
+
+    /**
+     * Devuelve una de las bolas del juego.
+     * @param i Número de bola, entre 0 y getNumeroBolas()-1. Al eliminar bolas,
+     *        las demás pueden cambiar de número.
+     * @return
+     */
+    public Bola getBola(int i) {
+        return bolas.getBola(i);
     }
 
     /**
      * Pide que se añada un objeto animado a la lista (por ejemplo, cuando el
      * jugador lanza un disparo, éste es un objeto animado que se añade a esta
-     * lista para ser movido y dibujado junto con los otros)
+     * lista para ser movido y dibujado junto con los otros). El objeto no
+     * empezará a moverse hasta el siguiente tick.
      * @param obj Una referencia al objeto a añadir
      */
     public void anyadirObjetoAnimado(ObjetoAnimado obj) {
-        objetosAnimados.add(obj);
+        objetosAnimados.anyadir(obj);
     }
 
     /**
@@ -192,7 +1561,7 @@ public class Juego {
      * @return
      */
     public float getCoordenadaXMargenDerecho() {
-        return ventana.getAnchuraLienzo() - MARGEN;
+        return pantalla.getAnchuraLienzo() - MARGEN;
     }
     /**
      * Devuelve la coordenada X de la pared izquierda, donde las bolas rebotan,
@@ -208,7 +1577,7 @@ public class Juego {
      * @return
      */
     public float getCoordenadaYSuelo() {
-        return ventana.getAlturaLienzo() - MARGEN;
+        return pantalla.getAlturaLienzo() - MARGEN;
     }
 
     /**
@@ -216,15 +1585,17 @@ public class Juego {
      * en consecuencia (es decir, marque la partida como finalizada).
      */
     public void jugadorTocado() {
-        finDeJuego = true;
+        if(!invulnerable) {
+            finDeJuego = true;
+        }
     }
 
     /**
      * Muestra la pantalla de fin de juego.
      */
     public void finDeJuego() {
-        ventana.escribeTexto("Fin de Juego!", 120,200, 64, Color.green);
-        ventana.mostrarLienzo();
+        pantalla.escribeTexto("Fin de Juego!", 120,200, 64, Color.green);
+        pantalla.mostrarLienzo();
         //Hacemos que duerma unos tres segundos, para evitar que la pantalla
         //de fin de juego desaparezca demasiado rápido si el jugador
         //aprieta la barra espaciadora sin querer (porque, por ejemplo, estaba
@@ -235,22 +1606,23 @@ public class Juego {
             ex.printStackTrace();
         }
 
-        while(!ventana.isPulsadoEspacio()) {
-            // espera a que se pulse espacio para salir del mensaje de Fin de juego
-        }
+        // se descarta la pulsación que se haya hecho durante esos tres segundos,
+        // y se duerme hasta que se pulse espacio para salir del mensaje de Fin de juego
+        pantalla.actualizarTeclas(System.nanoTime());
+        pantalla.isPulsadoEspacio();
+        pantalla.esperarEspacio(0);
     }
 
     /**
      * Muestra la pantalla de presentación
      */
     public void presentacion() {
-        ventana.borrarLienzoOculto();
+        pantalla.borrarLienzoOculto();
 
-        ventana.escribeTexto("MOO Pang!", 150,150, 64, Color.red);
-        ventana.escribeTexto("Pulsa espacio para empezar", 180,420, 18, Color.white);
-        ventana.mostrarLienzo();
-        while(!ventana.isPulsadoEspacio()) {
-            // espera a que se pulse espacio para salir de la presentacion
-        }
+        pantalla.escribeTexto("MOO Pang!", 150,150, 64, Color.red);
+        pantalla.escribeTexto("Pulsa espacio para empezar", 180,420, 18, Color.white);
+        pantalla.mostrarLienzo();
+        // duerme hasta que se pulse espacio para salir de la presentacion
+        pantalla.esperarEspacio(0);
     }
 }
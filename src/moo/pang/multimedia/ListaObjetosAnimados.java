@@ -0,0 +1,165 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.util.Arrays;
+import moo.pang.objetosanimados.ObjetoAnimado;
+
+/**
+ * Lista de los objetos animados del juego, guardada en un array.
+ *
+ * Mientras el juego recorre la lista para mover los objetos, éstos pueden pedir
+ * que se añadan o se eliminen objetos (por ejemplo, un disparo que llega al
+ * techo pide que lo eliminen). Si se modificara la lista en ese momento, el
+ * recorrido se estropearía. Por eso, los cambios no se hacen en el momento, sino
+ * que se apuntan, y se aplican todos juntos al final del tick, en el método
+ * aplicarCambios().
+ *
+ * Cada objeto sabe en qué posición de la lista está (getPosicionEnLista()). Así,
+ * para eliminarlo no hay que buscarlo: basta con poner el último objeto de
+ * la lista en su lugar. Por tanto, el orden de la lista puede cambiar al
+ * eliminar objetos.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+class ListaObjetosAnimados {
+    /**
+     * Valor de getPosicionEnLista() para los objetos que se han pedido añadir
+     * pero todavía no están en la lista.
+     */
+    private static final int PENDIENTE = -2;
+
+    private ObjetoAnimado[] objetos = new ObjetoAnimado[32];
+    /**
+     * Para cada posición de la lista, indica si ese objeto se ha pedido eliminar.
+     */
+    private boolean[] paraEliminar = new boolean[32];
+    private int total = 0;
+
+    private ObjetoAnimado[] anyadidos = new ObjetoAnimado[16];
+    private int totalAnyadidos = 0;
+    private ObjetoAnimado[] eliminados = new ObjetoAnimado[16];
+    private int totalEliminados = 0;
+
+    /**
+     * Devuelve cuántos objetos hay en la lista (sin contar los cambios pendientes).
+     * @return
+     */
+    int size() {
+        return total;
+    }
+
+    /**
+     * Devuelve el objeto que está en una posición de la lista.
+     * @param i Posición entre 0 y size()-1.
+     * @return
+     */
+    ObjetoAnimado get(int i) {
+        return objetos[i];
+    }
+
+    /**
+     * Indica si el objeto de una posición de la lista se ha pedido eliminar
+     * (y, por tanto, desaparecerá al final del tick).
+     * @param i Posición entre 0 y size()-1.
+     * @return
+     */
+    boolean isParaEliminar(int i) {
+        return paraEliminar[i];
+    }
+
+    /**
+     * Apunta un objeto para añadirlo al final del tick.
+     * @param obj
+     */
+    void anyadir(ObjetoAnimado obj) {
+        if(totalAnyadidos == anyadidos.length) {
+            anyadidos = Arrays.copyOf(anyadidos, totalAnyadidos * 2);
+        }
+        obj.setPosicionEnLista(PENDIENTE);
+        anyadidos[totalAnyadidos++] = obj;
+    }
+
+    /**
+     * Apunta un objeto para eliminarlo al final del tick. Si ya se había
+     * pedido eliminar, o no está en la lista, no hace nada.
+     * @param obj
+     * @return true si el objeto se ha apuntado para eliminar.
+     */
+    boolean eliminar(ObjetoAnimado obj) {
+        int i = obj.getPosicionEnLista();
+        if(i == PENDIENTE) {
+            // se ha añadido y eliminado en el mismo tick: basta con no añadirlo
+            for(int j = 0; j < totalAnyadidos; j++) {
+                if(anyadidos[j] == obj) {
+                    anyadidos[j] = anyadidos[--totalAnyadidos];
+                    anyadidos[totalAnyadidos] = null;
+                    obj.setPosicionEnLista(-1);
+                    return true;
+                }
+            }
+            return false;
+        }
+        if(i < 0 || i >= total || objetos[i] != obj || paraEliminar[i]) {
+            return false;
+        }
+        paraEliminar[i] = true;
+        if(totalEliminados == eliminados.length) {
+            eliminados = Arrays.copyOf(eliminados, totalEliminados * 2);
+        }
+        eliminados[totalEliminados++] = obj;
+        return true;
+    }
+
+    /**
+     * Aplica todos los cambios pendientes: primero elimina los objetos que se
+     * han pedido eliminar, y después añade los que se han pedido añadir.
+     */
+    void aplicarCambios() {
+        for(int e = 0; e < totalEliminados; e++) {
+            ObjetoAnimado obj = eliminados[e];
+            int i = obj.getPosicionEnLista();
+            int ultimo = --total;
+            if(i != ultimo) {
+                objetos[i] = objetos[ultimo];
+                paraEliminar[i] = paraEliminar[ultimo];
+                objetos[i].setPosicionEnLista(i);
+            }
+            objetos[ultimo] = null;
+            paraEliminar[ultimo] = false;
+            obj.setPosicionEnLista(-1);
+            eliminados[e] = null;
+        }
+        totalEliminados = 0;
+
+        if(total + totalAnyadidos > objetos.length) {
+            int capacidad = Math.max(objetos.length * 2, total + totalAnyadidos);
+            objetos = Arrays.copyOf(objetos, capacidad);
+            paraEliminar = Arrays.copyOf(paraEliminar, capacidad);
+        }
+        for(int a = 0; a < totalAnyadidos; a++) {
+            anyadidos[a].setPosicionEnLista(total);
+            objetos[total++] = anyadidos[a];
+            anyadidos[a] = null;
+        }
+        totalAnyadidos = 0;
+    }
+
+    /**
+     * Devuelve un array nuevo con todos los objetos de la lista.
+     * @return
+     */
+    ObjetoAnimado[] toArray() {
+        return Arrays.copyOf(objetos, total);
+    }
+}
@@ -0,0 +1,106 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.io.PrintStream;
+
+/**
+ * Mide cuánto tarda cada tick de la simulación y cada fotograma de una partida
+ * (ver Juego.setMedidorRendimiento()), y cada cierto tiempo de partida escribe un resumen:
+ * cuántas bolas hay, fotogramas y ticks por segundo, y el tiempo medio (y
+ * máximo) de cada tick y de dibujar cada fotograma. Sirve para ver, con el modo
+ * de prueba de carga (Juego.setRafagas()), a partir de cuántas bolas el juego
+ * deja de ir fluido, y si lo que se hace lento es la simulación o el dibujo.
+ *
+ * Los resúmenes se escriben según el tiempo simulado (para que con una
+ * PantallaVirtual, que va tan rápido como puede, salgan los mismos), pero los
+ * tiempos se miden con el reloj del sistema: así, con una PantallaVirtual los
+ * ticks por segundo son los que el ordenador es capaz de simular.
+ *
+ * Los ticks y los fotogramas se pueden apuntar desde hilos distintos (cuando
+ * la escena se pinta en otro hilo, ver Juego.setHiloDibujo()).
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class MedidorRendimiento {
+    private final PrintStream salida;
+    private final float segundosPorResumen;
+
+    /**
+     * Instante (de reloj) y segundo de partida en que empezó el resumen actual,
+     * y lo que se ha medido desde entonces.
+     */
+    private long inicioResumen = -1;
+    private float inicioPartidaResumen = 0;
+    private int ticks, fotogramas;
+    private long nanosTicks, maximoTick, nanosFotogramas;
+
+    /**
+     * Crea un medidor.
+     * @param salida Dónde se escriben los resúmenes (por ejemplo, System.out).
+     * @param segundosPorResumen Cada cuántos segundos de partida se escribe un resumen.
+     */
+    public MedidorRendimiento(PrintStream salida, float segundosPorResumen) {
+        this.salida = salida;
+        this.segundosPorResumen = segundosPorResumen;
+    }
+
+    /**
+     * Apunta lo que ha tardado un tick de la simulación.
+     * @param nanos Nanosegundos.
+     */
+    public synchronized void tick(long nanos) {
+        ticks++;
+        nanosTicks += nanos;
+        if(nanos > maximoTick) {
+            maximoTick = nanos;
+        }
+    }
+
+    /**
+     * Apunta lo que ha tardado en dibujarse y mostrarse un fotograma y, si ya
+     * toca, escribe el resumen.
+     * @param nanos Nanosegundos.
+     * @param segundosSimulados Segundos de partida simulados hasta ahora.
+     * @param bolas Número de bolas en el juego.
+     * @param objetos Número de objetos animados en el juego (el almacén de
+     *        bolas cuenta como uno solo).
+     */
+    public synchronized void fotograma(long nanos, float segundosSimulados, int bolas, int objetos) {
+        long ahora = System.nanoTime();
+        if(inicioResumen < 0 || segundosSimulados < inicioPartidaResumen) {
+            // primer fotograma, o ha empezado una partida nueva
+            inicioResumen = ahora - nanos;
+            inicioPartidaResumen = 0;
+        }
+        fotogramas++;
+        nanosFotogramas += nanos;
+        if(segundosSimulados - inicioPartidaResumen < segundosPorResumen) {
+            return;
+        }
+        double segundos = (ahora - inicioResumen) / 1e9;
+        salida.println(String.format("t=%.1fs bolas=%d objetos=%d fps=%.1f ticks/s=%.1f"
+                + " tick=%.3fms (max %.3fms) dibujo=%.3fms",
+                segundosSimulados, bolas, objetos,
+                fotogramas / segundos, ticks / segundos,
+                ticks == 0 ? 0 : nanosTicks / 1e6 / ticks, maximoTick / 1e6,
+                nanosFotogramas / 1e6 / fotogramas));
+        inicioResumen = ahora;
+        inicioPartidaResumen = segundosSimulados;
+        ticks = 0;
+        fotogramas = 0;
+        nanosTicks = 0;
+        maximoTick = 0;
+        nanosFotogramas = 0;
+    }
+}
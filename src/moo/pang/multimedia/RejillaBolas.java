@@ -0,0 +1,190 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.util.Arrays;
+import java.util.List;
+import moo.pang.objetosanimados.Bola;
+
+/**
+ * Divide la pantalla en una rejilla de celdas cuadradas, y guarda en cada celda
+ * las bolas cuyo centro está dentro de ella. Así, para saber qué bolas pueden
+ * chocar con un gancho o con el protagonista, no hace falta mirar todas las bolas
+ * del juego: basta con mirar las de las celdas cercanas.
+ *
+ * Cada bola se guarda sólo en la celda de su centro. Para no perder bolas grandes
+ * cuyo centro está en una celda lejana pero que sobresalen hasta la zona buscada,
+ * las búsquedas amplían la zona en el radio máximo que puede tener una bola, y
+ * en lo máximo que se ha movido una bola en el último tick (para las
+ * comprobaciones de colisión barridas, ver Barrido).
+ *
+ * Las bolas de cada celda se guardan como listas enlazadas sobre arrays
+ * (cabeza de cada celda y "siguiente" de cada entrada), para no crear objetos
+ * cada vez que la rejilla se vacía y se vuelve a llenar.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+class RejillaBolas {
+    /**
+     * Medida (en píxels) del lado de cada celda.
+     */
+    private static final float TAMANYO_CELDA = 64;
+
+    private final float origenX, origenY;
+    private final int columnas, filas;
+    /**
+     * Distancia que se añade a cada lado de la zona buscada.
+     */
+    private final float ampliacion;
+
+    /**
+     * Lo máximo que se ha movido (en X o en Y) alguna de las bolas insertadas
+     * durante su último tick. Las búsquedas también se amplían con esta distancia,
+     * para encontrar las bolas que han pasado por la zona aunque ya no estén en ella.
+     */
+    private float desplazamientoMaximo = 0;
+
+    /**
+     * Para cada celda, índice de la primera entrada de su lista (o -1 si está vacía).
+     */
+    private final int[] cabeza;
+    /**
+     * Para cada entrada, índice de la siguiente entrada de la misma celda (o -1).
+     */
+    private int[] siguiente = new int[64];
+    /**
+     * Bola guardada en cada entrada.
+     */
+    private Bola[] bolas = new Bola[64];
+    /**
+     * Número de entradas usadas desde la última vez que se vació la rejilla.
+     */
+    private int entradas = 0;
+
+    /**
+     * Crea una rejilla que cubre una zona rectangular de la pantalla. Las bolas
+     * que estén fuera de esa zona (por ejemplo, las que están entrando por el techo)
+     * se guardan en la celda del borde más cercana.
+     * @param izquierda Coordenada X izquierda de la zona.
+     * @param arriba Coordenada Y superior de la zona.
+     * @param derecha Coordenada X derecha de la zona.
+     * @param abajo Coordenada Y inferior de la zona.
+     * @param radioMaximo Radio máximo que puede tener una bola.
+     */
+    RejillaBolas(float izquierda, float arriba, float derecha, float abajo, float radioMaximo) {
+        origenX = izquierda;
+        origenY = arriba;
+        columnas = Math.max(1, (int) Math.ceil((derecha - izquierda) / TAMANYO_CELDA));
+        filas = Math.max(1, (int) Math.ceil((abajo - arriba) / TAMANYO_CELDA));
+        ampliacion = radioMaximo;
+        cabeza = new int[columnas * filas];
+        vaciar();
+    }
+
+    /**
+     * Quita todas las bolas de la rejilla.
+     */
+    void vaciar() {
+        Arrays.fill(cabeza, -1);
+        Arrays.fill(bolas, 0, entradas, null);
+        entradas = 0;
+        desplazamientoMaximo = 0;
+    }
+
+    /**
+     * Añade una bola a la celda que corresponde a su centro.
+     * @param b
+     */
+    void insertar(Bola b) {
+        if(entradas == bolas.length) {
+            bolas = Arrays.copyOf(bolas, entradas * 2);
+            siguiente = Arrays.copyOf(siguiente, entradas * 2);
+        }
+        int celda = celda(b.getCentroX(), b.getCentroY());
+        bolas[entradas] = b;
+        siguiente[entradas] = cabeza[celda];
+        cabeza[celda] = entradas;
+        entradas++;
+        desplazamientoMaximo = Math.max(desplazamientoMaximo, Math.max(
+                Math.abs(b.getCentroX() - b.getAnteriorX()), Math.abs(b.getCentroY() - b.getAnteriorY())));
+    }
+
+    /**
+     * Quita una bola de la rejilla. Primero la busca en la celda de su centro y,
+     * si se ha movido desde que se insertó (por ejemplo, al pincharse), en todas.
+     * @param b
+     */
+    void eliminar(Bola b) {
+        if(!eliminarDeCelda(celda(b.getCentroX(), b.getCentroY()), b)) {
+            for(int c = 0; c < cabeza.length; c++) {
+                if(eliminarDeCelda(c, b)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean eliminarDeCelda(int celda, Bola b) {
+        int anterior = -1;
+        for(int e = cabeza[celda]; e != -1; e = siguiente[e]) {
+            if(bolas[e] == b) {
+                if(anterior == -1) {
+                    cabeza[celda] = siguiente[e];
+                } else {
+                    siguiente[anterior] = siguiente[e];
+                }
+                bolas[e] = null;
+                return true;
+            }
+            anterior = e;
+        }
+        return false;
+    }
+
+    /**
+     * Busca las bolas que pueden tocar una zona rectangular de la pantalla.
+     * Puede devolver bolas que en realidad no la tocan: quien llame a este método
+     * debe hacer después la comprobación exacta.
+     * @param izquierda Coordenada X izquierda de la zona.
+     * @param arriba Coordenada Y superior de la zona.
+     * @param derecha Coordenada X derecha de la zona.
+     * @param abajo Coordenada Y inferior de la zona.
+     * @param resultado Lista donde se añadirán las bolas encontradas.
+     */
+    void buscar(float izquierda, float arriba, float derecha, float abajo, List<Bola> resultado) {
+        float margen = ampliacion + desplazamientoMaximo;
+        int colIzq = columna(izquierda - margen), colDer = columna(derecha + margen);
+        int filArr = fila(arriba - margen), filAbj = fila(abajo + margen);
+        for(int f = filArr; f <= filAbj; f++) {
+            for(int c = colIzq; c <= colDer; c++) {
+                for(int e = cabeza[f * columnas + c]; e != -1; e = siguiente[e]) {
+                    resultado.add(bolas[e]);
+                }
+            }
+        }
+    }
+
+    private int celda(float x, float y) {
+        return fila(y) * columnas + columna(x);
+    }
+
+    private int columna(float x) {
+        int c = (int) Math.floor((x - origenX) / TAMANYO_CELDA);
+        return c < 0 ? 0 : (c >= columnas ? columnas - 1 : c);
+    }
+
+    private int fila(float y) {
+        int f = (int) Math.floor((y - origenY) / TAMANYO_CELDA);
+        return f < 0 ? 0 : (f >= filas ? filas - 1 : f);
+    }
+}
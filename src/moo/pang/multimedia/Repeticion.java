@@ -0,0 +1,154 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lee una partida grabada con GrabadoraControles, y da al juego los mismos
+ * controles, tick a tick, que se pulsaron al grabarla. Si al juego también se
+ * le dan las mismas semillas y los mismos ticks por segundo (que están en la
+ * cabecera del fichero), la partida es exactamente igual: las bolas salen en
+ * el mismo sitio, se mueven igual, y la puntuación final es la misma.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class Repeticion implements FuenteControles {
+    private final DataInputStream entrada;
+    private final long semillaJuego, semillaDestellos;
+    private final int ticksPorSegundo;
+
+    /**
+     * Controles del tramo actual, y ticks que le quedan. Cuando no quedan
+     * ticks, es que la grabación se ha acabado.
+     */
+    private int controlesTramo = 0;
+    private long ticksTramo = 0;
+
+    /**
+     * Abre una grabación y lee su cabecera.
+     * @param entrada Fichero con la grabación.
+     * @throws IOException Si no se puede leer, o no es una grabación de MOOPang.
+     */
+    public Repeticion(InputStream entrada) throws IOException {
+        this.entrada = new DataInputStream(new BufferedInputStream(entrada));
+        if(this.entrada.readInt() != GrabadoraControles.MAGICO) {
+            throw new IOException("El fichero no es una partida grabada de MOOPang");
+        }
+        int version = this.entrada.readUnsignedByte();
+        if(version != GrabadoraControles.VERSION) {
+            throw new IOException("Versión de grabación desconocida: " + version);
+        }
+        semillaJuego = this.entrada.readLong();
+        semillaDestellos = this.entrada.readLong();
+        ticksPorSegundo = this.entrada.readInt();
+        leerTramo();
+    }
+
+    public long getSemillaJuego() {
+        return semillaJuego;
+    }
+
+    public long getSemillaDestellos() {
+        return semillaDestellos;
+    }
+
+    public int getTicksPorSegundo() {
+        return ticksPorSegundo;
+    }
+
+    /**
+     * Prepara un juego para repetir la partida: le pone las semillas, los ticks
+     * por segundo y esta repetición como fuente de controles, y hace que mueva
+     * las bolas igual que al grabarla (ver Juego.setAvanceRapido()). Después,
+     * basta con llamar a su método partida() o partidaRapida().
+     * @param elJuego
+     */
+    public void preparar(Juego elJuego) {
+        elJuego.setSemillas(semillaJuego, semillaDestellos);
+        elJuego.setFrecuenciaSimulacion(ticksPorSegundo);
+        elJuego.setFuenteControles(this);
+        elJuego.setAvanceRapido(true);
+    }
+
+    public int siguienteTick() {
+        if(ticksTramo == 0) {
+            return 0;
+        }
+        int controles = controlesTramo;
+        ticksTramo--;
+        if(ticksTramo == 0) {
+            // se lee ya el siguiente tramo, para que isAcabada() sea true justo
+            // después del último tick
+            leerTramo();
+        }
+        return controles;
+    }
+
+    public boolean isAcabada() {
+        return ticksTramo == 0;
+    }
+
+    public long saltarTicksIguales(int controles, long maximo) {
+        if(controles != controlesTramo) {
+            return 0;
+        }
+        // el último tick del tramo no se salta, para que al darlo se lea el
+        // siguiente tramo (o se vea que la grabación se ha acabado)
+        long ticks = Math.max(0, Math.min(maximo, ticksTramo - 1));
+        ticksTramo -= ticks;
+        return ticks;
+    }
+
+    /**
+     * Lee el siguiente tramo de ticks con los mismos controles. Si no hay más,
+     * deja ticksTramo a 0.
+     */
+    private void leerTramo() {
+        try {
+            int c = entrada.readUnsignedByte();
+            if(c == GrabadoraControles.FIN) {
+                cerrar();
+                return;
+            }
+            long n = 0;
+            int desplazamiento = 0;
+            int b;
+            do {
+                b = entrada.readUnsignedByte();
+                n |= (long) (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while((b & 0x80) != 0);
+            controlesTramo = c;
+            ticksTramo = n;
+        } catch (EOFException ex) {
+            // grabación cortada (por ejemplo, el programa se cerró a media partida)
+            cerrar();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error leyendo la grabación", ex);
+        }
+    }
+
+    private void cerrar() {
+        ticksTramo = 0;
+        try {
+            entrada.close();
+        } catch (IOException ex) {
+            // ya no se va a leer nada más: no importa
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.util.Arrays;
+
+/**
+ * Reserva de objetos reciclables. En vez de crear un objeto nuevo cada vez que
+ * se necesita (por ejemplo, cada vez que se dispara un gancho) y dejar que el
+ * recolector de basura elimine los viejos, los objetos que ya no se usan se
+ * devuelven a la reserva, y se vuelven a usar la próxima vez que se necesiten.
+ *
+ * Así, una vez la partida lleva un rato en marcha, ya no se crean objetos nuevos,
+ * y el recolector de basura no tiene que parar el juego para limpiar.
+ *
+ * Las subclases sólo tienen que decir cómo se crea un objeto nuevo cuando la
+ * reserva está vacía.
+ *
+ * @param <T> Tipo de los objetos de la reserva.
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+abstract class Reserva<T> {
+    private Object[] libres = new Object[16];
+    private int totalLibres = 0;
+
+    /**
+     * Crea un objeto nuevo, cuando no queda ninguno libre en la reserva.
+     * @return
+     */
+    protected abstract T crear();
+
+    /**
+     * Devuelve un objeto de la reserva. Si no queda ninguno libre, lo crea.
+     * Quien lo obtenga debe volver a inicializarlo, ya que puede tener
+     * los datos de la última vez que se usó.
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    T obtener() {
+        if(totalLibres == 0) {
+            return crear();
+        }
+        T obj = (T) libres[--totalLibres];
+        libres[totalLibres] = null;
+        return obj;
+    }
+
+    /**
+     * Devuelve un objeto a la reserva, para que se pueda volver a usar.
+     * @param obj
+     */
+    void liberar(T obj) {
+        if(totalLibres == libres.length) {
+            libres = Arrays.copyOf(libres, totalLibres * 2);
+        }
+        libres[totalLibres++] = obj;
+    }
+}
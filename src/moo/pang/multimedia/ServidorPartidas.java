@@ -0,0 +1,549 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.multimedia;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import moo.multimedia.Histograma;
+import moo.multimedia.PantallaVirtual;
+
+/**
+ * Servidor de partidas de dos jugadores por la red. El servidor es el que manda:
+ * simula todas las partidas, y los clientes (ver ClienteRed) sólo le envían
+ * los controles que pulsan en cada tick y dibujan lo que les dice.
+ *
+ * Todo pasa en un solo hilo: un Selector atiende las conexiones sin bloquearse
+ * nunca, y entre una espera y otra, cuando toca, se simula un tick de todas las
+ * partidas. Los clientes se emparejan por orden de llegada, y cada pareja
+ * juega su propia partida (un Juego de dos jugadores sobre una PantallaVirtual).
+ *
+ * En cada tick, cada jugador recibe una instantánea de su partida, escrita con
+ * su propio CodificadorInstantaneas (cada cliente confirma las instantáneas a
+ * su ritmo). Todo lo que se envía a un cliente en un tick se junta en su buffer
+ * de salida y se escribe de una sola vez. Los buffers de entrada y de salida de
+ * las conexiones salen de una Reserva, y vuelven a ella al cerrarse.
+ *
+ * Si un cliente no envía a tiempo los controles de un tick, su protagonista
+ * sigue con los últimos que envió; si envía demasiados, se descartan los más
+ * antiguos. Si un cliente no lee lo bastante rápido y no caben más instantáneas
+ * en su buffer de salida, se descartan (las siguientes se escriben respecto a
+ * la última que confirmó, así que no pasa nada).
+ *
+ * Mensajes (los números de más de un byte, en big-endian; varint como en
+ * CodificadorInstantaneas):
+ * <pre>
+ *   int     longitud del resto del mensaje
+ *   byte    tipo
+ *   BIENVENIDA (al cliente, al empezar la partida):
+ *           byte jugador, int ticks por segundo,
+ *           float pared izquierda, float pared derecha
+ *   ESTADO (al cliente, en cada tick):
+ *           varint secuencia de los últimos controles suyos aplicados,
+ *           instantánea (ver CodificadorInstantaneas) hasta el final
+ *   FIN (al cliente, al acabar la partida): int puntuación
+ *   CONTROLES (al servidor, en cada tick del cliente):
+ *           varint secuencia (1, 2, 3...), byte controles (bits Juego.CONTROL_...),
+ *           varint último tick recibido + 1 (0 si todavía ninguno)
+ * </pre>
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class ServidorPartidas {
+    static final int BIENVENIDA = 1, ESTADO = 2, FIN = 3, CONTROLES = 4;
+    /**
+     * Tamaño de los buffers de entrada y salida de cada conexión.
+     */
+    static final int TAMANYO_BUFFER = 64 * 1024;
+    /**
+     * Número máximo de ticks de controles de un cliente que se guardan sin aplicar.
+     */
+    private static final int MAXIMO_CONTROLES_PENDIENTES = 8;
+    /**
+     * Si el servidor va con mucho retraso, no intenta recuperar más de este tiempo
+     * (en nanosegundos): se salta los ticks que faltan.
+     */
+    private static final long MAXIMO_RETRASO = 250000000L;
+
+    /**
+     * Un cliente conectado.
+     */
+    private static class Conexion {
+        private final SocketChannel canal;
+        private final SelectionKey clave;
+        private ByteBuffer entrada, salida;
+        private Partida partida = null;
+        private int jugador;
+        private final CodificadorInstantaneas codificador = new CodificadorInstantaneas();
+        /**
+         * Controles recibidos y todavía no aplicados (una cola circular), y los
+         * últimos aplicados, con su secuencia.
+         */
+        private final int[] pendientes = new int[MAXIMO_CONTROLES_PENDIENTES];
+        private int primerPendiente = 0, totalPendientes = 0;
+        private long ultimaRecibida = 0, ultimaAplicada = 0;
+        private int controles = 0;
+        private boolean cerrarAlEnviar = false;
+
+        private Conexion(SocketChannel canal, SelectionKey clave) {
+            this.canal = canal;
+            this.clave = clave;
+        }
+
+        /**
+         * Aplica los siguientes controles recibidos, si hay. Si no, se quedan los últimos.
+         */
+        private void siguientesControles() {
+            if(totalPendientes > 0) {
+                controles = pendientes[primerPendiente];
+                primerPendiente = (primerPendiente + 1) % pendientes.length;
+                totalPendientes--;
+                ultimaAplicada = ultimaRecibida - totalPendientes;
+            }
+        }
+    }
+
+    /**
+     * Una partida entre dos conexiones. Es también la fuente de controles de
+     * su juego: en cada tick junta los controles de los dos jugadores.
+     */
+    private static class Partida implements FuenteControles {
+        private final Juego juego;
+        private final Conexion[] jugadores;
+        private final Instantanea instantanea = new Instantanea();
+        private boolean abandonada = false;
+
+        private Partida(Juego juego, Conexion[] jugadores) {
+            this.juego = juego;
+            this.jugadores = jugadores;
+        }
+
+        public int siguienteTick() {
+            int controles = 0;
+            for(int j = 0; j < jugadores.length; j++) {
+                jugadores[j].siguientesControles();
+                controles |= jugadores[j].controles << (j * Juego.BITS_POR_JUGADOR);
+            }
+            return controles;
+        }
+
+        public long saltarTicksIguales(int controles, long maximo) {
+            // no se sabe qué pulsarán los jugadores
+            return 0;
+        }
+
+        public boolean isAcabada() {
+            return abandonada;
+        }
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel canalServidor;
+    private final int ticksPorSegundo;
+    private final Reserva<ByteBuffer> reservaBuffers = new Reserva<ByteBuffer>() {
+        protected ByteBuffer crear() {
+            return ByteBuffer.allocateDirect(TAMANYO_BUFFER);
+        }
+    };
+    private final List<Conexion> conexiones = new ArrayList<Conexion>();
+    private final List<Partida> partidas = new ArrayList<Partida>();
+    /**
+     * Cliente que espera a que llegue otro para empezar una partida.
+     */
+    private Conexion esperando = null;
+    private volatile boolean parado = false;
+
+    private float duracionMaxima = 0;
+    private boolean invulnerable = false;
+
+    /**
+     * Estadísticas: tiempo entre el principio de un tick y el del siguiente, y
+     * lo que se tarda en simular un tick de todas las partidas y enviarlo (en
+     * nanosegundos), y bytes enviados y recibidos. Se vacían en cada resumen.
+     */
+    private final Histograma intervalos = new Histograma(), duraciones = new Histograma();
+    private long bytesEnviados = 0, bytesRecibidos = 0;
+    private long ticks = 0, partidasJugadas = 0, estadosDescartados = 0;
+    private PrintStream salidaResumen = null;
+    private float segundosPorResumen = 5;
+
+    /**
+     * Abre el servidor.
+     * @param direccion Dirección y puerto donde se aceptan conexiones (con el
+     *        puerto 0, se elige uno libre; ver getPuerto()).
+     * @param ticksPorSegundo Ticks por segundo de las partidas.
+     * @throws IOException
+     */
+    public ServidorPartidas(InetSocketAddress direccion, int ticksPorSegundo) throws IOException {
+        this.ticksPorSegundo = ticksPorSegundo;
+        selector = Selector.open();
+        canalServidor = ServerSocketChannel.open();
+        canalServidor.bind(direccion);
+        canalServidor.configureBlocking(false);
+        canalServidor.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Puerto donde el servidor acepta conexiones.
+     */
+    public int getPuerto() {
+        return canalServidor.socket().getLocalPort();
+    }
+
+    /**
+     * Las partidas acaban tras unos segundos de simulación (0 = sin límite).
+     */
+    public void setDuracionMaxima(float segundos) {
+        this.duracionMaxima = segundos;
+    }
+
+    /**
+     * Si es true, las bolas no matan a los jugadores (para las pruebas).
+     */
+    public void setInvulnerable(boolean invulnerable) {
+        this.invulnerable = invulnerable;
+    }
+
+    /**
+     * Hace que cada cierto tiempo se escriba un resumen (ver escribirResumen()).
+     * @param salida Dónde se escribe, o null para no escribirlo.
+     * @param segundosPorResumen Cada cuántos segundos de reloj.
+     */
+    public void setResumen(PrintStream salida, float segundosPorResumen) {
+        this.salidaResumen = salida;
+        this.segundosPorResumen = segundosPorResumen;
+    }
+
+    /**
+     * Atiende las conexiones y simula las partidas hasta que se llama a parar().
+     * Al acabar, cierra todas las conexiones.
+     * @throws IOException
+     */
+    public void ejecutar() throws IOException {
+        long nanosPorTick = 1000000000L / ticksPorSegundo;
+        long siguienteTick = System.nanoTime(), anteriorTick = -1;
+        long inicioResumen = siguienteTick;
+        while(!parado) {
+            long espera = siguienteTick - System.nanoTime();
+            if(espera > 0) {
+                selector.select(Math.max(1, espera / 1000000));
+            } else {
+                selector.selectNow();
+            }
+            atender();
+            long ahora = System.nanoTime();
+            if(ahora - siguienteTick < 0) {
+                continue;
+            }
+            if(anteriorTick >= 0) {
+                intervalos.apuntar(ahora - anteriorTick);
+            }
+            anteriorTick = ahora;
+            simularTick();
+            duraciones.apuntar(System.nanoTime() - ahora);
+            siguienteTick += nanosPorTick;
+            if(ahora - siguienteTick > MAXIMO_RETRASO) {
+                siguienteTick = ahora;
+            }
+            if(salidaResumen != null && ahora - inicioResumen >= segundosPorResumen * 1e9) {
+                escribirResumen(salidaResumen, (ahora - inicioResumen) / 1e9);
+                inicioResumen = ahora;
+            }
+        }
+        for(int i = conexiones.size() - 1; i >= 0; i--) {
+            cerrar(conexiones.get(i));
+        }
+        canalServidor.close();
+        selector.close();
+    }
+
+    /**
+     * Hace que ejecutar() acabe. Se puede llamar desde cualquier hilo.
+     */
+    public void parar() {
+        parado = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Atiende las conexiones que están listas: acepta las nuevas, lee los
+     * controles que han llegado y sigue escribiendo lo que no se pudo enviar.
+     */
+    private void atender() throws IOException {
+        Iterator<SelectionKey> listas = selector.selectedKeys().iterator();
+        while(listas.hasNext()) {
+            SelectionKey clave = listas.next();
+            listas.remove();
+            if(!clave.isValid()) {
+                continue;
+            }
+            if(clave.isAcceptable()) {
+                aceptar();
+                continue;
+            }
+            Conexion c = (Conexion) clave.attachment();
+            try {
+                if(clave.isReadable()) {
+                    leer(c);
+                }
+                if(clave.isValid() && clave.isWritable()) {
+                    enviar(c);
+                }
+            } catch(IOException ex) {
+                cerrar(c);
+            }
+        }
+    }
+
+    private void aceptar() throws IOException {
+        SocketChannel canal;
+        while((canal = canalServidor.accept()) != null) {
+            canal.configureBlocking(false);
+            canal.socket().setTcpNoDelay(true);
+            Conexion c = new Conexion(canal, canal.register(selector, SelectionKey.OP_READ));
+            c.clave.attach(c);
+            c.entrada = reservaBuffers.obtener();
+            c.entrada.clear();
+            c.salida = reservaBuffers.obtener();
+            c.salida.clear();
+            conexiones.add(c);
+            if(esperando == null) {
+                esperando = c;
+            } else {
+                empezarPartida(esperando, c);
+                esperando = null;
+            }
+        }
+    }
+
+    private void empezarPartida(Conexion primero, Conexion segundo) {
+        Juego juego = new Juego(new PantallaVirtual(640, 480));
+        juego.setFrecuenciaSimulacion(ticksPorSegundo);
+        juego.setJugadores(2);
+        juego.setHilosSimulacion(1);
+        juego.setDuracionMaxima(duracionMaxima);
+        juego.setInvulnerable(invulnerable);
+        Partida partida = new Partida(juego, new Conexion[] {primero, segundo});
+        juego.setFuenteControles(partida);
+        juego.empezarPartida();
+        partidas.add(partida);
+        partidasJugadas++;
+        for(int j = 0; j < partida.jugadores.length; j++) {
+            Conexion c = partida.jugadores[j];
+            c.partida = partida;
+            c.jugador = j;
+            ByteBuffer s = c.salida;
+            s.putInt(1 + 1 + 4 + 4 + 4);
+            s.put((byte) BIENVENIDA);
+            s.put((byte) j);
+            s.putInt(ticksPorSegundo);
+            s.putFloat(juego.getCoordenadaXMargenIzquierdo());
+            s.putFloat(juego.getCoordenadaXMargenDerecho());
+        }
+    }
+
+    /**
+     * Lee lo que ha llegado de un cliente, y procesa los mensajes completos.
+     */
+    private void leer(Conexion c) throws IOException {
+        int leidos = c.canal.read(c.entrada);
+        if(leidos < 0) {
+            cerrar(c);
+            return;
+        }
+        bytesRecibidos += leidos;
+        ByteBuffer e = c.entrada;
+        e.flip();
+        while(e.remaining() >= 4) {
+            int longitud = e.getInt(e.position());
+            if(longitud < 1 || longitud > TAMANYO_BUFFER - 4) {
+                throw new IOException("Longitud de mensaje incorrecta: " + longitud);
+            }
+            if(e.remaining() < 4 + longitud) {
+                break;
+            }
+            e.getInt();
+            int fin = e.position() + longitud;
+            int limite = e.limit();
+            // el mensaje no se puede leer más allá de su longitud
+            e.limit(fin);
+            long secuencia, confirmado;
+            int controles;
+            try {
+                if(e.get() != CONTROLES) {
+                    throw new IOException("Mensaje desconocido");
+                }
+                secuencia = CodificadorInstantaneas.leerVarint(e);
+                controles = e.get() & 0xFF;
+                confirmado = CodificadorInstantaneas.leerVarint(e) - 1;
+            } catch(RuntimeException ex) {
+                // mensaje más corto de lo que debe, o un número incorrecto
+                throw new IOException("Mensaje incorrecto", ex);
+            }
+            e.limit(limite);
+            e.position(fin);
+            recibirControles(c, secuencia, controles);
+            c.codificador.confirmar(confirmado);
+        }
+        e.compact();
+    }
+
+    private static void recibirControles(Conexion c, long secuencia, int controles) {
+        if(secuencia <= c.ultimaRecibida) {
+            return;
+        }
+        if(c.totalPendientes == c.pendientes.length) {
+            // demasiados: se descarta el más antiguo
+            c.primerPendiente = (c.primerPendiente + 1) % c.pendientes.length;
+            c.totalPendientes--;
+        }
+        c.pendientes[(c.primerPendiente + c.totalPendientes) % c.pendientes.length] = controles;
+        c.totalPendientes++;
+        c.ultimaRecibida = secuencia;
+    }
+
+    /**
+     * Simula un tick de todas las partidas, pone en el buffer de salida de cada
+     * cliente su instantánea y, al final, envía a cada cliente todo lo suyo.
+     */
+    private void simularTick() {
+        ticks++;
+        for(int i = partidas.size() - 1; i >= 0; i--) {
+            Partida p = partidas.get(i);
+            Juego juego = p.juego;
+            juego.nuevoTickDeSimulacion();
+            p.instantanea.capturar(juego);
+            for(Conexion c : p.jugadores) {
+                if(c.canal.isOpen()) {
+                    anyadirEstado(c, p.instantanea);
+                }
+            }
+            if(juego.isPartidaAcabada()) {
+                juego.acabarPartida();
+                partidas.remove(i);
+                for(Conexion c : p.jugadores) {
+                    c.partida = null;
+                    if(c.canal.isOpen() && c.salida.remaining() >= 9) {
+                        c.salida.putInt(1 + 4);
+                        c.salida.put((byte) FIN);
+                        c.salida.putInt(juego.getPuntuacion());
+                    }
+                    c.cerrarAlEnviar = true;
+                }
+            }
+        }
+        for(int i = conexiones.size() - 1; i >= 0; i--) {
+            Conexion c = conexiones.get(i);
+            try {
+                enviar(c);
+            } catch(IOException ex) {
+                cerrar(c);
+            }
+        }
+    }
+
+    private void anyadirEstado(Conexion c, Instantanea instantanea) {
+        ByteBuffer datos = c.codificador.codificar(instantanea);
+        ByteBuffer s = c.salida;
+        // 4 de la longitud, 1 del tipo y como mucho 10 de la secuencia
+        if(s.remaining() < 4 + 1 + 10 + datos.remaining()) {
+            estadosDescartados++;
+            return;
+        }
+        int inicio = s.position();
+        s.putInt(0);
+        s.put((byte) ESTADO);
+        CodificadorInstantaneas.escribirVarint(s, c.ultimaAplicada);
+        s.put(datos);
+        s.putInt(inicio, s.position() - inicio - 4);
+    }
+
+    /**
+     * Escribe lo que haya en el buffer de salida de un cliente. Si no cabe todo,
+     * se le pide al selector que avise cuando se pueda seguir escribiendo.
+     */
+    private void enviar(Conexion c) throws IOException {
+        ByteBuffer s = c.salida;
+        if(s.position() > 0) {
+            s.flip();
+            bytesEnviados += c.canal.write(s);
+            s.compact();
+        }
+        if(s.position() > 0) {
+            c.clave.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else if(c.cerrarAlEnviar) {
+            cerrar(c);
+        } else {
+            c.clave.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void cerrar(Conexion c) {
+        if(!conexiones.remove(c)) {
+            return;
+        }
+        try {
+            c.canal.close();
+        } catch(IOException ex) {
+            // ya está cerrada
+        }
+        if(esperando == c) {
+            esperando = null;
+        }
+        if(c.partida != null) {
+            // el otro jugador ya no tiene con quién jugar
+            c.partida.abandonada = true;
+        }
+        reservaBuffers.liberar(c.entrada);
+        reservaBuffers.liberar(c.salida);
+        c.entrada = c.salida = null;
+    }
+
+    /**
+     * Escribe un resumen desde el último: partidas y clientes, ticks por
+     * segundo, intervalo entre ticks y tiempo de cada tick (percentiles 50 y 99
+     * y máximo, en milisegundos) y bytes por segundo enviados y recibidos por
+     * cada cliente. Después vacía las estadísticas.
+     * @param salida
+     * @param segundos Segundos desde el último resumen.
+     */
+    public void escribirResumen(PrintStream salida, double segundos) {
+        int clientes = Math.max(1, conexiones.size());
+        salida.println(String.format("partidas=%d clientes=%d ticks/s=%.1f"
+                + " intervalo=%.2f/%.2f/%.2fms tick=%.3f/%.3f/%.3fms"
+                + " enviado=%.0f B/s recibido=%.0f B/s por cliente descartados=%d",
+                partidas.size(), conexiones.size(), intervalos.getTotal() / segundos,
+                intervalos.getPercentil(50) / 1e6, intervalos.getPercentil(99) / 1e6, intervalos.getMaximo() / 1e6,
+                duraciones.getPercentil(50) / 1e6, duraciones.getPercentil(99) / 1e6, duraciones.getMaximo() / 1e6,
+                bytesEnviados / segundos / clientes, bytesRecibidos / segundos / clientes, estadosDescartados));
+        intervalos.vaciar();
+        duraciones.vaciar();
+        bytesEnviados = bytesRecibidos = 0;
+        estadosDescartados = 0;
+    }
+
+    /**
+     * Número de partidas que han empezado desde que se abrió el servidor.
+     */
+    public long getPartidasJugadas() {
+        return partidasJugadas;
+    }
+}
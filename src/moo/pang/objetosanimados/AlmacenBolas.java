@@ -0,0 +1,767 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.objetosanimados;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import moo.multimedia.Lienzo;
+import moo.pang.multimedia.Juego;
+
+/**
+ * Guarda los datos de todas las bolas del juego, y las mueve y dibuja todas a la vez.
+ *
+ * En vez de tener cada bola como un objeto con sus propios atributos, aquí se
+ * guarda cada atributo en un array (un array con el centroX de todas las bolas,
+ * otro con el centroY de todas las bolas, etc...). Así, los datos que se usan
+ * juntos están seguidos en memoria, y el bucle que mueve las bolas los recorre
+ * en orden, sin saltar de objeto en objeto. Con miles de bolas en pantalla, la
+ * diferencia se nota.
+ *
+ * Entre rebote y rebote, cada bola hace una parábola, y su posición en cualquier
+ * tick se puede calcular directamente a partir de dónde empezó la parábola y
+ * cuántos ticks hace de eso (ver alturaEnArco()), sin tener que ir sumando la
+ * velocidad tick a tick. Así se puede saber de antemano en qué tick rebotará
+ * cada bola, y avanzar muchos ticks de golpe (ver saltar()) calculando sólo los
+ * rebotes. Como las posiciones se calculan con la misma fórmula se mueva tick a
+ * tick o a saltos, el resultado es exactamente el mismo.
+ *
+ * Calcular la fórmula en cada tick es más caro que sumar la velocidad, y los
+ * redondeos de las dos maneras no coinciden, así que sólo se usa en las
+ * partidas "predecibles", las que se tienen que poder avanzar a saltos (ver
+ * Juego.setAvanceRapido()). En las demás, las bolas se mueven sumando la
+ * velocidad tick a tick, y no se puede saltar ningún tick.
+ *
+ * Las bolas que hay en cada momento ocupan las posiciones 0 a total-1 de los
+ * arrays. Una bola nueva se añade al final, y al eliminar una bola se mueve la
+ * última a su hueco, para que no queden huecos.
+ *
+ * Para el resto del juego, cada bola se sigue viendo como un objeto Bola, que
+ * simplemente sabe en qué posición de los arrays están sus datos.
+ *
+ * Como cada bola se mueve sin mirar las demás, cuando hay muchas se pueden
+ * mover en paralelo (ver setPool()): se reparten en tramos de posiciones
+ * seguidas, y cada hilo mueve los suyos. Cada bola hace exactamente las mismas
+ * operaciones que si se movieran todas en un solo hilo, así que el resultado
+ * es el mismo (y las partidas grabadas se repiten igual) con o sin hilos.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class AlmacenBolas implements ObjetoPredecible {
+    /**
+     * Datos de las bolas. La bola número i tiene su centro en (centroX[i],centroY[i]), etc.
+     */
+    float[] centroX, centroY, anteriorX, anteriorY, radio, velocidadX;
+    /**
+     * Velocidad vertical de cada bola. Sólo se usa si el almacén no es
+     * predecible: si lo es, se calcula a partir del arco (ver velocidadY()).
+     */
+    float[] velocidadY;
+    /**
+     * Arco (parábola) que está haciendo cada bola: posición y velocidad vertical
+     * con las que empezó, y en qué tick. En horizontal y en vertical empiezan
+     * por separado, porque al rebotar en una pared sólo cambia el movimiento
+     * horizontal, y al rebotar en el suelo sólo el vertical. Mientras una bola
+     * está entrando por el techo (origenY negativo), baja a velocidad constante.
+     */
+    float[] origenX, origenY, velocidadOrigenY;
+    int[] tickOrigenX, tickOrigenY;
+    /**
+     * Velocidad vertical que tendrá cada bola al rebotar en el suelo (depende de su radio).
+     */
+    float[] velocidadRebote;
+    /**
+     * Número de veces que se ha dividido cada bola (0 para las bolas enteras).
+     * Sirve para saber qué sprite usar al dibujarla.
+     */
+    int[] nivel;
+    /**
+     * Objeto Bola que representa a cada posición de los arrays. Las posiciones
+     * a partir de total guardan objetos Bola de bolas eliminadas, que se reciclan
+     * cuando se añaden bolas nuevas.
+     */
+    Bola[] bolas;
+    /**
+     * Número de bolas que hay en el almacén.
+     */
+    private int total = 0;
+    /**
+     * Número de ticks que se han movido las bolas desde que se creó el almacén.
+     */
+    private int tick = 0;
+
+    /**
+     * Posición del objeto en la lista de objetos animados del juego.
+     */
+    private int posicionEnLista = -1;
+
+    /**
+     * Coordenadas de las paredes y el suelo donde rebotan las bolas. No cambian
+     * durante la partida, así que se leen una sola vez del juego.
+     */
+    private final float margenIzq, margenDer, margenSuelo;
+
+    /**
+     * true si las bolas se mueven siempre con la fórmula de los arcos, para
+     * poder saltar ticks (ver saltar()).
+     */
+    private final boolean predecible;
+
+    /**
+     * Referencia al objeto Juego, que se pasa a cada Bola para que pueda llamar
+     * a algunos de sus métodos.
+     */
+    private final Juego elJuego;
+
+    /**
+     * A partir de este número de bolas, si hay un pool de hilos, se mueven en paralelo.
+     * Con menos, repartir el trabajo cuesta más de lo que se gana.
+     */
+    private static final int MINIMO_BOLAS_EN_PARALELO = 4096;
+    /**
+     * Número de bolas que mueve cada tarea.
+     */
+    private static final int BOLAS_POR_TRAMO = 1024;
+
+    /**
+     * Pool de hilos con el que se mueven las bolas, o null para moverlas en el
+     * hilo del juego.
+     */
+    private ForkJoinPool pool = null;
+    /**
+     * Tareas que mueven cada tramo de bolas, y tarea que las lanza todas. Se
+     * reutilizan de un tick a otro, para no crear objetos nuevos en cada tick.
+     */
+    private final List<MoverTramo> tramos = new ArrayList<MoverTramo>();
+    private final MoverTramos moverTramos = new MoverTramos();
+    private int numeroTramos = 0;
+
+    /**
+     * Crea un almacén de bolas vacío.
+     * @param elJuego El juego al que pertenecen las bolas.
+     * @param predecible true para mover las bolas con la fórmula de los arcos,
+     *        de manera que se puedan saltar ticks; false para moverlas sumando
+     *        la velocidad tick a tick, que es más rápido.
+     */
+    public AlmacenBolas(Juego elJuego, boolean predecible) {
+        this.elJuego = elJuego;
+        this.predecible = predecible;
+        margenIzq = elJuego.getCoordenadaXMargenIzquierdo();
+        margenDer = elJuego.getCoordenadaXMargenDerecho();
+        margenSuelo = elJuego.getCoordenadaYSuelo();
+        reservar(64);
+    }
+
+    private void reservar(int capacidad) {
+        centroX = copia(centroX, capacidad);
+        centroY = copia(centroY, capacidad);
+        anteriorX = copia(anteriorX, capacidad);
+        anteriorY = copia(anteriorY, capacidad);
+        radio = copia(radio, capacidad);
+        velocidadX = copia(velocidadX, capacidad);
+        velocidadY = copia(velocidadY, capacidad);
+        origenX = copia(origenX, capacidad);
+        origenY = copia(origenY, capacidad);
+        velocidadOrigenY = copia(velocidadOrigenY, capacidad);
+        tickOrigenX = tickOrigenX == null ? new int[capacidad] : Arrays.copyOf(tickOrigenX, capacidad);
+        tickOrigenY = tickOrigenY == null ? new int[capacidad] : Arrays.copyOf(tickOrigenY, capacidad);
+        velocidadRebote = copia(velocidadRebote, capacidad);
+        nivel = nivel == null ? new int[capacidad] : Arrays.copyOf(nivel, capacidad);
+        bolas = bolas == null ? new Bola[capacidad] : Arrays.copyOf(bolas, capacidad);
+    }
+
+    private static float[] copia(float[] original, int capacidad) {
+        return original == null ? new float[capacidad] : Arrays.copyOf(original, capacidad);
+    }
+
+    /**
+     * Añade una bola al almacén.
+     * @param x Coordenada X del centro.
+     * @param y Coordenada Y del centro.
+     * @param r Radio de la bola.
+     * @param vx Velocidad horizontal (píxels/segundo).
+     * @param vy Velocidad vertical (píxels/segundo).
+     * @return El objeto Bola que representa a la bola añadida.
+     */
+    public Bola anyadir(float x, float y, float r, float vx, float vy) {
+        if(total == centroX.length) {
+            reservar(total * 2);
+        }
+        int i = total++;
+        anteriorX[i] = x;
+        anteriorY[i] = y;
+        velocidadX[i] = vx;
+        empezarArco(i, x, y, vy);
+        setRadio(i, r);
+        Bola b = bolas[i];
+        if(b == null) {
+            b = new Bola(this, elJuego);
+            bolas[i] = b;
+        }
+        b.indice = i;
+        return b;
+    }
+
+    /**
+     * Elimina una bola del almacén, moviendo la última bola a su posición.
+     * @param b La bola a eliminar.
+     */
+    public void eliminar(Bola b) {
+        int i = b.indice;
+        int ultima = --total;
+        if(i != ultima) {
+            centroX[i] = centroX[ultima];
+            centroY[i] = centroY[ultima];
+            anteriorX[i] = anteriorX[ultima];
+            anteriorY[i] = anteriorY[ultima];
+            radio[i] = radio[ultima];
+            velocidadX[i] = velocidadX[ultima];
+            velocidadY[i] = velocidadY[ultima];
+            origenX[i] = origenX[ultima];
+            origenY[i] = origenY[ultima];
+            velocidadOrigenY[i] = velocidadOrigenY[ultima];
+            tickOrigenX[i] = tickOrigenX[ultima];
+            tickOrigenY[i] = tickOrigenY[ultima];
+            velocidadRebote[i] = velocidadRebote[ultima];
+            nivel[i] = nivel[ultima];
+            bolas[i] = bolas[ultima];
+            bolas[i].indice = i;
+            // el objeto Bola eliminado se guarda después de la última bola, para reciclarlo
+            bolas[ultima] = b;
+        }
+        b.indice = -1;
+    }
+
+    /**
+     * Cambia el radio de una bola (y, por tanto, la velocidad con la que rebota
+     * y el sprite con el que se dibuja).
+     */
+    void setRadio(int i, float r) {
+        radio[i] = r;
+        velocidadRebote[i] = Bola.VELOCIDAD_MAXIMA_REBOTE * (0.5f + 0.5f * r / Bola.RADIO_MAXIMO);
+        // r = RADIO_MAXIMO * REDUCCION_RADIO^nivel
+        nivel[i] = Math.round((float) (Math.log(r / Bola.RADIO_MAXIMO) / LOG_REDUCCION_RADIO));
+    }
+
+    private static final double LOG_REDUCCION_RADIO = Math.log(Bola.REDUCCION_RADIO);
+
+    /**
+     * Pone una bola en un punto y hace que empiece un arco nuevo desde allí, en
+     * el tick actual (por ejemplo, al añadirla o al pincharla). Si el almacén
+     * no es predecible, simplemente le cambia la velocidad vertical.
+     * @param i Posición de la bola.
+     * @param x Coordenada X del centro.
+     * @param y Coordenada Y del centro.
+     * @param vy Velocidad vertical (píxels/segundo).
+     */
+    void empezarArco(int i, float x, float y, float vy) {
+        centroX[i] = origenX[i] = x;
+        centroY[i] = origenY[i] = y;
+        velocidadOrigenY[i] = velocidadY[i] = vy;
+        tickOrigenX[i] = tickOrigenY[i] = tick;
+    }
+
+    /**
+     * Devuelve el número de bolas que hay en el almacén.
+     * @return
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Devuelve la bola que está en una posición del almacén.
+     * @param i Posición, entre 0 y getTotal()-1.
+     * @return
+     */
+    public Bola getBola(int i) {
+        return bolas[i];
+    }
+
+    /**
+     * Indica con qué pool de hilos se deben mover las bolas cuando hay muchas.
+     * @param pool El pool, o null para moverlas siempre en el hilo del juego.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Indica si las bolas se mueven con la fórmula de los arcos, y por tanto
+     * se pueden saltar ticks.
+     * @return
+     */
+    public boolean isPredecible() {
+        return predecible;
+    }
+
+    /**
+     * Mueve todas las bolas según la misma física que se explica en la clase
+     * Bola: aplica gravedad, mueve verticalmente y horizontalmente, las hace
+     * rebotar en caso de que toquen el suelo o la pared...
+     *
+     * Si hay muchas bolas y un pool de hilos, se reparten en tramos que se
+     * mueven en paralelo. Este método no acaba hasta que se han movido todas.
+     *
+     * @param segundos Tiempo que dura el tick de la simulación.
+     */
+    public void mover(float segundos) {
+        tick++;
+        if(pool == null || total < MINIMO_BOLAS_EN_PARALELO) {
+            moverTramo(0, total, segundos);
+            return;
+        }
+        numeroTramos = (total + BOLAS_POR_TRAMO - 1) / BOLAS_POR_TRAMO;
+        while(tramos.size() < numeroTramos) {
+            tramos.add(new MoverTramo());
+        }
+        for(int t = 0; t < numeroTramos; t++) {
+            MoverTramo tramo = tramos.get(t);
+            tramo.reinitialize();
+            tramo.desde = t * BOLAS_POR_TRAMO;
+            tramo.hasta = Math.min(total, tramo.desde + BOLAS_POR_TRAMO);
+            tramo.segundos = segundos;
+        }
+        moverTramos.reinitialize();
+        pool.invoke(moverTramos);
+    }
+
+    /**
+     * Mueve las bolas de las posiciones desde a hasta-1 al tick actual, con
+     * la fórmula de los arcos si el almacén es predecible, o sumando la
+     * velocidad si no lo es.
+     */
+    private void moverTramo(final int desde, final int hasta, float segundos) {
+        if(predecible) {
+            moverTramoEnArco(desde, hasta, segundos);
+        } else {
+            moverTramoSumando(desde, hasta, segundos);
+        }
+    }
+
+    /**
+     * Mueve las bolas de las posiciones desde a hasta-1 un tick, sumando a
+     * cada una su velocidad (y a la velocidad, la gravedad).
+     *
+     * Cada paso se hace en un bucle aparte que recorre todas las bolas, y
+     * sin llamar a ningún método, para que el compilador JIT lo pueda optimizar
+     * al máximo.
+     */
+    private void moverTramoSumando(final int desde, final int hasta, float segundos) {
+        final float[] cx = centroX, cy = centroY, r = radio, vx = velocidadX, vy = velocidadY;
+        final float entrada = Bola.VELOCIDAD_ENTRADA * segundos;
+        final float gravedad = Bola.ACELERACION * segundos;
+        final float suelo = margenSuelo, izq = margenIzq, der = margenDer;
+
+        System.arraycopy(cx, desde, anteriorX, desde, hasta - desde);
+        System.arraycopy(cy, desde, anteriorY, desde, hasta - desde);
+
+        // Desplazamiento y gravedad. Las bolas que están entrando por el techo
+        // (centro por encima de 0) bajan poquito a poco, sin gravedad.
+        for(int i = desde; i < hasta; i++) {
+            boolean entrando = cy[i] < 0;
+            cx[i] = entrando ? cx[i] : cx[i] + vx[i] * segundos;
+            cy[i] = entrando ? cy[i] + entrada : cy[i] + vy[i] * segundos;
+            vy[i] = entrando ? vy[i] : vy[i] + gravedad;
+        }
+        // Rebote en el suelo
+        final float[] rebote = velocidadRebote;
+        for(int i = desde; i < hasta; i++) {
+            boolean toca = cy[i] + r[i] >= suelo;
+            cy[i] = toca ? suelo - r[i] : cy[i];
+            vy[i] = toca ? rebote[i] : vy[i];
+        }
+        // Rebote en las paredes laterales
+        for(int i = desde; i < hasta; i++) {
+            boolean tocaIzq = vx[i] < 0 && cx[i] - r[i] <= izq;
+            boolean tocaDer = vx[i] > 0 && cx[i] + r[i] >= der;
+            cx[i] = tocaIzq ? izq + r[i] : (tocaDer ? der - r[i] : cx[i]);
+            vx[i] = tocaIzq || tocaDer ? -vx[i] : vx[i];
+        }
+    }
+
+    /**
+     * Mueve las bolas de las posiciones desde a hasta-1 al tick actual según
+     * sus arcos.
+     *
+     * Hace lo mismo que moverBola() con cada una, pero en tres bucles sin
+     * llamadas ni saltos (sólo asignaciones condicionales) que recorren los
+     * arrays en orden, para que la máquina virtual los pueda vectorizar:
+     * primero pone cada bola donde dicen sus arcos, luego la hace rebotar en
+     * las paredes (o acabar de entrar por el techo) y luego en el suelo. Las
+     * operaciones son exactamente las mismas que en moverBola(), en el mismo
+     * orden, así que el resultado es el mismo bit a bit que avanzando a
+     * saltos con saltar().
+     */
+    private void moverTramoEnArco(final int desde, final int hasta, float segundos) {
+        final float[] cx = centroX, cy = centroY, r = radio, vx = velocidadX;
+        final float[] ox = origenX, oy = origenY, voy = velocidadOrigenY, rebote = velocidadRebote;
+        final int[] tox = tickOrigenX, toy = tickOrigenY;
+        final int t = tick;
+        final float mediaGravedad = mediaGravedad(segundos);
+        final float entrada = Bola.VELOCIDAD_ENTRADA * segundos;
+        final float suelo = margenSuelo, izq = margenIzq, der = margenDer;
+
+        System.arraycopy(cx, desde, anteriorX, desde, hasta - desde);
+        System.arraycopy(cy, desde, anteriorY, desde, hasta - desde);
+
+        // Posición según los arcos (ver colocarBola()). Las bolas que están
+        // entrando por el techo bajan poquito a poco, sin gravedad.
+        for(int i = desde; i < hasta; i++) {
+            boolean entrando = oy[i] < 0;
+            float ky = t - toy[i];
+            float kx = t - tox[i];
+            float enArco = oy[i] + ky * (voy[i] * segundos) + mediaGravedad * (ky * (ky - 1));
+            float entrandoY = oy[i] + ky * entrada;
+            cy[i] = entrando ? entrandoY : enArco;
+            cx[i] = entrando ? cx[i] : ox[i] + kx * (vx[i] * segundos);
+        }
+        // Rebote en las paredes laterales (las bolas que están entrando no se
+        // mueven en horizontal), y bolas que acaban de entrar: empiezan a caer
+        // con gravedad y a moverse en horizontal
+        for(int i = desde; i < hasta; i++) {
+            boolean entrando = oy[i] < 0;
+            boolean tocaIzq = !entrando && vx[i] < 0 && cx[i] - r[i] <= izq;
+            boolean tocaDer = !entrando && vx[i] > 0 && cx[i] + r[i] >= der;
+            boolean pared = tocaIzq || tocaDer;
+            boolean entra = entrando && cy[i] >= 0;
+            float x = tocaIzq ? izq + r[i] : (tocaDer ? der - r[i] : cx[i]);
+            cx[i] = x;
+            vx[i] = pared ? -vx[i] : vx[i];
+            ox[i] = pared || entra ? x : ox[i];
+            tox[i] = pared || entra ? t : tox[i];
+            oy[i] = entra ? cy[i] : oy[i];
+            toy[i] = entra ? t : toy[i];
+        }
+        // Rebote en el suelo
+        for(int i = desde; i < hasta; i++) {
+            boolean toca = cy[i] + r[i] >= suelo;
+            float y = toca ? suelo - r[i] : cy[i];
+            cy[i] = y;
+            oy[i] = toca ? y : oy[i];
+            voy[i] = toca ? rebote[i] : voy[i];
+            toy[i] = toca ? t : toy[i];
+        }
+    }
+
+    /**
+     * Las bolas no chocan con nada por sí solas (los ganchos y el protagonista
+     * son los que miran si chocan con ellas), y saltar() calcula los rebotes,
+     * así que para un almacén predecible todos los ticks son tranquilos. Si no
+     * es predecible, no se puede saltar ninguno.
+     */
+    public int getTicksTranquilos(float segundos, int maximo) {
+        return predecible ? maximo : 0;
+    }
+
+    /**
+     * Avanza todas las bolas varios ticks de golpe (sólo si el almacén es
+     * predecible, ver getTicksTranquilos()). Para cada bola se calcula
+     * directamente en qué tick será su siguiente rebote (o en qué tick acabará
+     * de entrar por el techo), y se salta hasta él. Así, el coste no depende de
+     * cuántos ticks se saltan, sino de cuántas veces rebotan las bolas mientras tanto.
+     * @param ticks Número de ticks que se avanzan.
+     * @param segundos Tiempo que dura cada tick de la simulación.
+     */
+    public void saltar(int ticks, float segundos) {
+        final int fin = tick + ticks;
+        final float mediaGravedad = mediaGravedad(segundos);
+        for(int i = 0; i < total; i++) {
+            for(long e = siguienteRebote(i, segundos, mediaGravedad); e <= fin;
+                    e = siguienteRebote(i, segundos, mediaGravedad)) {
+                moverBola(i, (int) e, segundos, mediaGravedad);
+            }
+            colocarBola(i, fin, segundos, mediaGravedad);
+        }
+        tick = fin;
+        System.arraycopy(centroX, 0, anteriorX, 0, total);
+        System.arraycopy(centroY, 0, anteriorY, 0, total);
+    }
+
+    /**
+     * Mueve una bola a un tick, y la hace rebotar si toca el suelo o las
+     * paredes. Se usa para aplicar los rebotes al saltar. Al mover las bolas
+     * tick a tick, moverTramoEnArco() hace las mismas operaciones con todas a la vez:
+     * si se cambia algo aquí, hay que cambiarlo también allí.
+     * @param i Posición de la bola.
+     * @param t Tick al que se mueve (posterior al inicio de sus arcos, y sin
+     *        ningún rebote entre medio).
+     */
+    private void moverBola(int i, int t, float segundos, float mediaGravedad) {
+        final float r = radio[i];
+        final boolean entrando = origenY[i] < 0;
+        colocarBola(i, t, segundos, mediaGravedad);
+        float x = centroX[i], y = centroY[i];
+
+        // Rebote en el suelo
+        if(y + r >= margenSuelo) {
+            y = margenSuelo - r;
+            origenY[i] = y;
+            velocidadOrigenY[i] = velocidadRebote[i];
+            tickOrigenY[i] = t;
+        }
+        // Rebote en las paredes laterales (las bolas que están entrando por el
+        // techo no se mueven en horizontal)
+        if(!entrando && tocaPared(i, x)) {
+            x = velocidadX[i] < 0 ? margenIzq + r : margenDer - r;
+            velocidadX[i] = -velocidadX[i];
+            origenX[i] = x;
+            tickOrigenX[i] = t;
+        }
+        // Cuando la bola acaba de entrar, empieza a caer con gravedad y a
+        // moverse en horizontal
+        if(entrando && y >= 0) {
+            origenY[i] = y;
+            tickOrigenY[i] = t;
+            origenX[i] = x;
+            tickOrigenX[i] = t;
+        }
+        centroX[i] = x;
+        centroY[i] = y;
+    }
+
+    /**
+     * Pone el centro de una bola donde está en un tick según sus arcos, sin
+     * mirar si rebota.
+     */
+    private void colocarBola(int i, int t, float segundos, float mediaGravedad) {
+        if(origenY[i] < 0) {
+            // entrando por el techo: baja poquito a poco, sin gravedad
+            centroY[i] = alturaEntrando(i, t - tickOrigenY[i], segundos);
+        } else {
+            centroX[i] = origenX[i] + (t - tickOrigenX[i]) * (velocidadX[i] * segundos);
+            centroY[i] = alturaEnArco(i, t - tickOrigenY[i], segundos, mediaGravedad);
+        }
+    }
+
+    /**
+     * Mitad de lo que aumenta la velocidad vertical en un tick, multiplicado
+     * por la duración del tick (el término de la gravedad en alturaEnArco()).
+     */
+    private static float mediaGravedad(float segundos) {
+        return 0.5f * Bola.ACELERACION * segundos * segundos;
+    }
+
+    /**
+     * Altura del centro de una bola k ticks después de empezar su arco. Es lo
+     * mismo que sumar tick a tick la velocidad (y a la velocidad, la gravedad),
+     * pero calculado directamente:
+     * y(k) = y0 + k*v0*t + a*t*t*k*(k-1)/2
+     */
+    private float alturaEnArco(int i, float k, float segundos, float mediaGravedad) {
+        return origenY[i] + k * (velocidadOrigenY[i] * segundos) + mediaGravedad * (k * (k - 1));
+    }
+
+    /**
+     * Altura del centro de una bola que está entrando por el techo, k ticks
+     * después de empezar a entrar.
+     */
+    private float alturaEntrando(int i, float k, float segundos) {
+        return origenY[i] + k * (Bola.VELOCIDAD_ENTRADA * segundos);
+    }
+
+    /**
+     * Indica si una bola que se mueve en horizontal ha llegado a la pared hacia
+     * la que va.
+     */
+    private boolean tocaPared(int i, float x) {
+        return (velocidadX[i] < 0 && x - radio[i] <= margenIzq)
+                || (velocidadX[i] > 0 && x + radio[i] >= margenDer);
+    }
+
+    /**
+     * Calcula en qué tick la bola rebotará (en el suelo o en una pared) o
+     * acabará de entrar por el techo, lo que pase antes.
+     * @return El tick, o Long.MAX_VALUE si no pasará nunca.
+     */
+    private long siguienteRebote(int i, float segundos, float mediaGravedad) {
+        if(origenY[i] < 0) {
+            return tickOrigenY[i] + (long) primerTickEntrada(i, segundos);
+        }
+        long suelo = tickOrigenY[i] + (long) primerTickBajo(i, margenSuelo, 0, segundos, mediaGravedad);
+        long pared = velocidadX[i] == 0 ? Long.MAX_VALUE : tickOrigenX[i] + (long) primerTickPared(i, segundos);
+        return Math.min(suelo, pared);
+    }
+
+    /**
+     * Primer tick (contado desde el inicio de su arco) en que una bola que está
+     * entrando por el techo ya ha entrado.
+     */
+    private int primerTickEntrada(int i, float segundos) {
+        int k = Math.max(1, (int) Math.ceil(-origenY[i] / (Bola.VELOCIDAD_ENTRADA * segundos)));
+        // la estimación puede fallar por un tick por los redondeos: se ajusta
+        // con la misma fórmula que se usa al mover la bola
+        while(k > 1 && alturaEntrando(i, k - 1, segundos) >= 0) {
+            k--;
+        }
+        while(alturaEntrando(i, k, segundos) < 0) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Primer tick (contado desde el inicio de su arco) en que una bola que se
+     * mueve en horizontal toca la pared hacia la que va. Su velocidad
+     * horizontal no debe ser 0.
+     */
+    private int primerTickPared(int i, float segundos) {
+        float v = velocidadX[i] * segundos;
+        float distancia = v < 0 ? margenIzq + radio[i] - origenX[i] : margenDer - radio[i] - origenX[i];
+        int k = Math.max(1, (int) Math.ceil(distancia / v));
+        while(k > 1 && tocaPared(i, origenX[i] + (k - 1) * v)) {
+            k--;
+        }
+        while(!tocaPared(i, origenX[i] + k * v)) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Primer tick, contado desde el inicio de su arco y posterior a "desde", en
+     * que la parte de abajo de una bola llega a una altura (o más abajo).
+     *
+     * Como la parábola primero sube y luego baja, la bola puede estar por debajo
+     * de esa altura al principio del arco (justo después de rebotar) y al final.
+     * Si no lo está en el tick desde+1, se busca el final: la raíz mayor de
+     * y(k) + radio = altura, ajustada con la misma fórmula que se usa al mover
+     * la bola para que salga exactamente el mismo tick.
+     */
+    private int primerTickBajo(int i, float altura, int desde, float segundos, float mediaGravedad) {
+        final float r = radio[i];
+        int k = desde + 1;
+        if(alturaEnArco(i, k, segundos, mediaGravedad) + r >= altura) {
+            return k;
+        }
+        // mediaGravedad*k^2 + (v0*t - mediaGravedad)*k + (y0 + radio - altura) = 0
+        double a = mediaGravedad;
+        double b = velocidadOrigenY[i] * segundos - mediaGravedad;
+        double c = origenY[i] + r - altura;
+        double raiz = (-b + Math.sqrt(Math.max(0, b * b - 4 * a * c))) / (2 * a);
+        k = Math.max(desde + 2, (int) Math.ceil(raiz));
+        while(k > desde + 2 && alturaEnArco(i, k - 1, segundos, mediaGravedad) + r >= altura) {
+            k--;
+        }
+        while(alturaEnArco(i, k, segundos, mediaGravedad) + r < altura) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Velocidad vertical (en píxels/segundo) con la que una bola empieza el
+     * tick siguiente. Si el almacén es predecible, no se guarda, porque con el
+     * arco ya está calculada: es la velocidad con la que empezó el arco más la
+     * gravedad de los ticks que lleva.
+     * @param i Posición de la bola.
+     */
+    float velocidadY(int i) {
+        if(!predecible) {
+            return velocidadY[i];
+        }
+        if(origenY[i] < 0) {
+            return Bola.VELOCIDAD_ENTRADA;
+        }
+        return velocidadOrigenY[i] + Bola.ACELERACION * (tick - tickOrigenY[i]) / elJuego.getFrecuenciaSimulacion();
+    }
+
+    /**
+     * Cuenta cuántos de los ticks siguientes la parte de abajo de una bola
+     * seguirá estando por encima de una altura. Sirve para saber durante cuánto
+     * tiempo seguro que no tocará algo que está más abajo (ver Protagonista).
+     * Si ahora ya no está por encima, devuelve 0 aunque en el tick siguiente
+     * vuelva a estarlo: las colisiones miran todo el camino que hace la bola
+     * en el tick, y ese camino empieza en la posición actual. Sólo se puede
+     * usar si el almacén es predecible.
+     * @param i Posición de la bola.
+     * @param altura Altura, por encima del suelo.
+     * @param segundos Tiempo que dura cada tick de la simulación.
+     * @param maximo No hace falta contar más allá de este número de ticks.
+     * @return Número de ticks, entre 0 y maximo.
+     */
+    int ticksPorEncimaDe(int i, float altura, float segundos, int maximo) {
+        if(centroY[i] + radio[i] >= altura) {
+            return 0;
+        }
+        int desde = tick - tickOrigenY[i];
+        long ticks;
+        if(origenY[i] < 0) {
+            // mientras entra por el techo no baja de la altura 0; después, no se sabe
+            ticks = primerTickEntrada(i, segundos) - desde;
+        } else {
+            // la altura está por encima del suelo, así que la bola llegará a
+            // ella antes de rebotar: se puede mirar sólo el arco actual
+            ticks = primerTickBajo(i, altura, desde, segundos, mediaGravedad(segundos)) - desde - 1;
+        }
+        return (int) Math.max(0, Math.min(maximo, ticks));
+    }
+
+    /**
+     * Dibuja todas las bolas, copiando para cada una el sprite de su tamaño.
+     * @param lienzo Lienzo donde se deben dibujar las bolas.
+     * @param interpolacion Punto entre la posición anterior y la actual.
+     */
+    public void dibujar(Lienzo lienzo, float interpolacion) {
+        CacheSprites sprites = elJuego.getCacheSprites();
+        for(int i = 0; i < total; i++) {
+            float x = anteriorX[i] + (centroX[i] - anteriorX[i]) * interpolacion;
+            float y = anteriorY[i] + (centroY[i] - anteriorY[i]) * interpolacion;
+            sprites.dibujaBola(lienzo, nivel[i], x, y, radio[i]);
+        }
+    }
+
+    /**
+     * Tarea que mueve un tramo de bolas.
+     */
+    private final class MoverTramo extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        int desde, hasta;
+        float segundos;
+
+        @Override
+        protected void compute() {
+            moverTramo(desde, hasta, segundos);
+        }
+    }
+
+    /**
+     * Tarea que lanza las tareas de todos los tramos: las deja en la cola del
+     * hilo del pool que la ejecuta (para que los demás hilos se las lleven),
+     * mueve ella misma el primer tramo, y espera a que acaben las demás.
+     */
+    private final class MoverTramos extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            for(int t = numeroTramos - 1; t > 0; t--) {
+                tramos.get(t).fork();
+            }
+            tramos.get(0).compute();
+            for(int t = 1; t < numeroTramos; t++) {
+                tramos.get(t).join();
+            }
+        }
+    }
+
+    public int getPosicionEnLista() {
+        return posicionEnLista;
+    }
+
+    public void setPosicionEnLista(int posicion) {
+        posicionEnLista = posicion;
+    }
+}
@@ -0,0 +1,104 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.objetosanimados;
+
+/**
+ * Comprobaciones de colisión "barridas" (continuas): en vez de mirar sólo dónde
+ * están los objetos al final del tick, miran todo el camino que han recorrido
+ * durante el tick, suponiendo que se mueven en línea recta desde su posición
+ * anterior. Así, aunque la simulación vaya a pocos ticks por segundo y los
+ * objetos den saltos grandes, no se pueden atravesar sin tocarse.
+ *
+ * Todas las comprobaciones trabajan con la posición de un objeto respecto al
+ * otro y devuelven el instante del primer contacto, como una fracción del tick
+ * (0 es el principio y 1 el final), o SIN_CONTACTO si no se tocan.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+final class Barrido {
+    /**
+     * Valor que se devuelve cuando no hay contacto durante el tick. Es mayor que
+     * cualquier instante, así que para quedarse con el primer contacto basta
+     * con Math.min().
+     */
+    static final float SIN_CONTACTO = Float.POSITIVE_INFINITY;
+
+    private Barrido() {
+    }
+
+    /**
+     * Primer instante en que un punto que se mueve está a una distancia del
+     * origen menor o igual que un radio.
+     * @param x Coordenada X del punto al principio del tick.
+     * @param y Coordenada Y del punto al principio del tick.
+     * @param desplazamientoX Cuánto se mueve en X durante el tick.
+     * @param desplazamientoY Cuánto se mueve en Y durante el tick.
+     * @param radio Distancia de contacto.
+     * @return Instante del contacto, entre 0 y 1, o SIN_CONTACTO.
+     */
+    static float contactoCirculo(float x, float y, float desplazamientoX, float desplazamientoY, float radio) {
+        float c = x * x + y * y - radio * radio;
+        if(c <= 0) {
+            return 0;
+        }
+        float a = desplazamientoX * desplazamientoX + desplazamientoY * desplazamientoY;
+        float b = 2 * (x * desplazamientoX + y * desplazamientoY);
+        // si no se mueve, o se aleja, no se acercará más que al principio
+        if(a == 0 || b >= 0) {
+            return SIN_CONTACTO;
+        }
+        float discriminante = b * b - 4 * a * c;
+        if(discriminante < 0) {
+            return SIN_CONTACTO;
+        }
+        float t = (-b - (float) Math.sqrt(discriminante)) / (2 * a);
+        return t <= 1 ? t : SIN_CONTACTO;
+    }
+
+    /**
+     * Primer instante en que un punto que se mueve está dentro de una franja
+     * vertical centrada en el origen (|x| &lt;= medioAncho) y a la vez por debajo
+     * del origen (y &gt;= 0). Sirve para la cuerda del gancho y, ampliando la
+     * franja con el radio de la bola, para el rectángulo del protagonista.
+     * @param x Coordenada X del punto al principio del tick.
+     * @param desplazamientoX Cuánto se mueve en X durante el tick.
+     * @param medioAncho Mitad de la anchura de la franja.
+     * @param y Coordenada Y del punto al principio del tick.
+     * @param desplazamientoY Cuánto se mueve en Y durante el tick.
+     * @return Instante del contacto, entre 0 y 1, o SIN_CONTACTO.
+     */
+    static float contactoFranja(float x, float desplazamientoX, float medioAncho, float y, float desplazamientoY) {
+        // se va recortando el intervalo [desde, hasta] con cada condición
+        float desde = 0, hasta = 1;
+        if(desplazamientoX == 0) {
+            if(Math.abs(x) > medioAncho) {
+                return SIN_CONTACTO;
+            }
+        } else {
+            float t1 = (-medioAncho - x) / desplazamientoX;
+            float t2 = (medioAncho - x) / desplazamientoX;
+            desde = Math.max(desde, Math.min(t1, t2));
+            hasta = Math.min(hasta, Math.max(t1, t2));
+        }
+        if(desplazamientoY == 0) {
+            if(y < 0) {
+                return SIN_CONTACTO;
+            }
+        } else if(desplazamientoY > 0) {
+            desde = Math.max(desde, -y / desplazamientoY);
+        } else {
+            hasta = Math.min(hasta, -y / desplazamientoY);
+        }
+        return desde <= hasta ? desde : SIN_CONTACTO;
+    }
+}
@@ -13,121 +13,87 @@
 package moo.pang.objetosanimados;
 
 import java.awt.Color;
-import moo.multimedia.Ventana;
+import moo.multimedia.Lienzo;
+import moo.pang.eventos.EventoPinchar;
+import moo.pang.eventos.EventosActivos;
 import moo.pang.multimedia.Juego;
 
 /**
  * Clase que implementa las bolas que botan por la pantalla.
+ *
+ * Los datos de cada bola (posición, radio, velocidad) no se guardan en el objeto
+ * Bola, sino en un AlmacenBolas que guarda los datos de todas las bolas juntos
+ * para poder moverlas todas de golpe muy rápidamente. Un objeto Bola sólo sabe
+ * en qué posición del almacén están sus datos, y sirve para consultarlos y para
+ * pinchar la bola.
+ *
+ * Las constantes que definen la física de las bolas sí están en esta clase.
+ *
  * @author Mario Macías: http://mario.site.ac.upc.edu
  */
-public class Bola implements ObjetoAnimado {
+public class Bola {
     /**
      * Aceleración de la bola hacia el suelo. Simula la fuerza de la gravedad.
      * Su valor no está en el sistema métrico, sino en una métrica nuestra:
-     * pixels /(fotograma*fotograma).
+     * pixels /(segundo*segundo).
      */
-    protected static final float ACELERACION = 1.0f;
+    protected static final float ACELERACION = 625f;
 
     /**
      * Velocidad horizontal de las bolas. Su valor no está en el sistema métrico,
-     * sino en pixels/fotograma.
+     * sino en pixels/segundo.
      */
-    public static final float VELOCIDAD_HORIZONTAL = 4;
+    public static final float VELOCIDAD_HORIZONTAL = 100;
 
     /**
      * Velocidad máxima que tendrá una bola al rebotar (la más grande). Su valor
-     * no está en sistema métrico sino en pixels/fotograma.
+     * no está en sistema métrico sino en pixels/segundo.
      */
-    protected static final float VELOCIDAD_MAXIMA_REBOTE = -25;
-    /**
-     * Radio máximo que puede tener una bola, en píxels.
-     */
-    protected static final float RADIO_MAXIMO = 50;
+    protected static final float VELOCIDAD_MAXIMA_REBOTE = -625;
 
     /**
-     * Posición del centro de la bola.
+     * Velocidad (en pixels/segundo) con la que la bola baja mientras está
+     * entrando por el techo.
      */
-    protected float centroX, centroY; //posición de su centro
+    protected static final float VELOCIDAD_ENTRADA = 25;
+
     /**
-     * Radio de la bola.
+     * Radio máximo que puede tener una bola, en píxels.
      */
-    protected float radio; //radio de la bola
+    public static final float RADIO_MAXIMO = 50;
+
     /**
-     * Velocidad vertical de la bola (variable, porque tiene aceleración)
+     * Almacén donde están los datos de la bola.
      */
-    protected float velocidadY;
+    private final AlmacenBolas almacen;
     /**
-     * Velocidad horizontal de la bola (constante, de +VELOCIDAD_HORIZONTAL o
-     * -VELOCIDAD_HORIZONTAL, según si va hacia la derecha o la izquierda.
+     * Posición de los datos de esta bola en los arrays del almacén. Cambia
+     * cuando se eliminan otras bolas, y es -1 cuando la bola ya no está en el juego.
      */
-    protected float velocidadX;
+    int indice = -1;
 
     /**
      * Referencia al objeto Juego, para llamar a algunos de sus métodos.
      */
     private Juego elJuego;
+
     /**
-     * Crea una bola que rebotará en los márgenes de una pantalla dada
-     * @param pantalla La pantalla cuyos márgenes se deben tener en cuenta
+     * Las bolas sólo las crea el AlmacenBolas.
      */
-    public Bola(Juego elJuego, float posicionXInicial) {
+    Bola(AlmacenBolas almacen, Juego elJuego) {
+        this.almacen = almacen;
         this.elJuego = elJuego;
-        radio = RADIO_MAXIMO;
-        centroX = posicionXInicial;
-        centroY = -RADIO_MAXIMO;
-        velocidadY = 0;
-        velocidadX =  centroX < elJuego.getCoordenadaXMargenDerecho()/2 ? VELOCIDAD_HORIZONTAL : -VELOCIDAD_HORIZONTAL; //
     }
 
-    //Las tres tonalidades de la bola en formato RED-GREEN-BLUE
-    private static final Color SOMBRA = new Color(0.6f,0f,0f);
-    private static final Color CUERPO = new Color(0.9f,0f,0f);
-    private static final Color BRILLO = new Color(1f,0.85f,0.85f);
-
-    /**
-     * Este método mueve un poco la bola según la física descrita en el código
-     * contenido: aplica gravedad, mueve verticalmente y horizontalmente, la
-     * hace rebotar en caso de que la bola toque el suelo o la pared... Y después
-     * de moverla, la dibuja en la posición de pantalla que corresponda en el
-     * siguiente fotograma.
-     *
-     * @param ventana Instancia de Ventana donde se debe dibujar la bola.
-     */
-    public void moverYDibujar(Ventana ventana) {
-        // calculamos primero los márgenes con los que puede chocar la bola (paredes y suelo)
-        float margenIzq = elJuego.getCoordenadaXMargenIzquierdo();
-        float margenSuelo = elJuego.getCoordenadaYSuelo();
-        float margenDer = elJuego.getCoordenadaXMargenDerecho();
-
-        //Para permitir una mejor visión al jugador de por dónde aparecerán
-        //las bolas: si la bola está entrando (su centro está fuera de la pantalla),
-        //no se acelera con la gravedad y baja poquito a poco.
-        if(centroY < 0) {
-            centroY++;
-        } else {
-            // Si no, desplazamos el centro y aceleramos la velocidad vertical (gravedad)
-            centroX += velocidadX; centroY += velocidadY;
-            velocidadY += ACELERACION;
-        }
-
-        // si toca el suelo, hacemos que rebote hacia arriba (dando velocidad negativa)
-        if(centroY + radio >= margenSuelo) {
-            centroY = margenSuelo - radio; // también corregimos su posición para que no se sobreimponga al suelo
-            velocidadY = VELOCIDAD_MAXIMA_REBOTE * (0.5f + 0.5f * radio / RADIO_MAXIMO);
-        }
-        //si toca uno de los márgenes laterales, hacemos que se invierta la velocidad horizontal
-        if(velocidadX < 0 && centroX - radio <= margenIzq) {
-            centroX = margenIzq + radio;
-            velocidadX = -velocidadX;
-        } else if(velocidadX > 0 && centroX + radio >= margenDer) {
-            centroX = margenDer - radio;
-            velocidadX = -velocidadX;
-        }
-
-        //pintamos 3 circulos de diferentes colores para dar sensacion de volumen
-        ventana.dibujaCirculo(centroX, centroY, radio, SOMBRA);
-        ventana.dibujaCirculo(centroX - radio/7f, centroY - radio/7f, radio*0.8f, CUERPO);
-        ventana.dibujaCirculo(centroX - radio/2.5f, centroY - radio/2f, radio*0.15f, BRILLO);
+    /**
+     * Velocidad horizontal que tendrá una bola que empiece a caer desde una
+     * posición X: irá hacia el centro de la pantalla.
+     * @param elJuego El juego donde caerá la bola.
+     * @param posicionXInicial Coordenada X donde aparece la bola.
+     * @return La velocidad horizontal inicial de la bola.
+     */
+    public static float velocidadXInicial(Juego elJuego, float posicionXInicial) {
+        return posicionXInicial < elJuego.getCoordenadaXMargenDerecho()/2 ? VELOCIDAD_HORIZONTAL : -VELOCIDAD_HORIZONTAL;
     }
 
     /**
@@ -135,53 +101,155 @@ public class Bola implements ObjetoAnimado {
      * radio menor o igual a este se pinche, ya no se dividirá en dos bolas
      * más pequeñas, sino que desaparecera.
      */
-    private static final float RADIO_MINIMO = VELOCIDAD_HORIZONTAL * 2;
+    private static final float RADIO_MINIMO = 8;
+
+    /**
+     * Distancia (en píxels) que se separan las dos bolas resultantes de pinchar
+     * una bola, cada una hacia su lado.
+     */
+    private static final float SEPARACION_AL_PINCHAR = 4;
 
     /**
      * Porcentaje de reducción del radio de una bola al pincharse. En este caso,
      * cuando pinchemos una bola, se crearán dos nuevas bolas, cada una con un
      * radio equivalente al 60% de la bola anterior.
      */
-    private static final float REDUCCION_RADIO = 0.6f;
+    static final float REDUCCION_RADIO = 0.6f;
+
+    /**
+     * Radio de una bola que ha salido del techo y se ha pinchado varias veces.
+     * Se calcula igual que en pinchar(), para que salga exactamente el mismo número.
+     * @param nivel Número de veces que se ha pinchado la bola (0 = recién salida).
+     * @return El radio, o 0 si una bola tan pinchada ya habría desaparecido.
+     */
+    public static float radioDeNivel(int nivel) {
+        float radio = RADIO_MAXIMO;
+        for(int n = 0; n < nivel; n++) {
+            radio *= REDUCCION_RADIO;
+        }
+        return radio < RADIO_MINIMO ? 0 : radio;
+    }
+
+    /**
+     * Número de tamaños distintos que puede tener una bola (es decir, los
+     * niveles para los que radioDeNivel() no devuelve 0).
+     * @return
+     */
+    public static int getNumeroNiveles() {
+        int niveles = 0;
+        while(radioDeNivel(niveles) > 0) {
+            niveles++;
+        }
+        return niveles;
+    }
 
     /**
      * Este método se llama cuando una bola es tocada por un gancho o cuerda
      * lanzada por el jugador.
      */
     public void pinchar() {
+        int i = indice;
         //Reduce su tamaño, y crea otra bola igual, pero que va en otra direccion
-        radio *= REDUCCION_RADIO;
+        float radioAnterior = almacen.radio[i];
+        float radio = radioAnterior * REDUCCION_RADIO;
+        float centroX = almacen.centroX[i], centroY = almacen.centroY[i];
         if(radio < RADIO_MINIMO) {
             //Si la bola es demasiado pequeña, no se crean dos bolas sino que
             //se elimina directamente
-            elJuego.eliminarObjetoAnimado(this);
+            elJuego.eliminarBola(this);
         } else {
+            almacen.setRadio(i, radio);
             //Cuando una bola es tocada, le damos un pequeño empujón hacia arriba.
-            velocidadY = VELOCIDAD_MAXIMA_REBOTE / 4;
+            float velocidadY = VELOCIDAD_MAXIMA_REBOTE / 4;
+            float velocidadX = almacen.velocidadX[i];
 
             //Creamos una bola exactamente igual que la actual, pero con la
             //velocidad horizontal invertida (para que una vaya a cada lado).
-            Bola clon = new Bola(elJuego, centroX - velocidadX);
-            clon.centroY = centroY;
-            clon.velocidadX = -velocidadX;
-            clon.radio = radio;
-            clon.velocidadY = velocidadY;
-            elJuego.anyadirObjetoAnimado(clon);
-            centroX += velocidadX;
+            float separacion = velocidadX > 0 ? SEPARACION_AL_PINCHAR : -SEPARACION_AL_PINCHAR;
+            elJuego.anyadirBola(centroX - separacion, centroY, radio, -velocidadX, velocidadY);
+            centroX += separacion;
+            //La bola empieza una parábola nueva desde donde está
+            almacen.empezarArco(i, centroX, centroY, velocidadY);
         }
         elJuego.incrementaPuntuacion();
         //Además, añade un objeto Destello en el punto de impacto, para que el
         //jugador reciba una retroalimentación visual extra.
-        elJuego.anyadirObjetoAnimado(new Destello(centroX,centroY, elJuego));
+        elJuego.lanzarDestello(centroX, centroY);
+
+        EventoPinchar evento = EventosActivos.isPinchar() ? new EventoPinchar() : null;
+        if(evento != null && evento.shouldCommit()) {
+            evento.centroX = centroX;
+            evento.centroY = centroY;
+            evento.radio = radioAnterior;
+            evento.dividida = radio >= RADIO_MINIMO;
+            evento.bolas = almacen.getTotal();
+            evento.commit();
+        }
+    }
+
+    /**
+     * Dibuja una bola con sus primitivas: 3 círculos de diferentes colores para
+     * dar sensación de volumen. Normalmente no se llama en cada fotograma, sino
+     * sólo para crear los sprites de las bolas (ver CacheSprites).
+     * @param lienzo Lienzo donde dibujar.
+     * @param x Coordenada X del centro.
+     * @param y Coordenada Y del centro.
+     * @param r Radio de la bola.
+     * @param sombra Color del borde en sombra.
+     * @param cuerpo Color principal de la bola.
+     * @param brillo Color del brillo.
+     */
+    static void dibuja(Lienzo lienzo, float x, float y, float r, Color sombra, Color cuerpo, Color brillo) {
+        lienzo.dibujaCirculo(x, y, r, sombra);
+        lienzo.dibujaCirculo(x - r/7f, y - r/7f, r*0.8f, cuerpo);
+        lienzo.dibujaCirculo(x - r/2.5f, y - r/2f, r*0.15f, brillo);
     }
 
     public float getCentroX() {
-        return centroX;
+        return almacen.centroX[indice];
     }
     public float getCentroY() {
-        return centroY;
+        return almacen.centroY[indice];
     }
     public float getRadio() {
-        return radio;
+        return almacen.radio[indice];
+    }
+    /**
+     * Velocidad horizontal, en píxels/segundo.
+     */
+    public float getVelocidadX() {
+        return almacen.velocidadX[indice];
+    }
+    /**
+     * Velocidad vertical con la que empieza el tick siguiente, en píxels/segundo
+     * (positiva hacia abajo).
+     */
+    public float getVelocidadY() {
+        return almacen.velocidadY(indice);
+    }
+    /**
+     * Número de veces que se ha dividido la bola (0 para las bolas enteras).
+     */
+    public int getNivel() {
+        return almacen.nivel[indice];
+    }
+    /**
+     * Cuenta cuántos de los ticks siguientes la parte de abajo de la bola
+     * seguirá estando por encima de una altura (ver AlmacenBolas.ticksPorEncimaDe()).
+     */
+    int ticksPorEncimaDe(float altura, float segundos, int maximo) {
+        return almacen.ticksPorEncimaDe(indice, altura, segundos, maximo);
+    }
+    /**
+     * Coordenada X del centro antes del último tick.
+     */
+    public float getAnteriorX() {
+        return almacen.anteriorX[indice];
+    }
+    /**
+     * Coordenada Y del centro antes del último tick.
+     */
+    public float getAnteriorY() {
+        return almacen.anteriorY[indice];
     }
 }
@@ -0,0 +1,122 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.objetosanimados;
+
+import java.awt.Color;
+import moo.multimedia.Lienzo;
+import moo.multimedia.Sprite;
+
+/**
+ * Guarda los sprites de las bolas y del protagonista, para no tener que dibujar
+ * todas sus primitivas (círculos, rectángulos...) en cada fotograma.
+ *
+ * Las bolas sólo pueden tener unos pocos tamaños (el radio máximo, el 60% de
+ * éste, el 60% del 60%...), así que se guarda un sprite por cada "nivel" de
+ * división. Los sprites se crean la primera vez que se piden.
+ *
+ * Si cambia el lienzo donde se dibuja, o los colores de las bolas, los sprites
+ * se vuelven a crear.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public class CacheSprites {
+    /**
+     * Número máximo de tamaños de bola distintos que se guardan.
+     */
+    static final int MAXIMO_NIVELES = 8;
+
+    /**
+     * Lienzo para el que se han creado los sprites.
+     */
+    private Lienzo lienzo = null;
+    private final Sprite[] bolas = new Sprite[MAXIMO_NIVELES];
+    private final float[] radioBolas = new float[MAXIMO_NIVELES];
+    private Sprite protagonista = null;
+
+    //Las tres tonalidades de la bola en formato RED-GREEN-BLUE
+    private Color sombra = new Color(0.6f,0f,0f);
+    private Color cuerpo = new Color(0.9f,0f,0f);
+    private Color brillo = new Color(1f,0.85f,0.85f);
+
+    /**
+     * Cambia los colores de las bolas. Los sprites de las bolas se volverán a crear.
+     * @param sombra Color del borde en sombra.
+     * @param cuerpo Color principal.
+     * @param brillo Color del brillo.
+     */
+    public void setColoresBolas(Color sombra, Color cuerpo, Color brillo) {
+        this.sombra = sombra;
+        this.cuerpo = cuerpo;
+        this.brillo = brillo;
+        invalidar();
+    }
+
+    /**
+     * Olvida todos los sprites creados, para que se vuelvan a crear la próxima
+     * vez que se pidan (por ejemplo, porque ha cambiado la escala o los colores).
+     */
+    public void invalidar() {
+        for(int i = 0; i < bolas.length; i++) {
+            bolas[i] = null;
+        }
+        protagonista = null;
+    }
+
+    private void compruebaLienzo(Lienzo l) {
+        if(l != lienzo) {
+            invalidar();
+            lienzo = l;
+        }
+    }
+
+    /**
+     * Dibuja una bola. Si hay un sprite de su tamaño, lo usa; si no (porque
+     * la bola no tiene un tamaño de los normales), dibuja sus primitivas.
+     * @param l Lienzo donde dibujar.
+     * @param nivel Número de veces que se ha dividido la bola.
+     * @param x Coordenada X del centro.
+     * @param y Coordenada Y del centro.
+     * @param radio Radio de la bola.
+     */
+    public void dibujaBola(Lienzo l, int nivel, float x, float y, float radio) {
+        compruebaLienzo(l);
+        if(nivel < 0 || nivel >= MAXIMO_NIVELES) {
+            Bola.dibuja(l, x, y, radio, sombra, cuerpo, brillo);
+            return;
+        }
+        Sprite s = bolas[nivel];
+        if(s == null || radioBolas[nivel] != radio) {
+            int lado = (int) Math.ceil(radio * 2) + 2;
+            s = l.creaSprite(lado, lado, lado / 2f, lado / 2f);
+            Bola.dibuja(s.getLienzo(), lado / 2f, lado / 2f, radio, sombra, cuerpo, brillo);
+            bolas[nivel] = s;
+            radioBolas[nivel] = radio;
+        }
+        l.dibujaSprite(s, x, y);
+    }
+
+    /**
+     * Dibuja al protagonista.
+     * @param l Lienzo donde dibujar.
+     * @param x Coordenada X de la parte izquierda de su figura.
+     * @param y Coordenada Y de la parte superior de su figura.
+     */
+    public void dibujaProtagonista(Lienzo l, float x, float y) {
+        compruebaLienzo(l);
+        if(protagonista == null) {
+            protagonista = l.creaSprite(Protagonista.ANCHURA_FIGURA, Protagonista.ALTURA_FIGURA, 0, 0);
+            Protagonista.dibuja(protagonista.getLienzo(), 0, 0);
+        }
+        l.dibujaSprite(protagonista, x, y);
+    }
+}
@@ -0,0 +1,32 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.objetosanimados;
+
+/**
+ * Interfaz para los objetos animados que tienen que comprobar si chocan con
+ * las bolas (el protagonista y los disparos).
+ *
+ * En cada tick, el juego primero mueve todos los objetos animados, después
+ * coloca las bolas en su rejilla de colisiones (para encontrar rápidamente
+ * qué bolas están cerca de un punto), y finalmente llama a comprobarColisiones()
+ * de todos los objetos que implementen esta interfaz.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public interface Colisionable {
+    /**
+     * Comprueba si el objeto choca con alguna bola y actúa en consecuencia. Para
+     * saber qué bolas están cerca, debe usar el método getBolasCercanas() de Juego.
+     */
+    public void comprobarColisiones();
+}
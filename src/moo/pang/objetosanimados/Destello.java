@@ -14,7 +14,7 @@ package moo.pang.objetosanimados;
 
 import java.awt.Color;
 import java.util.Random;
-import moo.multimedia.Ventana;
+import moo.multimedia.Lienzo;
 import moo.pang.multimedia.Juego;
 
 /**
@@ -22,11 +22,15 @@ import moo.pang.multimedia.Juego;
  *
  * @author Mario Macías: http://mario.site.ac.upc.edu
  */
-public class Destello implements ObjetoAnimado {
+public class Destello implements ObjetoPredecible {
     /**
      * Radio máximo (en píxels) que alcanza el destello antes de desaparecer.
      */
-    private static float RADIO_MAXIMO = 10;
+    private static final float RADIO_MAXIMO = 10;
+    /**
+     * Velocidad (en píxels/segundo) a la que crece el radio del destello.
+     */
+    private static final float CRECIMIENTO = 25;
     /**
      * Posicion en pantalla (en píxels) del destello.
      */
@@ -35,43 +39,144 @@ public class Destello implements ObjetoAnimado {
      * Radio que en cada fotograma tiene el destello (va creciendo).
      */
     private float radio;
+    /**
+     * Radio que tenía el destello antes del último tick.
+     */
+    private float radioAnterior;
+    /**
+     * Color con el que se dibuja el destello (cambia en cada tick).
+     */
+    private Color color;
 
     private Juego elJuego;
 
     /**
-     * Crea un destello en una posición determinada.
+     * Posición del objeto en la lista de objetos animados del juego.
+     */
+    private int posicionEnLista = -1;
+
+    /**
+     * Crea un destello. Para no crear un objeto nuevo cada vez que se pincha una
+     * bola, los destellos se reciclan (ver Juego.lanzarDestello()), y cada vez
+     * que se usan se llama a reiniciar().
+     * @param elJuego Referencia al Juego donde el destello está ocurriendo.
+     */
+    public Destello(Juego elJuego) {
+        this.elJuego = elJuego;
+    }
+
+    /**
+     * Hace empezar el destello en una posición determinada.
      * @param centroX Coordenada X en pantalla (en píxels) del centro del destello.
      * @param centroY Coordenada Y en pantalla (en píxels) del centro del destello.
-     * @param elJuego Referencia al Juego donde el destello está ocurriendo.
      */
-    public Destello(float centroX, float centroY, Juego elJuego) {
+    public void reiniciar(float centroX, float centroY) {
         this.centroX = centroX;
         this.centroy = centroY;
-        this.elJuego = elJuego;
-        radio = 3;
+        radio = radioAnterior = 3;
+        color = PALETA[elJuego.getRandomDestellos().nextInt(PALETA.length)];
     }
     /**
-     * Objeto Random utilizado para crear colores aleatorios en cada fotograma.
+     * Semilla de los colores de la paleta. Es fija para que, con las mismas
+     * semillas del juego, los destellos tengan los mismos colores en cualquier
+     * programa (por ejemplo, una partida y su repetición).
+     */
+    private static final long SEMILLA_PALETA = 0x4D4F4F;
+    /**
+     * Colores aleatorios que puede tener un destello. Se calculan una sola vez
+     * al principio, en vez de crear un Color nuevo en cada tick.
      */
-    private static Random RND = new Random();
+    private static final Color[] PALETA = new Color[64];
+    static {
+        Random aleatorio = new Random(SEMILLA_PALETA);
+        for(int i = 0; i < PALETA.length; i++) {
+            PALETA[i] = new Color(aleatorio.nextFloat(), aleatorio.nextFloat(), aleatorio.nextFloat());
+        }
+    }
 
     /**
-     * Implementación del método moverYDibujar de la interfaz ObjetoAnimado.
-     * Simplemente incrementa un poco el radio en cada fotograma y dibuja el
-     * destello. Cuando el radio del destello alcanza una determinada medida,
+     * Implementación del método mover de la interfaz ObjetoAnimado.
+     * Simplemente incrementa un poco el radio en cada tick y elige un nuevo
+     * color (con los números aleatorios de destellos del juego, ver
+     * Juego.getRandomDestellos()). Cuando el radio del destello alcanza una determinada medida,
      * se elimina de la lista de objetos animados.
-     * @param v
+     * @param segundos Tiempo que dura el tick de la simulación.
      */
-    public void moverYDibujar(Ventana v) {
-        radio++;
+    public void mover(float segundos) {
+        radioAnterior = radio;
+        radio += CRECIMIENTO * segundos;
         if(radio > RADIO_MAXIMO) {
             elJuego.eliminarObjetoAnimado(this);
         } else {
-            Color colorAleatorio =  new Color(RND.nextFloat(), RND.nextFloat(), RND.nextFloat());
-            v.dibujaCirculo(centroX, centroy, radio,colorAleatorio);
-            v.dibujaCirculo(centroX, centroy, radio-3, Color.black);
+            color = PALETA[elJuego.getRandomDestellos().nextInt(PALETA.length)];
         }
     }
 
+    /**
+     * Implementación del método getTicksTranquilos de la interfaz ObjetoPredecible:
+     * cuenta los ticks que faltan para que el destello desaparezca.
+     */
+    public int getTicksTranquilos(float segundos, int maximo) {
+        int ticks = 0;
+        for(float r = radio + CRECIMIENTO * segundos; ticks < maximo && r <= RADIO_MAXIMO; ticks++) {
+            r += CRECIMIENTO * segundos;
+        }
+        return ticks;
+    }
+
+    /**
+     * Implementación del método saltar de la interfaz ObjetoPredecible. Hace
+     * lo mismo que mover() en cada tick, también elegir el color, para que
+     * los números aleatorios de los destellos sigan saliendo igual.
+     */
+    public void saltar(int ticks, float segundos) {
+        for(int n = 0; n < ticks; n++) {
+            radio += CRECIMIENTO * segundos;
+            color = PALETA[elJuego.getRandomDestellos().nextInt(PALETA.length)];
+        }
+        radioAnterior = radio;
+    }
 
+    /**
+     * Implementación del método dibujar de la interfaz ObjetoAnimado.
+     * @param lienzo
+     * @param interpolacion
+     */
+    public void dibujar(Lienzo lienzo, float interpolacion) {
+        float r = radioAnterior + (radio - radioAnterior) * interpolacion;
+        dibuja(lienzo, centroX, centroy, r, color);
+    }
+
+    /**
+     * Dibuja un destello: un anillo de un color.
+     * @param lienzo Lienzo donde dibujar.
+     * @param centroX Coordenada X del centro.
+     * @param centroY Coordenada Y del centro.
+     * @param radio Radio exterior del anillo.
+     * @param color Color del anillo.
+     */
+    public static void dibuja(Lienzo lienzo, float centroX, float centroY, float radio, Color color) {
+        lienzo.dibujaCirculo(centroX, centroY, radio, color);
+        lienzo.dibujaCirculo(centroX, centroY, radio - 3, Color.black);
+    }
+
+    public float getCentroX() {
+        return centroX;
+    }
+
+    public float getCentroY() {
+        return centroy;
+    }
+
+    public float getRadio() {
+        return radio;
+    }
+
+    public int getPosicionEnLista() {
+        return posicionEnLista;
+    }
+
+    public void setPosicionEnLista(int posicion) {
+        posicionEnLista = posicion;
+    }
 }
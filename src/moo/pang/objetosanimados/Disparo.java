@@ -12,7 +12,10 @@
 package moo.pang.objetosanimados;
 
 import java.awt.Color;
-import moo.multimedia.Ventana;
+import java.util.List;
+import moo.multimedia.Lienzo;
+import moo.pang.eventos.EventoColisiones;
+import moo.pang.eventos.EventosActivos;
 import moo.pang.multimedia.Juego;
 
 /**
@@ -21,7 +24,7 @@ import moo.pang.multimedia.Juego;
  *
  * Mario Macías: http://mario.site.ac.upc.edu
  */
-public class Disparo implements ObjetoAnimado {
+public class Disparo implements ObjetoPredecible, Colisionable {
     /**
      * Altura del triangulo que representa el gancho (en pixels)
      */
@@ -32,13 +35,18 @@ public class Disparo implements ObjetoAnimado {
     private static final float BASE_FLECHA = 16;
 
     /**
-     * Velocidad a la que se mueve el gancho (en pixels/fotograma)
+     * Velocidad a la que se mueve el gancho (en pixels/segundo)
      */
-    private static final float VELOCIDAD = 10;
+    private static final float VELOCIDAD = 250;
     /**
      * Grosor de la cuerda que va atada al gancho
      */
     private static final float GROSOR_CUERDA = 6;
+    /**
+     * Margen (en píxels) que se deja al calcular los ticks tranquilos, por los
+     * redondeos de las comprobaciones de colisión.
+     */
+    private static final float HOLGURA = 1;
 
     /**
      * Constante que indica cuántos disparos se pueden haber a la vez en
@@ -46,43 +54,50 @@ public class Disparo implements ObjetoAnimado {
      */
     public static final int MAXIMO_DISPAROS_SIMULTANEOS = 2;
 
-    /**
-     * Contador estático que cuenta cuántos ganchos hay en todo momento
-     * en pantalla.
-     */
-    private static int disparosSimultaneos = 0;
-
     /**
      * Posicion x e y de la punta del gancho.
      */
     private float posicionY, posicionX;
+    /**
+     * Altura de la punta del gancho antes del último tick.
+     */
+    private float anteriorY;
+    /**
+     * Ticks que lleva subiendo. La altura se calcula a partir de ellos (ver
+     * altura()) en vez de restando tick a tick, para poder saltar ticks de golpe.
+     */
+    private int ticksSubiendo;
+    /**
+     * Jugador que ha lanzado el gancho.
+     */
+    private int jugador;
     private Juego elJuego;
 
     /**
-     * Crea un gancho, cuya altura empezará en el suelo.
-     * @param elJuego Instancia del Juego en el que será lanzado.
-     * @param posicionX Coordenada X en pixels del gancho.
+     * Posición del objeto en la lista de objetos animados del juego.
      */
-    public Disparo(Juego elJuego, float posicionX) {
-        this.elJuego = elJuego;
-        this.posicionX = posicionX;
-        this.posicionY = elJuego.getCoordenadaYSuelo();
-        disparosSimultaneos++;
-    }
+    private int posicionEnLista = -1;
 
     /**
-     * Modifica el contador de disparos simultáneos que hay en pantalla.
-     * @param disparos Numero de disparos simultaneos contados.
+     * Crea un gancho. Para no crear un objeto nuevo en cada disparo, los ganchos
+     * se reciclan (ver Juego.lanzarDisparo()), y cada vez que se lanzan se
+     * llama a reiniciar().
+     * @param elJuego Instancia del Juego en el que será lanzado.
      */
-    public static void setTotalDisparos(int disparos) {
-        disparosSimultaneos = disparos;
+    public Disparo(Juego elJuego) {
+        this.elJuego = elJuego;
     }
+
     /**
-     * Obtiene el valor del contador de disparos simultáneos que hay en pantalla.
-     * @return Numero de disparos simultáneos contados.
+     * Coloca el gancho en el suelo, listo para subir.
+     * @param posicionX Coordenada X en pixels del gancho.
+     * @param jugador Jugador que lo lanza.
      */
-    public static int getTotalDisparos() {
-        return disparosSimultaneos;
+    public void reiniciar(float posicionX, int jugador) {
+        this.posicionX = posicionX;
+        this.jugador = jugador;
+        this.posicionY = this.anteriorY = elJuego.getCoordenadaYSuelo();
+        this.ticksSubiendo = 0;
     }
 
     /**
@@ -91,60 +106,215 @@ public class Disparo implements ObjetoAnimado {
     private static final Color MARRON = new Color(0.7f, 0.35f, 0);
 
     /**
-     * Implementación del método moverYDibujar de la interfaz ObjetoAnimado.
-     * Incrementa la altura de la flecha hasta que llega al techo. También
-     * verifica si ha colisionado con alguna bola.
-     * @param ventana La ventana donde se dibujará.
+     * Implementación del método mover de la interfaz ObjetoAnimado.
+     * Incrementa la altura de la flecha hasta que llega al techo.
+     * @param segundos Tiempo que dura el tick de la simulación.
      */
-    public void moverYDibujar(Ventana ventana) {
+    public void mover(float segundos) {
+        anteriorY = posicionY;
         //si la flecha ha tocado el techo, desapareces
         if(posicionY < 0) {
             elJuego.eliminarObjetoAnimado(this);
-            disparosSimultaneos--;
         } else {
             // Si no, sigue subiendo
-            posicionY -= VELOCIDAD;
+            ticksSubiendo++;
+            posicionY = altura(ticksSubiendo, segundos);
+        }
+    }
+
+    /**
+     * Altura de la punta del gancho después de subir unos ticks desde el suelo.
+     */
+    private float altura(int ticks, float segundos) {
+        return elJuego.getCoordenadaYSuelo() - ticks * (VELOCIDAD * segundos);
+    }
+
+    /**
+     * Calcula en qué tick (contado desde que se lanzó) el gancho pasa del techo.
+     * Siempre es posterior al tick actual.
+     */
+    private int tickTecho(float segundos) {
+        int k = Math.max(ticksSubiendo + 1, (int) Math.ceil(elJuego.getCoordenadaYSuelo() / (VELOCIDAD * segundos)));
+        // la estimación puede fallar por un tick por los redondeos: se ajusta
+        // con la misma fórmula que se usa al mover el gancho
+        while(k > ticksSubiendo + 1 && altura(k - 1, segundos) < 0) {
+            k--;
         }
+        while(altura(k, segundos) >= 0) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Implementación del método getTicksTranquilos de la interfaz ObjetoPredecible.
+     * Cuenta los ticks que faltan para que el gancho llegue al techo y, como
+     * la cuerda llega hasta el suelo, los ticks durante los que seguro que
+     * ninguna bola se acerca a ella lo suficiente (en horizontal) para tocarla.
+     */
+    public int getTicksTranquilos(float segundos, int maximo) {
+        int ticks = posicionY < 0 ? 0 : Math.min(maximo, tickTecho(segundos) - ticksSubiendo);
+        for(int i = 0; i < elJuego.getNumeroBolas() && ticks > 0; i++) {
+            Bola bola = elJuego.getBola(i);
+            float distancia = Math.abs(bola.getCentroX() - posicionX) - bola.getRadio() - GROSOR_CUERDA / 2 - HOLGURA;
+            float acercamiento = Math.abs(bola.getVelocidadX()) * segundos;
+            if(distancia <= 0) {
+                return 0;
+            }
+            if(acercamiento > 0) {
+                ticks = (int) Math.min(ticks, distancia / acercamiento);
+            }
+        }
+        return ticks;
+    }
+
+    /**
+     * Implementación del método saltar de la interfaz ObjetoPredecible: calcula
+     * la altura con la misma fórmula que mover(), así que acaba exactamente a la
+     * misma altura que moviéndose tick a tick.
+     */
+    public void saltar(int ticks, float segundos) {
+        ticksSubiendo += ticks;
+        posicionY = anteriorY = altura(ticksSubiendo, segundos);
+    }
 
-        //Comprobamos si colisiona con alguna bola de la lista del juego
-        for(ObjetoAnimado obj : elJuego.getObjetosAnimados()) {
-            if(obj instanceof Bola && compruebaColision((Bola)obj)) {
-                ((Bola)obj).pinchar();
-                elJuego.eliminarObjetoAnimado(this);
-                disparosSimultaneos--;
-                break;
+    /**
+     * Implementación del método comprobarColisiones de la interfaz Colisionable.
+     * Verifica si el gancho o la cuerda han colisionado con alguna bola durante
+     * el último tick. Sólo se miran las bolas que están cerca de la cuerda.
+     */
+    public void comprobarColisiones() {
+        EventoColisiones evento = null;
+        if(EventosActivos.isColisiones()) {
+            evento = new EventoColisiones();
+            evento.begin();
+        }
+        List<Bola> cercanas = elJuego.getBolasCercanas(posicionX - GROSOR_CUERDA / 2, posicionY,
+                posicionX + GROSOR_CUERDA / 2, elJuego.getCoordenadaYSuelo());
+        int comprobadas = 0, tocadas = 0;
+        // si el gancho toca varias bolas durante el tick, sólo pincha la que ha tocado primero
+        Bola primera = null;
+        float instantePrimera = Barrido.SIN_CONTACTO;
+        for(int i = 0; i < cercanas.size(); i++) {
+            Bola bola = cercanas.get(i);
+            comprobadas++;
+            float instante = instanteColision(bola);
+            if(instante < instantePrimera) {
+                primera = bola;
+                instantePrimera = instante;
             }
         }
+        if(primera != null) {
+            tocadas++;
+            primera.pinchar();
+            elJuego.eliminarObjetoAnimado(this);
+        }
+        if(evento != null && evento.shouldCommit()) {
+            evento.objeto = "disparo";
+            evento.comprobadas = comprobadas;
+            evento.tocadas = tocadas;
+            evento.commit();
+        }
+    }
 
+    /**
+     * Implementación del método dibujar de la interfaz ObjetoAnimado.
+     * Dibuja una flecha y una cuerda que va desde la flecha hasta el suelo.
+     * @param lienzo El lienzo donde se dibujará.
+     * @param interpolacion Punto entre la posición anterior y la actual.
+     */
+    public void dibujar(Lienzo lienzo, float interpolacion) {
+        float y = anteriorY + (posicionY - anteriorY) * interpolacion;
+        dibuja(lienzo, posicionX, y, elJuego.getCoordenadaYSuelo());
+    }
+
+    /**
+     * Dibuja un gancho y su cuerda.
+     * @param lienzo Lienzo donde dibujar.
+     * @param x Coordenada X de la punta del gancho.
+     * @param y Coordenada Y de la punta del gancho.
+     * @param suelo Coordenada Y del suelo, donde acaba la cuerda.
+     */
+    public static void dibuja(Lienzo lienzo, float x, float y, float suelo) {
         //dibujamos una flecha y una cuerda
-        ventana.dibujaTriangulo(posicionX, posicionY,
-                posicionX - BASE_FLECHA / 2, posicionY + ALTURA_GANCHO,
-                posicionX + BASE_FLECHA / 2, posicionY + ALTURA_GANCHO,
+        lienzo.dibujaTriangulo(x, y,
+                x - BASE_FLECHA / 2, y + ALTURA_GANCHO,
+                x + BASE_FLECHA / 2, y + ALTURA_GANCHO,
                 Color.LIGHT_GRAY);
-        ventana.dibujaRectangulo(posicionX - GROSOR_CUERDA / 2, posicionY + ALTURA_GANCHO,
-                GROSOR_CUERDA, elJuego.getCoordenadaYSuelo()- (posicionY + ALTURA_GANCHO), MARRON);
+        lienzo.dibujaRectangulo(x - GROSOR_CUERDA / 2, y + ALTURA_GANCHO,
+                GROSOR_CUERDA, suelo - (y + ALTURA_GANCHO), MARRON);
+    }
+
+    /**
+     * Jugador que ha lanzado el gancho.
+     */
+    public int getJugador() {
+        return jugador;
     }
 
     /**
-     * Comprueba si el gancho ha colisionado con una bola. Es decir, si la distancia
-     * al centro de la bola es menor que su radio para alguno de los puntos del gancho
+     * Coordenada X de la punta del gancho.
+     */
+    public float getPosicionX() {
+        return posicionX;
+    }
+
+    /**
+     * Coordenada Y de la punta del gancho.
+     */
+    public float getPosicionY() {
+        return posicionY;
+    }
+
+    /**
+     * Comprueba si el gancho ha colisionado con una bola durante el último tick.
      * @param b La instancia de Bola cuya colisión queremos comparar
      * @return true si ha colisionado. false en caso contrario
+     * @see #instanteColision(Bola)
      */
     public boolean compruebaColision(Bola b) {
+        return instanteColision(b) != Barrido.SIN_CONTACTO;
+    }
+
+    /**
+     * Busca en qué momento del último tick el gancho ha tocado una bola. Hay
+     * contacto si la bola está entera por debajo de la punta y a menos de su
+     * radio de la cuerda, o si alguna de las esquinas del gancho está a menos
+     * de su radio del centro de la bola.
+     *
+     * No sólo se mira dónde están la bola y el gancho al final del tick, sino
+     * todo el camino que han hecho desde su posición anterior (ver Barrido).
+     * Así, aunque el tick sea largo, una bola pequeña no puede atravesar el
+     * gancho sin que se note.
+     * @param b La instancia de Bola cuya colisión queremos comparar
+     * @return Instante del primer contacto como fracción del tick (entre 0 y 1),
+     *         o Barrido.SIN_CONTACTO si no se han tocado.
+     */
+    float instanteColision(Bola b) {
+        float r = b.getRadio();
+        // posición de la bola respecto a la punta del gancho, al principio del
+        // tick, y cuánto cambia durante el tick
+        float x = b.getAnteriorX() - posicionX;
+        float y = b.getAnteriorY() - anteriorY;
+        float desplazamientoX = b.getCentroX() - b.getAnteriorX();
+        float desplazamientoY = (b.getCentroY() - posicionY) - y;
+
         //comprobamos si la bola colisiona con la cuerda
-        if(Math.abs(b.getCentroX() - posicionX) < Math.abs(b.getRadio() + GROSOR_CUERDA / 2)
-           && b.getCentroY() - b.getRadio() >= posicionY) {
-            return true;
-        }
-        // si no ha colisionado con la cuerda, miramos si ha tocado algunas de las esquinas del gancho
-        float esquinaDerechaDistanciaX = (posicionX + GROSOR_CUERDA / 2) - b.getCentroX();
-        float esquinaIzquierdaDistanciaX = (posicionX - GROSOR_CUERDA / 2) - b.getCentroX();
-        float esquinaDistanciaY = (posicionY + ALTURA_GANCHO) - b.getCentroY();
-        if(Math.sqrt(esquinaDerechaDistanciaX*esquinaDerechaDistanciaX+esquinaDistanciaY*esquinaDistanciaY) < b.getRadio()
-            || Math.sqrt(esquinaIzquierdaDistanciaX*esquinaIzquierdaDistanciaX+esquinaDistanciaY*esquinaDistanciaY) < b.getRadio()) {
-            return true;
-        }
-        return false;
+        float instante = Barrido.contactoFranja(x, desplazamientoX, r + GROSOR_CUERDA / 2,
+                y - r, desplazamientoY);
+        // miramos también las esquinas del gancho, por si la ha tocado antes
+        instante = Math.min(instante, Barrido.contactoCirculo(x - GROSOR_CUERDA / 2, y - ALTURA_GANCHO,
+                desplazamientoX, desplazamientoY, r));
+        instante = Math.min(instante, Barrido.contactoCirculo(x + GROSOR_CUERDA / 2, y - ALTURA_GANCHO,
+                desplazamientoX, desplazamientoY, r));
+        return instante;
+    }
+
+    public int getPosicionEnLista() {
+        return posicionEnLista;
+    }
+
+    public void setPosicionEnLista(int posicion) {
+        posicionEnLista = posicion;
     }
 }
@@ -12,21 +12,53 @@
 
 package moo.pang.objetosanimados;
 
-import moo.multimedia.Ventana;
+import moo.multimedia.Lienzo;
 
 /**
  * Interfaz que describe todos los métodos que debe implementar cualquier objeto
  * que quiera ser movido por el videojuego y pintado en pantalla.
  *
+ * El movimiento y el dibujo van por separado: el juego llama a mover() un número
+ * fijo de veces por segundo (los "ticks" de la simulación), y llama a dibujar()
+ * tantas veces por segundo como la pantalla sea capaz de mostrar. Así, la
+ * velocidad del juego no depende de lo rápido que dibuje el ordenador.
+ *
  * @author Mario Macías: http://mario.site.ac.upc.edu
  */
 public interface ObjetoAnimado {
     /**
-     * Este método se llama para cada fotograma del juego. En él, el objeto
-     * que implemente esta interfaz deberá moverse un paso en relación al
-     * fotograma anterior, y redibujarse por la ventana.
-     * 
-     * @param ventana Ventana donde se dibujará el objeto animado.
+     * Este método se llama en cada tick de la simulación. En él, el objeto
+     * que implemente esta interfaz deberá moverse según el tiempo que haya
+     * pasado desde el tick anterior. Por eso, todas las velocidades deberían
+     * expresarse en píxels por segundo.
+     *
+     * @param segundos Tiempo simulado (en segundos) que dura este tick.
+     */
+    public void mover(float segundos);
+
+    /**
+     * Este método se llama para cada fotograma que se muestre. Como los
+     * fotogramas no tienen por qué coincidir con los ticks de la simulación,
+     * el objeto debe dibujarse en un punto intermedio entre la posición que
+     * tenía antes del último tick y la posición actual.
+     *
+     * @param lienzo Lienzo donde se dibujará el objeto animado.
+     * @param interpolacion Valor entre 0 y 1. Con 0 se dibuja el objeto en
+     *        la posición anterior al último tick, y con 1 en la posición actual.
+     */
+    public void dibujar(Lienzo lienzo, float interpolacion);
+
+    /**
+     * Devuelve la posición que ocupa el objeto en la lista de objetos animados
+     * del juego. Así el juego lo puede eliminar de la lista sin tener que buscarlo.
+     * @return La posición guardada con setPosicionEnLista().
+     */
+    public int getPosicionEnLista();
+
+    /**
+     * Guarda la posición que ocupa el objeto en la lista de objetos animados
+     * del juego. Sólo la debe llamar el juego.
+     * @param posicion Posición en la lista (negativa si no está en la lista).
      */
-    public void moverYDibujar(Ventana v);
+    public void setPosicionEnLista(int posicion);
 }
@@ -0,0 +1,47 @@
+/*------------------------------------------------------------------------------
+ * Este código está distribuido bajo una licencia del tipo BEER-WARE.
+ * -----------------------------------------------------------------------------
+ * Mario Macías Lloret escribió este archivo. Teniendo esto en cuenta,
+ * puedes hacer lo que quieras con él: modificarlo, redistribuirlo, venderlo,
+ * etc, aunque siempre deberás indicar la autoría original en tu código.
+ * Además, si algún día nos encontramos por la calle y piensas que este código
+ * te ha sido de utilidad, estás obligado a invitarme a una cerveza (a ser
+ * posible, de las buenas) como recompensa por mi contribución.
+ * -----------------------------------------------------------------------------
+ */
+
+package moo.pang.objetosanimados;
+
+/**
+ * Objeto animado cuyo movimiento se puede calcular por adelantado durante
+ * varios ticks. El juego lo usa para avanzar la simulación a saltos (ver
+ * Juego.avanzarRapido()): en vez de mover los objetos tick a tick, les pregunta
+ * durante cuántos ticks no les va a pasar nada más que moverse (ni chocar, ni
+ * desaparecer, ni disparar...), y los avanza todos esos ticks de golpe.
+ *
+ * Saltar varios ticks debe dejar el objeto exactamente igual que si se hubiera
+ * movido tick a tick con mover(), para que una partida grabada se repita igual
+ * de las dos maneras.
+ *
+ * @author Mario Macías: http://mario.site.ac.upc.edu
+ */
+public interface ObjetoPredecible extends ObjetoAnimado {
+    /**
+     * Cuenta cuántos de los ticks siguientes son "tranquilos" para este objeto:
+     * ticks en los que sólo se mueve. Se supone que durante esos ticks se
+     * pulsan los mismos controles que en el último tick. Puede devolver menos
+     * ticks de los que realmente son tranquilos (nunca más).
+     * @param segundos Tiempo que dura cada tick de la simulación.
+     * @param maximo No hace falta contar más allá de este número de ticks.
+     * @return Número de ticks tranquilos, entre 0 y maximo.
+     */
+    public int getTicksTranquilos(float segundos, int maximo);
+
+    /**
+     * Avanza el objeto varios ticks de golpe. Sólo se debe llamar con un número
+     * de ticks tranquilos (ver getTicksTranquilos()).
+     * @param ticks Número de ticks que se avanzan.
+     * @param segundos Tiempo que dura cada tick de la simulación.
+     */
+    public void saltar(int ticks, float segundos);
+}
@@ -13,7 +13,10 @@
 package moo.pang.objetosanimados;
 
 import java.awt.Color;
-import moo.multimedia.Ventana;
+import java.util.List;
+import moo.multimedia.Lienzo;
+import moo.pang.eventos.EventoColisiones;
+import moo.pang.eventos.EventosActivos;
 import moo.pang.multimedia.Juego;
 
 /**
@@ -21,51 +24,159 @@ import moo.pang.multimedia.Juego;
  *
  * @author Mario Macías: http://mario.site.ac.upc.edu
  */
-public class Protagonista implements ObjetoAnimado {
+public class Protagonista implements ObjetoPredecible, Colisionable {
     /**
      * Posición x e y de la esquina superior izquierda del cuadro que engloba al protagonista.
      */
     private float posicionX, posicionY;
+    /**
+     * Posición x antes del último tick.
+     */
+    private float anteriorX;
+    /**
+     * Posición x cuando empezó a andar hacia donde anda ahora, ticks que lleva
+     * andando desde entonces y controles de dirección (Juego.CONTROL_DERECHA y
+     * Juego.CONTROL_IZQUIERDA) con los que anda. La posición se calcula a
+     * partir de ellos (ver andar()), para poder saltar ticks de golpe.
+     */
+    private float origenX;
+    private int ticksAndando;
+    private int direccion;
+    /**
+     * Número del jugador que lo controla (ver Juego.setJugadores()).
+     */
+    private final int jugador;
 
     private Juego elJuego;
+
+    /**
+     * Posición del objeto en la lista de objetos animados del juego.
+     */
+    private int posicionEnLista = -1;
     /**
-     * Instancia al protagonista.
+     * Instancia al protagonista. Los protagonistas empiezan repartidos por el
+     * escenario (si sólo hay uno, en medio).
      * @param elJuego El objeto juego donde el protagonista estará presente.
+     * @param jugador Número del jugador que lo controla, empezando por 0.
      */
-    public Protagonista(Juego elJuego) {
+    public Protagonista(Juego elJuego, int jugador) {
         this.elJuego = elJuego;
-        posicionX = elJuego.getCoordenadaXMargenDerecho() / 2;
+        this.jugador = jugador;
+        posicionX = anteriorX = origenX = elJuego.getCoordenadaXMargenDerecho() * (jugador + 1) / (elJuego.getJugadores() + 1);
         posicionY = elJuego.getCoordenadaYSuelo() - Protagonista.ALTURA_COLISION;
     }
 
     /**
-     * Implementa el método moverYDibujar de la interfaz ObjetoAnimado. Este método
-     * comprueba qué teclas están pulsadas y mueve al jugador a izquierda o derecha
+     * Implementa el método mover de la interfaz ObjetoAnimado. Este método
+     * comprueba qué controles están pulsados en este tick y mueve al jugador a izquierda o derecha
      * en consecuencia. Cuando la barra ha sido pulsada, también dispara un gancho.
      *
-     * A continuación, comprueba si el jugador ha colisionado con alguna bola.
-     *
-     * Al final de todo, dibuja al protagonista en la ventana.
-     *
-     * @param ventana Ventana donde se dibujará el personaje.
+     * @param segundos Tiempo que dura el tick de la simulación.
      */
-    public void moverYDibujar(Ventana ventana) {
-        if(ventana.isPulsadoDerecha()) {
-            posicionX += VELOCIDAD_HORIZONTAL;
-            if(posicionX + ANCHURA_COLISION > elJuego.getCoordenadaXMargenDerecho()) {
-                posicionX = elJuego.getCoordenadaXMargenDerecho() - ANCHURA_COLISION;
-            }
+    public void mover(float segundos) {
+        anteriorX = posicionX;
+        andar(1, segundos);
+        if(elJuego.isPulsado(jugador, Juego.CONTROL_ESPACIO) && elJuego.getDisparos(jugador) < Disparo.MAXIMO_DISPAROS_SIMULTANEOS) {
+            elJuego.lanzarDisparo(posicionX + ANCHURA_COLISION / 2, jugador);
         }
-        if(ventana.isPulsadoIzquierda()) {
-            posicionX -= VELOCIDAD_HORIZONTAL;
-            if(posicionX < elJuego.getCoordenadaXMargenIzquierdo()) {
-                posicionX = elJuego.getCoordenadaXMargenIzquierdo();
-            }
+    }
+
+    /**
+     * Mueve al protagonista unos ticks a izquierda o derecha, según los
+     * controles pulsados, sin salirse del escenario. Si los controles de
+     * dirección han cambiado, vuelve a empezar a contar desde donde está.
+     */
+    private void andar(int ticks, float segundos) {
+        int controles = elJuego.getControles(jugador) & (Juego.CONTROL_DERECHA | Juego.CONTROL_IZQUIERDA);
+        if(controles != direccion) {
+            origenX = posicionX;
+            ticksAndando = 0;
+            direccion = controles;
         }
-        if(ventana.isPulsadoEspacio() && Disparo.getTotalDisparos() < Disparo.MAXIMO_DISPAROS_SIMULTANEOS) {
-            elJuego.anyadirObjetoAnimado(new Disparo(elJuego, posicionX + ANCHURA_COLISION / 2));
+        ticksAndando += ticks;
+        posicionX = andar(origenX, direccion, ticksAndando, segundos,
+                elJuego.getCoordenadaXMargenIzquierdo(), elJuego.getCoordenadaXMargenDerecho());
+    }
+
+    /**
+     * Calcula dónde acaba un protagonista después de andar unos ticks con los
+     * mismos controles. Es lo que hace el protagonista en cada tick, y también
+     * lo usan los clientes de una partida en red para adelantarse a lo que dirá
+     * el servidor (ver ClienteRed). Los clientes lo calculan tick a tick, así
+     * que pueden acabar en una posición que se diferencia de la del servidor
+     * en algún redondeo, mucho menos de lo que se envía en las instantáneas.
+     * @param origenX Coordenada X de la parte izquierda del rectángulo de colisión
+     *        antes de empezar a andar.
+     * @param controles Controles del jugador (bits Juego.CONTROL_...).
+     * @param ticks Ticks que anda.
+     * @param segundos Tiempo que dura cada tick.
+     * @param margenIzquierdo Coordenada X de la pared izquierda.
+     * @param margenDerecho Coordenada X de la pared derecha.
+     * @return La nueva coordenada X.
+     */
+    public static float andar(float origenX, int controles, int ticks, float segundos, float margenIzquierdo, float margenDerecho) {
+        float paso = 0;
+        if((controles & Juego.CONTROL_DERECHA) != 0) {
+            paso += VELOCIDAD_HORIZONTAL * segundos;
+        }
+        if((controles & Juego.CONTROL_IZQUIERDA) != 0) {
+            paso -= VELOCIDAD_HORIZONTAL * segundos;
         }
+        if(paso == 0) {
+            return origenX;
+        }
+        float posicionX = origenX + ticks * paso;
+        // como siempre anda hacia el mismo lado, en cuanto llega a una pared se queda en ella
+        return Math.max(margenIzquierdo, Math.min(posicionX, margenDerecho - ANCHURA_COLISION));
+    }
+
+    /**
+     * Implementa el método getTicksTranquilos de la interfaz ObjetoPredecible.
+     * Si va a disparar, ningún tick es tranquilo. Si no, cuenta durante cuántos
+     * ticks seguro que ninguna bola le toca (si es invulnerable, da igual):
+     * una bola no le puede tocar mientras esté por encima de su cabeza, ni
+     * mientras esté más lejos (en horizontal) de lo que ella y el protagonista
+     * pueden acercarse en esos ticks.
+     */
+    public int getTicksTranquilos(float segundos, int maximo) {
+        if(elJuego.isPulsado(jugador, Juego.CONTROL_ESPACIO) && elJuego.getDisparos(jugador) < Disparo.MAXIMO_DISPAROS_SIMULTANEOS) {
+            return 0;
+        }
+        if(elJuego.isInvulnerable()) {
+            // que le toque una bola no cambia nada
+            return maximo;
+        }
+        boolean anda = elJuego.isPulsado(jugador, Juego.CONTROL_DERECHA) || elJuego.isPulsado(jugador, Juego.CONTROL_IZQUIERDA);
+        float velocidad = anda ? VELOCIDAD_HORIZONTAL * segundos : 0;
+        float centro = posicionX + ANCHURA_COLISION / 2;
+        int ticks = maximo;
+        for(int i = 0; i < elJuego.getNumeroBolas() && ticks > 0; i++) {
+            Bola bola = elJuego.getBola(i);
+            // se deja un píxel de margen por los redondeos
+            int porEncima = bola.ticksPorEncimaDe(posicionY - HOLGURA, segundos, ticks);
+            float distancia = Math.abs(bola.getCentroX() - centro) - ANCHURA_COLISION / 2 - bola.getRadio() - HOLGURA;
+            float acercamiento = Math.abs(bola.getVelocidadX()) * segundos + velocidad;
+            int lejos = distancia <= 0 ? 0
+                    : (acercamiento == 0 ? ticks : (int) Math.min(ticks, distancia / acercamiento));
+            ticks = Math.min(ticks, Math.max(porEncima, lejos));
+        }
+        return ticks;
+    }
+
+    /**
+     * Implementa el método saltar de la interfaz ObjetoPredecible: calcula la
+     * posición con la misma fórmula que mover(), así que acaba exactamente en
+     * la misma posición que moviéndose tick a tick.
+     */
+    public void saltar(int ticks, float segundos) {
+        andar(ticks, segundos);
+        anteriorX = posicionX;
+    }
 
+    /**
+     * Implementa el método comprobarColisiones de la interfaz Colisionable.
+     */
+    public void comprobarColisiones() {
         //Comprobar si alguna bola choca con el protagonista. Se define un rectangulo
         //que contiene la mayor parte del cuerpo del protagonista, cuyas esquina supe-
         //rior izquierda es el punto (posicionX,posicionY) y su esquina inferior derecha
@@ -73,39 +184,126 @@ public class Protagonista implements ObjetoAnimado {
         //Si ese rectangulo
         //colisiona con alguna de las bolas, se le dice a la clase juego que el
         //jugador ha sido tocado, para que actue en consecuencia segun la funcion
-        //jugadorTocado() de la clase Juego
-        for(ObjetoAnimado obj : elJuego.getObjetosAnimados()) {
-            if(obj instanceof Bola) {
-                Bola bola = (Bola) obj;
-                if(bola.getCentroY() + bola.getRadio() >= posicionY) {
-                    if((bola.getCentroX() + bola.getRadio() >= posicionX)
-                        && (bola.getCentroX() - bola.getRadio() <= posicionX + ANCHURA_COLISION)) {
-                        elJuego.jugadorTocado();
-                        break;
-                    }
-                }
+        //jugadorTocado() de la clase Juego. Sólo se miran las bolas cercanas a
+        //la zona por donde ha pasado el rectángulo durante el tick.
+        EventoColisiones evento = null;
+        if(EventosActivos.isColisiones()) {
+            evento = new EventoColisiones();
+            evento.begin();
+        }
+        List<Bola> cercanas = elJuego.getBolasCercanas(Math.min(posicionX, anteriorX), posicionY,
+                Math.max(posicionX, anteriorX) + ANCHURA_COLISION, posicionY + ALTURA_COLISION);
+        int comprobadas = 0, tocadas = 0;
+        for(int i = 0; i < cercanas.size(); i++) {
+            Bola bola = cercanas.get(i);
+            comprobadas++;
+            if(instanteColision(bola) != Barrido.SIN_CONTACTO) {
+                tocadas++;
+                elJuego.jugadorTocado();
+                break;
             }
         }
+        if(evento != null && evento.shouldCommit()) {
+            evento.objeto = "protagonista";
+            evento.comprobadas = comprobadas;
+            evento.tocadas = tocadas;
+            evento.commit();
+        }
+    }
+
+    /**
+     * Busca en qué momento del último tick una bola ha tocado el rectángulo de
+     * colisión del protagonista. Se mira todo el camino que han hecho la bola y
+     * el protagonista desde su posición anterior (ver Barrido), para que una
+     * bola rápida no pueda pasar a través del protagonista entre dos ticks.
+     * @param bola
+     * @return Instante del primer contacto como fracción del tick (entre 0 y 1),
+     *         o Barrido.SIN_CONTACTO si no se han tocado.
+     */
+    float instanteColision(Bola bola) {
+        float r = bola.getRadio();
+        // posición del centro de la bola respecto al centro del rectángulo (en X)
+        // y a su parte de arriba (en Y), al principio del tick
+        float x = bola.getAnteriorX() - (anteriorX + ANCHURA_COLISION / 2);
+        float y = bola.getAnteriorY() - posicionY;
+        float desplazamientoX = (bola.getCentroX() - posicionX) - (bola.getAnteriorX() - anteriorX);
+        float desplazamientoY = bola.getCentroY() - bola.getAnteriorY();
+        return Barrido.contactoFranja(x, desplazamientoX, ANCHURA_COLISION / 2 + r, y + r, desplazamientoY);
+    }
+
+    /**
+     * Implementa el método dibujar de la interfaz ObjetoAnimado: dibuja al
+     * protagonista en el lienzo.
+     *
+     * @param lienzo Lienzo donde se dibujará el personaje.
+     * @param interpolacion Punto entre la posición anterior y la actual.
+     */
+    public void dibujar(Lienzo lienzo, float interpolacion) {
+        float x = anteriorX + (posicionX - anteriorX) * interpolacion - MARGEN_IZQUIERDO_COLISION;
+        elJuego.getCacheSprites().dibujaProtagonista(lienzo, x, posicionY);
+    }
+
+    /**
+     * Dibuja la figura del protagonista con sus primitivas. Normalmente no se
+     * llama en cada fotograma, sino sólo para crear su sprite (ver CacheSprites).
+     * @param lienzo Lienzo donde dibujar.
+     * @param x Coordenada X de la parte izquierda de la figura.
+     * @param y Coordenada Y de la parte superior de la figura.
+     */
+    static void dibuja(Lienzo lienzo, float x, float y) {
+        //lienzo.dibujaRectangulo(x+MARGEN_IZQUIERDO_COLISION, y, ANCHURA_COLISION, ALTURA_COLISION, Color.white);
+        lienzo.dibujaCirculo(x+24, y+16, 16, Color.orange);
+        lienzo.dibujaCirculo(x+18, y+14, 3, Color.black);
+        lienzo.dibujaCirculo(x+30, y+14, 3, Color.black);
+        lienzo.dibujaRectangulo(x+16, y+22, 16,3, Color.black);
+        lienzo.dibujaTriangulo(x+24,y+32,x+0,y+44,x+4,y+53, Color.orange);
+        lienzo.dibujaTriangulo(x+24,y+32,x+48,y+44,x+44,y+53, Color.orange);
+        lienzo.dibujaRectangulo(x+16,y+32,16,24,Color.white);
+        lienzo.dibujaRectangulo(x+14, y+56, 8, 16, Color.blue);
+        lienzo.dibujaRectangulo(x+26, y+56, 8, 16, Color.blue);
+        lienzo.dibujaRectangulo(x+10, y+68, 12, 4, Color.red);
+        lienzo.dibujaRectangulo(x+26, y+68, 12, 4, Color.red);
+    }
 
-        float x = posicionX - MARGEN_IZQUIERDO_COLISION;
-        //ventana.dibujaRectangulo(x+MARGEN_IZQUIERDO_COLISION, posicionY, ANCHURA_COLISION, ALTURA_COLISION, Color.white);
-        ventana.dibujaCirculo(x+24, posicionY+16, 16, Color.orange);
-        ventana.dibujaCirculo(x+18, posicionY+14, 3, Color.black);
-        ventana.dibujaCirculo(x+30, posicionY+14, 3, Color.black);
-        ventana.dibujaRectangulo(x+16, posicionY+22, 16,3, Color.black);
-        ventana.dibujaTriangulo(x+24,posicionY+32,x+0,posicionY+44,x+4,posicionY+53, Color.orange);
-        ventana.dibujaTriangulo(x+24,posicionY+32,x+48,posicionY+44,x+44,posicionY+53, Color.orange);
-        ventana.dibujaRectangulo(x+16,posicionY+32,16,24,Color.white);
-        ventana.dibujaRectangulo(x+14, posicionY+56, 8, 16, Color.blue);
-        ventana.dibujaRectangulo(x+26, posicionY+56, 8, 16, Color.blue);
-        ventana.dibujaRectangulo(x+10, posicionY+68, 12, 4, Color.red);
-        ventana.dibujaRectangulo(x+26, posicionY+68, 12, 4, Color.red);
+    /**
+     * Coordenada X de la parte izquierda del rectángulo de colisión (la figura
+     * empieza MARGEN_IZQUIERDO_COLISION píxels más a la izquierda).
+     */
+    public float getPosicionX() {
+        return posicionX;
     }
 
-    //Velocidad a la que se mueve el jugador
-    private final static float VELOCIDAD_HORIZONTAL = 6;
+    /**
+     * Coordenada Y de la parte superior del protagonista.
+     */
+    public float getPosicionY() {
+        return posicionY;
+    }
+
+    public int getPosicionEnLista() {
+        return posicionEnLista;
+    }
+
+    public void setPosicionEnLista(int posicion) {
+        posicionEnLista = posicion;
+    }
+
+    //Velocidad a la que se mueve el jugador (en pixels/segundo)
+    private final static float VELOCIDAD_HORIZONTAL = 150;
    
-    private static final float MARGEN_IZQUIERDO_COLISION = 12;
+    /**
+     * Distancia entre la parte izquierda de la figura y la de su rectángulo de colisión.
+     */
+    public static final float MARGEN_IZQUIERDO_COLISION = 12;
     private static final float ANCHURA_COLISION = 24;
     private static final float ALTURA_COLISION = 72;
+    /**
+     * Margen (en píxels) que se deja al calcular los ticks tranquilos, por los
+     * redondeos de las comprobaciones de colisión.
+     */
+    private static final float HOLGURA = 1;
+
+    //Medidas del dibujo del protagonista (y de su sprite)
+    static final int ANCHURA_FIGURA = 49;
+    static final int ALTURA_FIGURA = 73;
 }